@@ -0,0 +1,139 @@
+package com.enriquecimento.upload.benchmark.jmh;
+
+import com.enriquecimento.upload.config.EnrichmentMessageConverter;
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareBatchMessageListener;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drenagem da fila em função do número de consumidores, com a mesma configuração do
+ * {@code batchListenerContainerFactory}. Cada iteração publica {@value #MENSAGENS} mensagens em uma
+ * fila nova e mede o tempo até todas serem consumidas; o resultado sai em microssegundos por
+ * mensagem. O processamento de cada lote é simulado com uma latência fixa (uma completion em lote
+ * do Groq + um batch JDBC). Requer um RabbitMQ: {@code -p host=... [-p port= -p username= -p password=]}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(ConsumerThroughputBenchmark.MENSAGENS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConsumerThroughputBenchmark {
+
+    static final int MENSAGENS = 5000;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int consumidores;
+
+    @Param({"25"})
+    public int batchSize;
+
+    @Param({"50"})
+    public long latenciaLoteMs;
+
+    @Param({"localhost"})
+    public String host;
+
+    @Param({"5672"})
+    public int port;
+
+    @Param({"guest"})
+    public String username;
+
+    @Param({"guest"})
+    public String password;
+
+    private CachingConnectionFactory connectionFactory;
+    private RabbitAdmin admin;
+    private RabbitTemplate template;
+
+    private Queue fila;
+    private CountDownLatch restantes;
+    private SimpleMessageListenerContainer container;
+
+    @Setup(Level.Trial)
+    public void conectar() {
+        this.connectionFactory = new CachingConnectionFactory(this.host, this.port);
+        this.connectionFactory.setUsername(this.username);
+        this.connectionFactory.setPassword(this.password);
+        this.admin = new RabbitAdmin(this.connectionFactory);
+        this.template = new RabbitTemplate(this.connectionFactory);
+        this.template.setMessageConverter(new EnrichmentMessageConverter(new ObjectMapper()));
+    }
+
+    @Setup(Level.Iteration)
+    public void publicar() {
+        this.fila = new AnonymousQueue();
+        this.admin.declareQueue(this.fila);
+        this.template.invoke(operations -> {
+            for (int i = 0; i < MENSAGENS; i++) {
+                operations.convertAndSend("", this.fila.getName(),
+                        new EnrichmentMessage(i, "url", "foto do produto " + i, System.currentTimeMillis()));
+            }
+            return null;
+        });
+
+        this.restantes = new CountDownLatch(MENSAGENS);
+        this.container = new SimpleMessageListenerContainer(this.connectionFactory);
+        this.container.setQueueNames(this.fila.getName());
+        this.container.setConcurrentConsumers(this.consumidores);
+        this.container.setPrefetchCount(Math.max(50, this.batchSize));
+        this.container.setConsumerBatchEnabled(true);
+        this.container.setBatchSize(this.batchSize);
+        this.container.setReceiveTimeout(200);
+        this.container.setMessageListener((ChannelAwareBatchMessageListener) (List<Message> lote, com.rabbitmq.client.Channel channel) -> {
+            try {
+                Thread.sleep(this.latenciaLoteMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lote.forEach(mensagem -> this.restantes.countDown());
+        });
+    }
+
+    @Benchmark
+    public long drenar() throws InterruptedException {
+        this.container.start();
+        if (!this.restantes.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Fila não drenada: " + this.restantes.getCount() + " mensagens restantes");
+        }
+        return this.restantes.getCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void removerFila() {
+        this.container.stop();
+        this.admin.deleteQueue(this.fila.getName());
+    }
+
+    @TearDown(Level.Trial)
+    public void desconectar() {
+        this.connectionFactory.destroy();
+    }
+}
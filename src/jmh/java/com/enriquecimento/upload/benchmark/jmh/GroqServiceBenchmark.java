@@ -0,0 +1,103 @@
+package com.enriquecimento.upload.benchmark.jmh;
+
+import com.enriquecimento.upload.service.GroqRateLimiter;
+import com.enriquecimento.upload.service.GroqService;
+import com.enriquecimento.upload.service.PipelineMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.http.HttpClient;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Montagem da requisição e leitura da resposta do {@link GroqService}, individual e em lote,
+ * com um HttpClient que responde na hora: mede o custo de CPU e de alocação do cliente,
+ * incluindo o limitador e as métricas, sem a latência da API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroqServiceBenchmark {
+
+    private static final String DESCRICAO = "Imagem de um senhor segurando um bebê no colo, em um parque, ao fim da tarde";
+    private static final String MELHORADA = "Fotografia emocionante de um avô carinhoso segurando o neto no colo, "
+            + "sob a luz dourada do fim de tarde em um parque arborizado";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> lote = new LinkedHashMap<>();
+
+    private ThreadPoolTaskScheduler scheduler;
+    private GroqService individual;
+    private GroqService emLote;
+
+    @Setup
+    public void iniciar() throws Exception {
+        // O log.info de cada resposta iria para o console do fork e dominaria a medição
+        Logger.getLogger(GroqService.class.getName()).setLevel(Level.WARNING);
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.initialize();
+        GroqRateLimiter limiter = new GroqRateLimiter(this.scheduler);
+        // Limites altos: o limitador entra na conta, mas nunca adia uma chamada
+        ReflectionTestUtils.setField(limiter, "requestsPerMinute", Long.MAX_VALUE / 4);
+        ReflectionTestUtils.setField(limiter, "tokensPerMinute", Long.MAX_VALUE / 4);
+        ReflectionTestUtils.invokeMethod(limiter, "init");
+
+        Map<String, String> melhoradas = new LinkedHashMap<>();
+        for (int i = 1; i <= 8; i++) {
+            this.lote.put(String.valueOf(i), DESCRICAO + " " + i);
+            melhoradas.put(String.valueOf(i), MELHORADA + " " + i);
+        }
+        this.individual = this.groqService(limiter, this.completion(MELHORADA));
+        this.emLote = this.groqService(limiter, this.completion(this.objectMapper.writeValueAsString(melhoradas)));
+    }
+
+    @TearDown
+    public void encerrar() {
+        this.scheduler.shutdown();
+    }
+
+    @Benchmark
+    public String improveDescription() {
+        return this.individual.improveDescription(DESCRICAO).join();
+    }
+
+    @Benchmark
+    public Map<String, String> completeBatch() {
+        return this.emLote.completeBatch(this.lote).join();
+    }
+
+    private GroqService groqService(GroqRateLimiter limiter, String resposta) {
+        HttpClient httpClient = new HttpClientFixo(resposta);
+        GroqService groqService = new GroqService(httpClient, this.objectMapper, limiter, new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(groqService, "groqApiKey", "chave");
+        ReflectionTestUtils.setField(groqService, "groqApiUrl", "http://localhost/chat/completions");
+        return groqService;
+    }
+
+    private String completion(String conteudo) throws Exception {
+        return this.objectMapper.writeValueAsString(Map.of(
+                "choices", List.of(Map.of("message", Map.of("role", "assistant", "content", conteudo))),
+                "usage", Map.of("prompt_tokens", 40, "completion_tokens", 60, "total_tokens", 100)));
+    }
+}
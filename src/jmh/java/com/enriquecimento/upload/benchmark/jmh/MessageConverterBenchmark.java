@@ -0,0 +1,73 @@
+package com.enriquecimento.upload.benchmark.jmh;
+
+import com.enriquecimento.upload.config.EnrichmentMessageConverter;
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificação e decodificação pelos conversores configurados em {@code AmqpConfig}: o binário
+ * da fila de enriquecimento e o JSON padrão do template (mensagens de quality_analysis).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageConverterBenchmark {
+
+    private static final String URL = "<img src='https://res.cloudinary.com/demo/image/upload/v1700000000/produtos/foto-123.jpg'/>";
+    private static final String DESCRICAO = "Imagem de um senhor segurando um bebê no colo, em um parque, ao fim da tarde";
+
+    private final EnrichmentMessageConverter enriquecimento = new EnrichmentMessageConverter(new ObjectMapper());
+    private final Jackson2JsonMessageConverter json = new Jackson2JsonMessageConverter();
+
+    private EnrichmentMessage mensagem;
+    private Map<String, Object> qualidade;
+    private Message mensagemCodificada;
+    private Message qualidadeCodificada;
+
+    @Setup
+    public void iniciar() {
+        this.mensagem = new EnrichmentMessage(123456L, URL, DESCRICAO, System.currentTimeMillis());
+        this.qualidade = Map.of("imageId", "123456", "publicId", "produtos/foto-123");
+        this.mensagemCodificada = this.enriquecimento.toMessage(this.mensagem, new MessageProperties());
+        this.qualidadeCodificada = this.json.toMessage(this.qualidade, new MessageProperties());
+    }
+
+    @Benchmark
+    public Message enriquecimentoEncode() {
+        return this.enriquecimento.toMessage(this.mensagem, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object enriquecimentoDecode() {
+        return this.enriquecimento.fromMessage(this.mensagemCodificada);
+    }
+
+    @Benchmark
+    public Message qualidadeEncode() {
+        return this.json.toMessage(this.qualidade, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object qualidadeDecode() {
+        return this.json.fromMessage(this.qualidadeCodificada);
+    }
+}
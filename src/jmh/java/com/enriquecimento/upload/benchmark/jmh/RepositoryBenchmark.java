@@ -0,0 +1,99 @@
+package com.enriquecimento.upload.benchmark.jmh;
+
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caminhos de escrita do {@link DadosImagemRepository} usados pelo upload e pelo consumidor:
+ * insert unitário e em lote, UPDATE unitário e em batch JDBC. Banco embarcado por padrão
+ * (ver {@code application-benchmark.properties} para apontar para um banco local).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final int LOTE = 50;
+
+    private final AtomicLong sequencia = new AtomicLong();
+
+    private DadosImagemRepository repository;
+    private List<Long> ids;
+
+    @Setup(Level.Trial)
+    public void iniciar(AplicacaoEmProcesso aplicacao) {
+        this.repository = aplicacao.bean(DadosImagemRepository.class);
+        this.ids = this.repository.insertAll(this.imagens(LOTE)).stream().map(DadosImagem::getId).toList();
+    }
+
+    // Sem limpeza, a tabela cresce a cada iteração e o custo dos índices muda no meio da medição
+    @TearDown(Level.Iteration)
+    public void limpar() {
+        this.repository.deleteAllInBatch(this.repository.findAll().stream()
+                .filter(imagem -> !this.ids.contains(imagem.getId()))
+                .toList());
+    }
+
+    @Benchmark
+    public DadosImagem save() {
+        return this.repository.save(this.imagens(1).get(0));
+    }
+
+    @Benchmark
+    public List<DadosImagem> insertAll() {
+        return this.repository.insertAll(this.imagens(LOTE));
+    }
+
+    @Benchmark
+    public int updateConteudo() {
+        return this.repository.updateConteudo(this.ids.get(0), "Conteúdo " + this.sequencia.incrementAndGet(), StatusImagem.ENRICHED);
+    }
+
+    @Benchmark
+    public int updateConteudoAll() {
+        long rodada = this.sequencia.incrementAndGet();
+        Map<Long, String> conteudos = new LinkedHashMap<>();
+        for (Long id : this.ids) {
+            conteudos.put(id, "Conteúdo " + rodada + " da imagem " + id);
+        }
+        return this.repository.updateConteudoAll(conteudos, StatusImagem.ENRICHED);
+    }
+
+    private List<DadosImagem> imagens(int quantidade) {
+        List<DadosImagem> imagens = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            long n = this.sequencia.incrementAndGet();
+            imagens.add(DadosImagem.builder()
+                    .nomeArquivo("img-" + n + ".jpg")
+                    .descricao("descrição " + n)
+                    .linkPublico("https://res.cloudinary.com/benchmark/img-" + n + ".jpg")
+                    .conteudo("")
+                    .status(StatusImagem.UPLOADED)
+                    .build());
+        }
+        return imagens;
+    }
+}
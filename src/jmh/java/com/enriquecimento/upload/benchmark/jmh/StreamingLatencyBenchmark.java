@@ -0,0 +1,148 @@
+package com.enriquecimento.upload.benchmark.jmh;
+
+import com.enriquecimento.upload.service.GroqRateLimiter;
+import com.enriquecimento.upload.service.GroqService;
+import com.enriquecimento.upload.service.PipelineMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Tempo até o primeiro texto visível para o cliente: completion inteira ({@code complete}) x
+ * stream ({@code stream}), contra um stub local que gera um token a cada {@code intervaloMs},
+ * como o modelo. Na completion inteira o primeiro texto chega junto com o último.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingLatencyBenchmark {
+
+    @Param({"40"})
+    public int tokens;
+
+    @Param({"25"})
+    public long intervaloMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer servidor;
+    private ThreadPoolTaskScheduler scheduler;
+    private GroqService groqService;
+
+    // Stream cujo primeiro texto já foi medido; termina fora da medição, antes da próxima chamada
+    private CompletableFuture<String> emAndamento;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws IOException {
+        // O log.info de cada resposta iria para o console do fork
+        Logger.getLogger(GroqService.class.getName()).setLevel(java.util.logging.Level.WARNING);
+        this.servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.servidor.createContext("/chat/completions", this::responder);
+        this.servidor.start();
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.initialize();
+
+        GroqRateLimiter limiter = new GroqRateLimiter(this.scheduler);
+        ReflectionTestUtils.invokeMethod(limiter, "init");
+        this.groqService = new GroqService(HttpClient.newHttpClient(), this.objectMapper, limiter,
+                new PipelineMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(this.groqService, "groqApiKey", "chave");
+        ReflectionTestUtils.setField(this.groqService, "groqApiUrl",
+                "http://localhost:" + this.servidor.getAddress().getPort() + "/chat/completions");
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        this.scheduler.shutdown();
+        this.servidor.stop(0);
+    }
+
+    @Benchmark
+    public String complete() throws Exception {
+        return this.groqService.complete("prompt").get(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public String streamPrimeiroTexto() throws Exception {
+        CompletableFuture<String> primeiro = new CompletableFuture<>();
+        this.emAndamento = this.groqService.stream("prompt", primeiro::complete);
+        return primeiro.get(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public String streamCompleto() throws Exception {
+        return this.groqService.stream("prompt", pedaco -> { }).get(1, TimeUnit.MINUTES);
+    }
+
+    @TearDown(Level.Invocation)
+    public void aguardarStream() throws Exception {
+        if (this.emAndamento != null) {
+            this.emAndamento.get(1, TimeUnit.MINUTES);
+            this.emAndamento = null;
+        }
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        boolean stream = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).contains("\"stream\":true");
+        try (OutputStream saida = exchange.getResponseBody()) {
+            if (!stream) {
+                // A completion inteira só sai depois que o último token foi gerado
+                dormir(this.tokens * this.intervaloMs);
+                byte[] corpo = this.objectMapper.writeValueAsBytes(Map.of("choices",
+                        List.of(Map.of("message", Map.of("content", "tok ".repeat(this.tokens))))));
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, corpo.length);
+                saida.write(corpo);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            String evento = "data: " + this.objectMapper.writeValueAsString(Map.of("choices",
+                    List.of(Map.of("delta", Map.of("content", "tok "))))) + "\n\n";
+            for (int i = 0; i < this.tokens; i++) {
+                dormir(this.intervaloMs);
+                saida.write(evento.getBytes(StandardCharsets.UTF_8));
+                saida.flush();
+            }
+            saida.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
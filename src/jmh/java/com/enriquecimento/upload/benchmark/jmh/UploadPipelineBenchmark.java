@@ -0,0 +1,133 @@
+package com.enriquecimento.upload.benchmark.jmh;
+
+import com.enriquecimento.upload.config.EnrichmentMessageConverter;
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.enriquecimento.upload.dto.ResultadoUpload;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.enriquecimento.upload.service.AmqpService;
+import com.enriquecimento.upload.service.BatchUploadService;
+import com.enriquecimento.upload.service.FileUploadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Os caminhos quentes com a aplicação inteira ({@link AplicacaoEmProcesso}):
+ * {@code saveFile} (hash, deduplicação, upload ao stub do Cloudinary, imagem e outbox na mesma
+ * transação, relay), o mesmo para N arquivos, um a um e pelo {@link BatchUploadService}
+ * (uploads em paralelo e um único insert em lote), e o consumo de um lote da fila (cache,
+ * micro-batching no stub do Groq, UPDATE em lote, avisos de conclusão).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadPipelineBenchmark {
+
+    private static final int LOTE = 8;
+    private static final int TAMANHO_IMAGEM = 64 * 1024;
+    private static final String DESCRICAO = "Imagem de um senhor segurando um bebê no colo";
+
+    private final AtomicLong sequencia = new AtomicLong();
+
+    private FileUploadService fileUploadService;
+    private BatchUploadService batchUploadService;
+    private AmqpService amqpService;
+    private EnrichmentMessageConverter enrichmentMessageConverter;
+    private byte[] imagem;
+    private List<Long> ids;
+
+    @Setup
+    public void iniciar(AplicacaoEmProcesso aplicacao) {
+        this.fileUploadService = aplicacao.bean(FileUploadService.class);
+        this.batchUploadService = aplicacao.bean(BatchUploadService.class);
+        this.amqpService = aplicacao.bean(AmqpService.class);
+        this.enrichmentMessageConverter = aplicacao.bean(EnrichmentMessageConverter.class);
+
+        this.imagem = new byte[TAMANHO_IMAGEM];
+        ThreadLocalRandom.current().nextBytes(this.imagem);
+
+        List<DadosImagem> imagens = new ArrayList<>();
+        for (int i = 0; i < LOTE; i++) {
+            imagens.add(DadosImagem.builder().nomeArquivo("lote-" + i + ".jpg").descricao("").conteudo("")
+                    .status(StatusImagem.UPLOADED).build());
+        }
+        this.ids = aplicacao.bean(DadosImagemRepository.class).insertAll(imagens).stream().map(DadosImagem::getId).toList();
+    }
+
+    // Quantidade de arquivos das comparações entre saveFile e o lote; só os benchmarks que recebem
+    // este estado variam com ela
+    @State(Scope.Benchmark)
+    public static class Arquivos {
+
+        @Param({"10", "50"})
+        public int quantidade;
+    }
+
+    @Benchmark
+    public DadosImagem saveFile() throws Exception {
+        return this.fileUploadService.saveFile(this.arquivo(), "foto.jpg", DESCRICAO);
+    }
+
+    @Benchmark
+    public List<DadosImagem> saveFileUmAUm(Arquivos arquivos) throws Exception {
+        List<DadosImagem> salvas = new ArrayList<>(arquivos.quantidade);
+        for (int i = 0; i < arquivos.quantidade; i++) {
+            salvas.add(this.fileUploadService.saveFile(this.arquivo(), "foto.jpg", DESCRICAO));
+        }
+        return salvas;
+    }
+
+    @Benchmark
+    public List<ResultadoUpload> saveFilesEmLote(Arquivos arquivos) {
+        List<MultipartFile> lote = new ArrayList<>(arquivos.quantidade);
+        for (int i = 0; i < arquivos.quantidade; i++) {
+            lote.add(this.arquivo());
+        }
+        return this.batchUploadService.saveFiles(lote, Collections.nCopies(arquivos.quantidade, DESCRICAO));
+    }
+
+    // Conteúdo diferente a cada arquivo: sem isso, a deduplicação pularia o upload
+    private MockMultipartFile arquivo() {
+        byte[] conteudo = this.imagem.clone();
+        ByteBuffer.wrap(conteudo).putLong(this.sequencia.incrementAndGet());
+        return new MockMultipartFile("arquivo", "foto.jpg", "image/jpeg", conteudo);
+    }
+
+    @Benchmark
+    public void consumirLote() {
+        // Descrições novas a cada lote: sem isso, o cache de enriquecimento pularia o Groq
+        long lote = this.sequencia.incrementAndGet();
+        List<Message> mensagens = new ArrayList<>(LOTE);
+        for (Long id : this.ids) {
+            EnrichmentMessage mensagem = new EnrichmentMessage(id, "https://res.cloudinary.com/benchmark/" + id + ".jpg",
+                    "Imagem " + lote + " de um senhor segurando um bebê no colo, item " + id, System.currentTimeMillis());
+            mensagens.add(this.enrichmentMessageConverter.toMessage(mensagem, new MessageProperties()));
+        }
+        this.amqpService.receiveImageProcessingMessages(mensagens);
+    }
+}
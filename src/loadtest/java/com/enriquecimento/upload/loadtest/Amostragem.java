@@ -0,0 +1,62 @@
+package com.enriquecimento.upload.loadtest;
+
+import com.enriquecimento.upload.repository.MensagemOutboxRepository;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+
+/**
+ * Amostra, a cada segundo, a profundidade da fila de enriquecimento e as mensagens ainda no outbox,
+ * e imprime o progresso a cada cinco amostras.
+ */
+class Amostragem implements Runnable {
+
+    private final AmqpAdmin amqpAdmin;
+    private final String fila;
+    private final MensagemOutboxRepository outboxRepository;
+    private final GeradorDeCarga gerador;
+
+    private long amostras;
+    private long somaFila;
+    private long maximoFila;
+    private long maximoOutbox;
+
+    Amostragem(AmqpAdmin amqpAdmin, String fila, MensagemOutboxRepository outboxRepository, GeradorDeCarga gerador) {
+        this.amqpAdmin = amqpAdmin;
+        this.fila = fila;
+        this.outboxRepository = outboxRepository;
+        this.gerador = gerador;
+    }
+
+    @Override
+    public synchronized void run() {
+        try {
+            QueueInformation informacao = this.amqpAdmin.getQueueInfo(this.fila);
+            long naFila = informacao != null ? informacao.getMessageCount() : 0;
+            long noOutbox = this.outboxRepository.count();
+            this.amostras++;
+            this.somaFila += naFila;
+            this.maximoFila = Math.max(this.maximoFila, naFila);
+            this.maximoOutbox = Math.max(this.maximoOutbox, noOutbox);
+            if (this.amostras % 5 == 0) {
+                System.out.printf("%4ds enviados=%d uploads=%d enriquecidas=%d em andamento=%d fila=%d outbox=%d%n",
+                        this.amostras, this.gerador.getEnviados(), this.gerador.getUploads(),
+                        this.gerador.getEnriquecidas(), this.gerador.getEmAndamento(), naFila, noOutbox);
+            }
+        } catch (RuntimeException e) {
+            // Uma amostra perdida não deve derrubar o agendamento das seguintes
+            System.out.println("Falha ao amostrar a fila: " + e.getMessage());
+        }
+    }
+
+    synchronized double getMediaFila() {
+        return this.amostras == 0 ? 0 : (double) this.somaFila / this.amostras;
+    }
+
+    synchronized long getMaximoFila() {
+        return this.maximoFila;
+    }
+
+    synchronized long getMaximoOutbox() {
+        return this.maximoOutbox;
+    }
+}
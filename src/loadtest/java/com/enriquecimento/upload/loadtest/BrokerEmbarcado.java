@@ -0,0 +1,119 @@
+package com.enriquecimento.upload.loadtest;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broker AMQP 0-9-1 em memória (Qpid Broker-J) no processo do teste de carga, com o usuário
+ * guest/guest e o virtual host padrão. Filas, exchanges, TTL e DLX são declarados pela própria aplicação;
+ * o que o Qpid não suporta é ajustado em {@link Topologia}.
+ */
+class BrokerEmbarcado implements AutoCloseable {
+
+    private final SystemLauncher launcher = new SystemLauncher();
+    private final Path diretorio;
+    private final int porta;
+
+    BrokerEmbarcado() throws Exception {
+        this.diretorio = Files.createTempDirectory("loadtest-broker");
+        this.porta = portaLivre();
+
+        Map<String, Object> atributos = new HashMap<>();
+        atributos.put("type", "Memory");
+        atributos.put("initialConfigurationLocation",
+                BrokerEmbarcado.class.getResource("/loadtest-broker.json").toExternalForm());
+        atributos.put("startupLoggedToSystemOut", false);
+        atributos.put("context", Map.of(
+                "qpid.amqp_port", String.valueOf(this.porta),
+                "qpid.work_dir", this.diretorio.toString()));
+        this.launcher.startup(atributos);
+    }
+
+    int getPorta() {
+        return this.porta;
+    }
+
+    @Override
+    public void close() {
+        this.launcher.shutdown();
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Diferenças de topologia em relação ao RabbitMQ. O Qpid não aceita TTL nem dead-letter por
+     * fila ({@code x-message-ttl}, {@code x-dead-letter-*}): os argumentos saem da declaração, e
+     * cada fila com TTL e DLX (os níveis de repetição) ganha um consumidor que devolve a mensagem
+     * à DLX depois do TTL, como o broker faria. Além disso, a fila exclusiva com auto-delete some
+     * quando o canal que a declarou fecha, antes de o consumidor se ligar a ela; a fila de eventos
+     * da instância vira uma fila comum com o mesmo nome, que some junto com o broker em memória.
+     */
+    static class Topologia {
+
+        private static final String TTL = "x-message-ttl";
+        private static final String DLX = "x-dead-letter-exchange";
+        private static final String DLX_ROUTING_KEY = "x-dead-letter-routing-key";
+
+        @Bean
+        static BeanPostProcessor filaDeEventosSemExclusividade() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String nome) {
+                    if (bean instanceof AnonymousQueue anonima) {
+                        return new Queue(anonima.getName(), false, false, false);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        @Bean
+        SimpleMessageListenerContainer expiracaoDasRepeticoes(ConnectionFactory connectionFactory, RabbitTemplate rabbitTemplate,
+                                                             List<Queue> filas, List<Declarables> declaraveis) {
+            List<Queue> todas = new ArrayList<>(filas);
+            declaraveis.forEach(grupo -> todas.addAll(grupo.getDeclarablesByType(Queue.class)));
+
+            Map<String, Queue> comAtraso = new HashMap<>();
+            for (Queue fila : todas) {
+                Map<String, Object> argumentos = fila.getArguments();
+                if (argumentos.containsKey(TTL) && argumentos.containsKey(DLX)) {
+                    comAtraso.put(fila.getName(), new Queue(fila.getName(), true, false, false, new HashMap<>(argumentos)));
+                }
+                argumentos.keySet().removeAll(List.of(TTL, DLX, DLX_ROUTING_KEY));
+            }
+
+            ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor();
+            SimpleMessageListenerContainer container = new SimpleMessageListenerContainer(connectionFactory);
+            container.setQueueNames(comAtraso.keySet().toArray(String[]::new));
+            container.setMessageListener(mensagem -> {
+                Map<String, Object> argumentos = comAtraso.get(mensagem.getMessageProperties().getConsumerQueue()).getArguments();
+                agendador.schedule(() -> rabbitTemplate.send((String) argumentos.get(DLX), (String) argumentos.get(DLX_ROUTING_KEY), mensagem),
+                        ((Number) argumentos.get(TTL)).longValue(), TimeUnit.MILLISECONDS);
+            });
+            return container;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.enriquecimento.upload.loadtest;
+
+import com.enriquecimento.upload.loadtest.ServicosSimulados.Comportamento;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parâmetros do teste de carga, lidos de argumentos {@code chave=valor}. Argumentos no formato
+ * {@code --propriedade=valor} são repassados à aplicação (ex.: {@code --amqp.listener.concurrency=8}).
+ */
+record Configuracao(
+        double uploadsPorSegundo,
+        int duracaoSegundos,
+        int esperaFinalSegundos,
+        int tamanhoImagemKb,
+        Comportamento cloudinary,
+        Comportamento groq,
+        List<String> propriedadesAplicacao) {
+
+    static Configuracao de(String[] args) {
+        Map<String, String> valores = new HashMap<>();
+        List<String> propriedades = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                propriedades.add(arg);
+            } else if (arg.indexOf('=') > 0) {
+                valores.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("Argumento inválido (esperado chave=valor): " + arg);
+            }
+        }
+
+        Configuracao configuracao = new Configuracao(
+                Double.parseDouble(valores.getOrDefault("rate", "10")),
+                Integer.parseInt(valores.getOrDefault("duration", "30")),
+                Integer.parseInt(valores.getOrDefault("drain", "60")),
+                Integer.parseInt(valores.getOrDefault("image-kb", "64")),
+                comportamento(valores, "cloudinary", 150, 100),
+                comportamento(valores, "groq", 400, 300),
+                propriedades);
+
+        List<String> conhecidas = new ArrayList<>(List.of("rate", "duration", "drain", "image-kb"));
+        for (String servico : List.of("cloudinary", "groq")) {
+            for (String parametro : List.of("latency-ms", "jitter-ms", "error-rate", "error-status")) {
+                conhecidas.add(servico + "." + parametro);
+            }
+        }
+        for (String chave : valores.keySet()) {
+            if (!conhecidas.contains(chave)) {
+                throw new IllegalArgumentException("Parâmetro desconhecido: " + chave);
+            }
+        }
+        return configuracao;
+    }
+
+    private static Comportamento comportamento(Map<String, String> valores, String servico, long latenciaMs, long variacaoMs) {
+        return new Comportamento(
+                Long.parseLong(valores.getOrDefault(servico + ".latency-ms", String.valueOf(latenciaMs))),
+                Long.parseLong(valores.getOrDefault(servico + ".jitter-ms", String.valueOf(variacaoMs))),
+                Double.parseDouble(valores.getOrDefault(servico + ".error-rate", "0")),
+                Integer.parseInt(valores.getOrDefault(servico + ".error-status", "500")));
+    }
+}
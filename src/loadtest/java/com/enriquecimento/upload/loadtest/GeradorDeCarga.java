@@ -0,0 +1,220 @@
+package com.enriquecimento.upload.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dispara uploads em {@code /api/files/upload} a uma taxa fixa (laço aberto: o próximo envio não
+ * espera a resposta do anterior) e acompanha cada imagem pelo long-poll {@code /api/files/{id}/wait}
+ * até o conteúdo enriquecido ser gravado. As latências contam a partir do instante programado do
+ * envio, para que atrasos do próprio gerador não escondam a fila.
+ */
+class GeradorDeCarga {
+
+    private static final String FRONTEIRA = "----loadtest-fronteira";
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final URI base;
+    private final Configuracao configuracao;
+    private final byte[] imagemBase;
+
+    // Em microssegundos
+    private final Histogram latenciaUpload = new ConcurrentHistogram(3);
+    private final Histogram latenciaPontaAPonta = new ConcurrentHistogram(3);
+
+    private final AtomicLong enviados = new AtomicLong();
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong errosUpload = new AtomicLong();
+    private final AtomicLong errosConsulta = new AtomicLong();
+    private final AtomicLong enriquecidas = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicInteger emAndamento = new AtomicInteger();
+
+    private volatile long inicioNanos;
+    private volatile long ultimoUploadNanos;
+    private volatile long ultimaConclusaoNanos;
+    private volatile long prazoNanos = Long.MAX_VALUE;
+
+    GeradorDeCarga(URI base, Configuracao configuracao) {
+        this.base = base;
+        this.configuracao = configuracao;
+        this.imagemBase = new byte[configuracao.tamanhoImagemKb() * 1024];
+        new Random(42).nextBytes(this.imagemBase);
+    }
+
+    /**
+     * Envia os uploads durante a duração configurada e espera as imagens em andamento até o limite
+     * da espera final; o que não terminou até lá conta como sem conclusão.
+     */
+    void executar() throws InterruptedException {
+        long intervaloNanos = (long) (TimeUnit.SECONDS.toNanos(1) / this.configuracao.uploadsPorSegundo());
+        long total = (long) (this.configuracao.uploadsPorSegundo() * this.configuracao.duracaoSegundos());
+        this.inicioNanos = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long programado = this.inicioNanos + i * intervaloNanos;
+            long espera = programado - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            this.enviar(i, programado);
+        }
+
+        this.prazoNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.configuracao.esperaFinalSegundos());
+        while (this.emAndamento.get() > 0 && System.nanoTime() < this.prazoNanos) {
+            Thread.sleep(100);
+        }
+    }
+
+    private void enviar(long sequencia, long programadoNanos) {
+        this.enviados.incrementAndGet();
+        this.emAndamento.incrementAndGet();
+        HttpRequest requisicao = HttpRequest.newBuilder(this.base.resolve("/api/files/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + FRONTEIRA)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(this.corpo(sequencia)))
+                .build();
+        this.httpClient.sendAsync(requisicao, HttpResponse.BodyHandlers.ofByteArray())
+                .thenCompose(resposta -> {
+                    if (resposta.statusCode() != 200) {
+                        this.errosUpload.incrementAndGet();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    long agora = System.nanoTime();
+                    this.latenciaUpload.recordValue(TimeUnit.NANOSECONDS.toMicros(agora - programadoNanos));
+                    this.uploads.incrementAndGet();
+                    this.ultimoUploadNanos = agora;
+                    return this.aguardarConclusao(this.ler(resposta).get("id").asLong(), programadoNanos)
+                            .exceptionally(erro -> {
+                                this.errosConsulta.incrementAndGet();
+                                return null;
+                            });
+                })
+                .whenComplete((resultado, erro) -> {
+                    if (erro != null) {
+                        this.errosUpload.incrementAndGet();
+                    }
+                    this.emAndamento.decrementAndGet();
+                });
+    }
+
+    // Long-poll até o estado final; 204 é o fim do tempo de espera do servidor e pede nova consulta
+    private CompletableFuture<Void> aguardarConclusao(long id, long programadoNanos) {
+        if (System.nanoTime() >= this.prazoNanos) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest requisicao = HttpRequest.newBuilder(this.base.resolve("/api/files/" + id + "/wait")).GET().build();
+        return this.httpClient.sendAsync(requisicao, HttpResponse.BodyHandlers.ofByteArray())
+                .thenCompose(resposta -> {
+                    if (resposta.statusCode() == 200) {
+                        String status = this.ler(resposta).path("status").asText();
+                        if ("ENRICHED".equals(status) || "FAILED".equals(status)) {
+                            long agora = System.nanoTime();
+                            this.latenciaPontaAPonta.recordValue(TimeUnit.NANOSECONDS.toMicros(agora - programadoNanos));
+                            ("ENRICHED".equals(status) ? this.enriquecidas : this.falhas).incrementAndGet();
+                            this.ultimaConclusaoNanos = agora;
+                            return CompletableFuture.completedFuture(null);
+                        }
+                    }
+                    return this.aguardarConclusao(id, programadoNanos);
+                });
+    }
+
+    private JsonNode ler(HttpResponse<byte[]> resposta) {
+        try {
+            return this.objectMapper.readTree(resposta.body());
+        } catch (Exception e) {
+            throw new IllegalStateException("Resposta ilegível: " + new String(resposta.body(), StandardCharsets.UTF_8), e);
+        }
+    }
+
+    // Bytes e descrição únicos por envio: nem a deduplicação nem o cache de enriquecimento evitam o trabalho
+    private byte[] corpo(long sequencia) {
+        byte[] imagem = this.imagemBase.clone();
+        ByteBuffer.wrap(imagem).putLong(0, sequencia);
+        ByteArrayOutputStream corpo = new ByteArrayOutputStream(imagem.length + 512);
+        this.parte(corpo, "arquivo", "imagem-" + sequencia + ".jpg", "image/jpeg", imagem);
+        this.parte(corpo, "nomeArquivo", null, "text/plain; charset=UTF-8",
+                ("imagem-" + sequencia + ".jpg").getBytes(StandardCharsets.UTF_8));
+        this.parte(corpo, "descricao", null, "text/plain; charset=UTF-8",
+                ("Foto de produto número " + sequencia + " em fundo claro").getBytes(StandardCharsets.UTF_8));
+        corpo.writeBytes(("--" + FRONTEIRA + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return corpo.toByteArray();
+    }
+
+    private void parte(ByteArrayOutputStream corpo, String nome, String nomeArquivo, String tipo, byte[] conteudo) {
+        String cabecalho = "--" + FRONTEIRA + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + nome + "\""
+                + (nomeArquivo != null ? "; filename=\"" + nomeArquivo + "\"" : "") + "\r\n"
+                + "Content-Type: " + tipo + "\r\n\r\n";
+        corpo.writeBytes(cabecalho.getBytes(StandardCharsets.UTF_8));
+        corpo.writeBytes(conteudo);
+        corpo.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    Histogram getLatenciaUpload() {
+        return this.latenciaUpload;
+    }
+
+    Histogram getLatenciaPontaAPonta() {
+        return this.latenciaPontaAPonta;
+    }
+
+    long getEnviados() {
+        return this.enviados.get();
+    }
+
+    long getUploads() {
+        return this.uploads.get();
+    }
+
+    long getErrosUpload() {
+        return this.errosUpload.get();
+    }
+
+    long getErrosConsulta() {
+        return this.errosConsulta.get();
+    }
+
+    long getEnriquecidas() {
+        return this.enriquecidas.get();
+    }
+
+    long getFalhas() {
+        return this.falhas.get();
+    }
+
+    int getEmAndamento() {
+        return this.emAndamento.get();
+    }
+
+    double segundosAte(long instanteNanos) {
+        return instanteNanos == 0 ? 0 : (instanteNanos - this.inicioNanos) / 1e9;
+    }
+
+    long getUltimoUploadNanos() {
+        return this.ultimoUploadNanos;
+    }
+
+    long getUltimaConclusaoNanos() {
+        return this.ultimaConclusaoNanos;
+    }
+}
@@ -0,0 +1,120 @@
+package com.enriquecimento.upload.loadtest;
+
+import com.enriquecimento.upload.ApiApplication;
+import com.enriquecimento.upload.repository.MensagemOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Teste de carga de ponta a ponta: sobe o broker AMQP embarcado, os stubs do Cloudinary e do Groq
+ * e a aplicação (perfil {@code loadtest}), dispara uploads na taxa pedida e, no fim, imprime as
+ * latências do upload e do upload até o conteúdo enriquecido, a vazão sustentada e o atraso da fila.
+ *
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="rate=20 duration=60 groq.latency-ms=800 groq.error-rate=0.05"
+ * </pre>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Configuracao configuracao = Configuracao.de(args);
+        try (BrokerEmbarcado broker = new BrokerEmbarcado();
+             ServicosSimulados servicos = new ServicosSimulados(configuracao.cloudinary(), configuracao.groq());
+             ConfigurableApplicationContext contexto = iniciar(configuracao, broker, servicos)) {
+
+            int porta = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+            GeradorDeCarga gerador = new GeradorDeCarga(URI.create("http://localhost:" + porta), configuracao);
+            Amostragem amostragem = new Amostragem(contexto.getBean(AmqpAdmin.class),
+                    contexto.getEnvironment().getProperty("amqp.queue.name", "image-processing-queue"),
+                    contexto.getBean(MensagemOutboxRepository.class), gerador);
+
+            System.out.printf("%nTeste de carga: %.1f uploads/s por %d s (imagens de %d KB)%n",
+                    configuracao.uploadsPorSegundo(), configuracao.duracaoSegundos(), configuracao.tamanhoImagemKb());
+            ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor();
+            agendador.scheduleAtFixedRate(amostragem, 1, 1, TimeUnit.SECONDS);
+            try {
+                gerador.executar();
+            } finally {
+                agendador.shutdownNow();
+            }
+            imprimirRelatorio(configuracao, gerador, amostragem, servicos, contexto.getBean(MeterRegistry.class));
+        }
+        // Threads do broker e do HttpClient não impedem o fim do processo
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext iniciar(Configuracao configuracao, BrokerEmbarcado broker,
+                                                          ServicosSimulados servicos) {
+        List<String> argumentos = new ArrayList<>(List.of(
+                "--cloudinary.url=" + servicos.getCloudinaryUrl(),
+                "--groq.api.url=" + servicos.getGroqUrl(),
+                "--spring.rabbitmq.port=" + broker.getPorta()));
+        // Os argumentos do usuário vêm depois e prevalecem
+        argumentos.addAll(configuracao.propriedadesAplicacao());
+        return new SpringApplicationBuilder(ApiApplication.class, BrokerEmbarcado.Topologia.class)
+                .profiles("loadtest")
+                .run(argumentos.toArray(String[]::new));
+    }
+
+    private static void imprimirRelatorio(Configuracao configuracao, GeradorDeCarga gerador, Amostragem amostragem,
+                                          ServicosSimulados servicos, MeterRegistry registry) {
+        long semConclusao = gerador.getUploads() - gerador.getEnriquecidas() - gerador.getFalhas();
+        double segundosUploads = gerador.segundosAte(gerador.getUltimoUploadNanos());
+        double segundosConclusoes = gerador.segundosAte(gerador.getUltimaConclusaoNanos());
+
+        System.out.println();
+        System.out.printf("%-28s %d%n", "uploads enviados", gerador.getEnviados());
+        System.out.printf("%-28s %d (erros %d)%n", "uploads aceitos", gerador.getUploads(), gerador.getErrosUpload());
+        System.out.printf("%-28s %d (FAILED %d, sem conclusão %d, erros de consulta %d)%n", "enriquecidas",
+                gerador.getEnriquecidas(), gerador.getFalhas(), semConclusao, gerador.getErrosConsulta());
+        System.out.printf("%-28s %.1f uploads/s, %.1f enriquecimentos/s (alvo %.1f/s)%n", "vazão sustentada",
+                segundosUploads > 0 ? gerador.getUploads() / segundosUploads : 0,
+                segundosConclusoes > 0 ? gerador.getEnriquecidas() / segundosConclusoes : 0,
+                configuracao.uploadsPorSegundo());
+
+        System.out.printf("%n%-28s %8s %8s %8s %8s %8s%n", "latência (ms)", "p50", "p90", "p99", "p99.9", "máx");
+        imprimirLatencia("upload", gerador.getLatenciaUpload());
+        imprimirLatencia("upload até o conteúdo", gerador.getLatenciaPontaAPonta());
+
+        Collection<Timer> permanencia = registry.find("enrichment.queue.dwell").timers();
+        long mensagens = permanencia.stream().mapToLong(Timer::count).sum();
+        double totalMs = permanencia.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS)).sum();
+        System.out.printf("%n%-28s máx %d mensagens, média %.1f%n", "fila de enriquecimento",
+                amostragem.getMaximoFila(), amostragem.getMediaFila());
+        System.out.printf("%-28s média %.0f ms em %d entregas%n", "tempo na fila",
+                mensagens > 0 ? totalMs / mensagens : 0, mensagens);
+        System.out.printf("%-28s máx %d mensagens pendentes%n", "outbox", amostragem.getMaximoOutbox());
+        System.out.printf("%-28s cloudinary %d chamadas (%d erros injetados), groq %d chamadas (%d erros injetados)%n",
+                "stubs", servicos.getCloudinary().getChamadas(), servicos.getCloudinary().getErros(),
+                servicos.getGroq().getChamadas(), servicos.getGroq().getErros());
+    }
+
+    private static void imprimirLatencia(String nome, Histogram histograma) {
+        if (histograma.getTotalCount() == 0) {
+            System.out.printf("%-28s %8s%n", nome, "-");
+            return;
+        }
+        System.out.printf("%-28s %8.0f %8.0f %8.0f %8.0f %8.0f%n", nome,
+                histograma.getValueAtPercentile(50) / 1000.0,
+                histograma.getValueAtPercentile(90) / 1000.0,
+                histograma.getValueAtPercentile(99) / 1000.0,
+                histograma.getValueAtPercentile(99.9) / 1000.0,
+                histograma.getMaxValue() / 1000.0);
+    }
+}
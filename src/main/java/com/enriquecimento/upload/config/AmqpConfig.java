@@ -1,18 +1,28 @@
 package com.enriquecimento.upload.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class AmqpConfig {
 
+    // Chave da fila de estacionamento na DLX
+    public static final String PARKING_LOT_ROUTING_KEY = "parking-lot";
+
     @Value("${amqp.queue.name:image-processing-queue}")
     private String queueName;
 
@@ -22,9 +32,57 @@ public class AmqpConfig {
     @Value("${amqp.routing.key:image-processing}")
     private String routingKey;
 
+    @Value("${amqp.quality.queue.name:image-quality-queue}")
+    private String qualityQueueName;
+
+    @Value("${amqp.quality.routing.key:image-quality}")
+    private String qualityRoutingKey;
+
+    @Value("${amqp.retry.exchange.name:image-processing-retry}")
+    private String retryExchangeName;
+
+    // Atraso de cada nível de repetição; o número de níveis é o número máximo de repetições
+    @Value("${amqp.retry.delays-ms:5000,25000,125000}")
+    private long[] retryDelaysMs;
+
+    @Value("${amqp.dlx.name:image-processing-dlx}")
+    private String deadLetterExchangeName;
+
+    @Value("${amqp.parking-lot.queue.name:image-processing-parking-lot}")
+    private String parkingLotQueueName;
+
+    @Value("${amqp.events.exchange.name:image-processing-events}")
+    private String eventsExchangeName;
+
+    @Value("${amqp.listener.concurrency:4}")
+    private int listenerConcurrency;
+
+    @Value("${amqp.listener.max-concurrency:8}")
+    private int listenerMaxConcurrency;
+
+    @Value("${amqp.listener.prefetch:50}")
+    private int listenerPrefetch;
+
+    @Value("${amqp.listener.batch-size:25}")
+    private int listenerBatchSize;
+
+    @Value("${amqp.listener.batch-receive-timeout-ms:200}")
+    private long listenerBatchReceiveTimeoutMs;
+
+    /**
+     * Chave que liga o nível de repetição (a partir de 0) à sua fila na exchange de repetição.
+     */
+    public static String retryRoutingKey(int nivel) {
+        return "retry-" + nivel;
+    }
+
+    // O que a fila rejeitar sem reenfileirar vai para a fila de estacionamento
     @Bean
     public Queue queue() {
-        return new Queue(queueName, true);
+        return QueueBuilder.durable(queueName)
+                .deadLetterExchange(deadLetterExchangeName)
+                .deadLetterRoutingKey(PARKING_LOT_ROUTING_KEY)
+                .build();
     }
 
     @Bean
@@ -38,19 +96,104 @@ public class AmqpConfig {
     }
 
     @Bean
+    public Queue qualityQueue() {
+        return new Queue(qualityQueueName, true);
+    }
+
+    @Bean
+    public Binding qualityBinding(Queue qualityQueue, TopicExchange exchange) {
+        return BindingBuilder.bind(qualityQueue).to(exchange).with(qualityRoutingKey);
+    }
+
+    // Eventos de conclusão para todas as instâncias: cada uma tem sua fila exclusiva, apagada ao desconectar
+    @Bean
+    public FanoutExchange eventsExchange() {
+        return new FanoutExchange(eventsExchangeName);
+    }
+
+    @Bean
+    public Queue eventsQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy("image-processing-events."));
+    }
+
+    @Bean
+    public Binding eventsBinding(Queue eventsQueue, FanoutExchange eventsExchange) {
+        return BindingBuilder.bind(eventsQueue).to(eventsExchange);
+    }
+
+    /**
+     * Uma fila por nível de repetição, sem consumidores: a mensagem espera o TTL do nível e volta
+     * pela DLX da própria fila para a exchange principal, sem ocupar o consumidor nesse intervalo.
+     */
+    @Bean
+    public Declarables retryTopology() {
+        List<Declarable> declaraveis = new ArrayList<>();
+        DirectExchange retryExchange = new DirectExchange(retryExchangeName);
+        declaraveis.add(retryExchange);
+        for (int nivel = 0; nivel < retryDelaysMs.length; nivel++) {
+            Queue fila = QueueBuilder.durable(queueName + ".retry." + retryDelaysMs[nivel] + "ms")
+                    .ttl((int) retryDelaysMs[nivel])
+                    .deadLetterExchange(exchangeName)
+                    .deadLetterRoutingKey(routingKey)
+                    .build();
+            declaraveis.add(fila);
+            declaraveis.add(BindingBuilder.bind(fila).to(retryExchange).with(retryRoutingKey(nivel)));
+        }
+
+        DirectExchange deadLetterExchange = new DirectExchange(deadLetterExchangeName);
+        Queue parkingLot = QueueBuilder.durable(parkingLotQueueName).build();
+        declaraveis.add(deadLetterExchange);
+        declaraveis.add(parkingLot);
+        declaraveis.add(BindingBuilder.bind(parkingLot).to(deadLetterExchange).with(PARKING_LOT_ROUTING_KEY));
+        return new Declarables(declaraveis);
+    }
+
+    // Conversor padrão (template e listener de qualidade)
+    @Bean
+    @Primary
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
     }
 
+    @Bean
+    public EnrichmentMessageConverter enrichmentMessageConverter(ObjectMapper objectMapper) {
+        return new EnrichmentMessageConverter(objectMapper);
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
         rabbitTemplate.setMessageConverter(jsonMessageConverter());
+        // Publicações não disputam canais com os consumidores; o limite de canais vale só para elas
+        rabbitTemplate.setUsePublisherConnection(true);
         return rabbitTemplate;
     }
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            EnrichmentMessageConverter enrichmentMessageConverter) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setMessageConverter(enrichmentMessageConverter);
+        factory.setConcurrentConsumers(listenerConcurrency);
+        factory.setMaxConcurrentConsumers(listenerMaxConcurrency);
+        // O prefetch precisa cobrir o lote inteiro, senão o consumidor espera o receive timeout a cada lote
+        factory.setPrefetchCount(Math.max(listenerPrefetch, listenerBatchSize));
+        // Entrega em lote: até batch-size mensagens, ou o que chegou dentro do receive timeout
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(listenerBatchSize);
+        factory.setReceiveTimeout(listenerBatchReceiveTimeoutMs);
+        return factory;
+    }
+
+    // Uma thread basta: o relay publica lotes inteiros e as drenagens não podem se sobrepor
+    @Bean
+    public ThreadPoolTaskScheduler outboxRelayScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("outbox-relay-");
+        return scheduler;
     }
 }
@@ -0,0 +1,94 @@
+package com.enriquecimento.upload.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executores dos uploads em segundo plano e em lote. Com {@code spring.threads.virtual.enabled}
+ * (Java 21+), cada upload roda em uma thread virtual e a concorrência com o Cloudinary fica a cargo
+ * do {@code cloudinaryConcurrencyLimiter}; sem ele, os pools de threads de plataforma limitam.
+ */
+@Configuration
+public class AsyncUploadConfig {
+
+    @Value("${upload.async.concurrency:4}")
+    private int concurrency;
+
+    @Value("${upload.async.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${upload.batch.concurrency:8}")
+    private int batchConcurrency;
+
+    // 0: um worker por núcleo
+    @Value("${upload.preprocessing.threads:0}")
+    private int preprocessingThreads;
+
+    @Value("${upload.preprocessing.queue-capacity:100}")
+    private int preprocessingQueueCapacity;
+
+    @Bean
+    public AsyncTaskExecutor uploadExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // Mesma capacidade total do pool + fila; passou disso, a submissão é rejeitada (503)
+            SimpleAsyncTaskExecutor executor = virtual("upload-");
+            executor.setConcurrencyLimit(concurrency + queueCapacity);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+        // Pool e fila limitados: quando ambos estão cheios a submissão é rejeitada
+        // e o controller responde 503, em vez de acumular trabalho sem limite
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upload-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    @Bean
+    public AsyncTaskExecutor batchUploadExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return virtual("batch-upload-");
+        }
+        // Limita quantos uploads de lote vão ao Cloudinary ao mesmo tempo, somando todos os lotes
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchConcurrency);
+        executor.setMaxPoolSize(batchConcurrency);
+        executor.setThreadNamePrefix("batch-upload-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    @Bean
+    public AsyncTaskExecutor imagePreprocessingExecutor() {
+        // Trabalho de CPU (decodificar, reduzir e recomprimir): threads de plataforma, no máximo uma por
+        // núcleo, mesmo com threads virtuais; com a fila cheia a imagem segue sem pré-processamento
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        int threads = preprocessingThreads > 0 ? preprocessingThreads : Runtime.getRuntime().availableProcessors();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(preprocessingQueueCapacity);
+        executor.setThreadNamePrefix("image-preprocessing-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        return executor;
+    }
+
+    private static SimpleAsyncTaskExecutor virtual(String prefixo) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefixo);
+        executor.setVirtualThreads(true);
+        // No desligamento, espera os uploads em andamento como os pools
+        executor.setTaskTerminationTimeout(60_000);
+        return executor;
+    }
+}
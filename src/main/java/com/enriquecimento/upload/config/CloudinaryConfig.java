@@ -0,0 +1,157 @@
+package com.enriquecimento.upload.config;
+
+import com.cloudinary.Api;
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import com.enriquecimento.upload.service.ConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.java.Log;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+
+@Log
+@Configuration
+public class CloudinaryConfig {
+
+    @Value("${cloudinary.url}")
+    private String cloudinaryUrl;
+
+    @Value("${cloudinary.http.max-total:50}")
+    private int maxTotal;
+
+    @Value("${cloudinary.http.max-per-route:50}")
+    private int maxPerRoute;
+
+    @Value("${cloudinary.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${cloudinary.http.read-timeout-ms:60000}")
+    private long readTimeoutMs;
+
+    @Value("${cloudinary.http.connection-request-timeout-ms:5000}")
+    private long connectionRequestTimeoutMs;
+
+    @Value("${cloudinary.http.keep-alive-ms:60000}")
+    private long keepAliveMs;
+
+    // Chamadas simultâneas ao SDK; acima do pool de conexões, o excedente esperaria pela conexão
+    // só até o connection-request-timeout e falharia
+    @Value("${cloudinary.concurrency.max:50}")
+    private int maxConcurrency;
+
+    @Value("${cloudinary.concurrency.max-wait-ms:60000}")
+    private long maxConcurrencyWaitMs;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager cloudinaryConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMilliseconds(keepAliveMs))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient cloudinaryHttpClient(PoolingHttpClientConnectionManager cloudinaryConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(cloudinaryConnectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs))
+                .setUserAgent("CloudinaryJava/" + Cloudinary.VERSION + " ApacheHttpClient/5")
+                .build();
+    }
+
+    @Bean
+    public Cloudinary cloudinary(CloseableHttpClient cloudinaryHttpClient) {
+        Cloudinary cloudinary = new Cloudinary(cloudinaryUrl);
+        cloudinary.config.secure = true;
+
+        // As estratégias do cloudinary-http5 criam um HttpClient novo (sem timeouts e nunca fechado)
+        // a cada chamada de uploader()/api(); trocamos por estratégias que reutilizam o cliente do pool
+        setField(Cloudinary.class, "uploaderStrategy", cloudinary, new PooledUploaderStrategy(cloudinaryHttpClient));
+        setField(Cloudinary.class, "apiStrategy", cloudinary, new PooledApiStrategy(cloudinaryHttpClient));
+
+        log.info("Cliente Cloudinary inicializado para " + cloudinary.config.cloudName);
+        return cloudinary;
+    }
+
+    @Bean
+    public ConcurrencyLimiter cloudinaryConcurrencyLimiter() {
+        return new ConcurrencyLimiter("cloudinary", maxConcurrency, Duration.ofMillis(maxConcurrencyWaitMs));
+    }
+
+    @Bean
+    public MeterBinder cloudinaryPoolMetrics(PoolingHttpClientConnectionManager cloudinaryConnectionManager) {
+        return registry -> {
+            Gauge.builder("cloudinary.http.pool.leased", cloudinaryConnectionManager, cm -> cm.getTotalStats().getLeased())
+                    .description("Conexões em uso com o Cloudinary")
+                    .register(registry);
+            Gauge.builder("cloudinary.http.pool.available", cloudinaryConnectionManager, cm -> cm.getTotalStats().getAvailable())
+                    .description("Conexões ociosas (keep-alive) com o Cloudinary")
+                    .register(registry);
+            Gauge.builder("cloudinary.http.pool.pending", cloudinaryConnectionManager, cm -> cm.getTotalStats().getPending())
+                    .description("Requisições aguardando uma conexão do pool")
+                    .register(registry);
+            Gauge.builder("cloudinary.http.pool.max", cloudinaryConnectionManager, cm -> cm.getTotalStats().getMax())
+                    .description("Tamanho máximo do pool de conexões")
+                    .register(registry);
+        };
+    }
+
+    private static void setField(Class<?> type, String name, Object target, Object value) {
+        Field field = ReflectionUtils.findField(type, name);
+        if (field == null) {
+            throw new IllegalStateException("Campo " + name + " não encontrado em " + type.getName());
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    static class PooledUploaderStrategy extends com.cloudinary.http5.UploaderStrategy {
+
+        PooledUploaderStrategy(CloseableHttpClient client) {
+            setField(com.cloudinary.http5.UploaderStrategy.class, "client", this, client);
+        }
+
+        @Override
+        public void init(Uploader uploader) {
+            // Não recria o HttpClient: apenas associa o uploader, como AbstractUploaderStrategy
+            this.uploader = uploader;
+        }
+    }
+
+    static class PooledApiStrategy extends com.cloudinary.http5.ApiStrategy {
+
+        PooledApiStrategy(CloseableHttpClient client) {
+            setField(com.cloudinary.http5.ApiStrategy.class, "client", this, client);
+        }
+
+        @Override
+        public void init(Api api) {
+            this.api = api;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.enriquecimento.upload.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+
+@Configuration
+public class EnrichmentConfig {
+
+    @Value("${enrichment.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${enrichment.cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${enrichment.batch.flush-threads:2}")
+    private int flushThreads;
+
+    @Bean
+    public AsyncCache<String, String> enrichmentCache() {
+        // Primeiro nível: limitado por tamanho (W-TinyLFU) e por tempo de vida; guarda o future
+        // da resposta, então chamadas simultâneas com a mesma chave aguardam a mesma consulta
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .buildAsync();
+    }
+
+    @Bean
+    public MeterBinder enrichmentCacheMetrics(AsyncCache<String, String> enrichmentCache) {
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size com cache=groq.enrichment
+        return registry -> CaffeineCacheMetrics.monitor(registry, enrichmentCache, "groq.enrichment");
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler enrichmentBatchScheduler() {
+        // Dispara os lotes que atingem o tempo máximo de espera antes de encher
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(flushThreads);
+        scheduler.setThreadNamePrefix("enrichment-batch-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(30);
+        return scheduler;
+    }
+}
@@ -0,0 +1,102 @@
+package com.enriquecimento.upload.config;
+
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converte {@link EnrichmentMessage} em um formato binário fixo (IDs como long, textos em UTF-8
+ * com tamanho prefixado), sem nomes de campos nem cabeçalho de tipo Java. A versão do schema vai
+ * no cabeçalho {@code x-schema-version}; mensagens sem ele são o Map em JSON da versão anterior
+ * e são lidas por um {@link ObjectReader} já montado.
+ */
+public class EnrichmentMessageConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-enrichment-message";
+    public static final String SCHEMA_VERSION_HEADER = "x-schema-version";
+
+    private final ObjectReader legado;
+
+    public EnrichmentMessageConverter(ObjectMapper objectMapper) {
+        this.legado = objectMapper.readerFor(EnrichmentMessage.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        if (!(object instanceof EnrichmentMessage mensagem)) {
+            throw new MessageConversionException("Tipo não suportado: " + object.getClass().getName());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + tamanho(mensagem));
+        try (DataOutputStream saida = new DataOutputStream(bytes)) {
+            saida.writeLong(mensagem.imageId());
+            saida.writeLong(mensagem.timestamp());
+            escrever(saida, mensagem.imageUrl());
+            escrever(saida, mensagem.description());
+        } catch (IOException e) {
+            throw new MessageConversionException("Falha ao serializar mensagem de enriquecimento", e);
+        }
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setHeader(SCHEMA_VERSION_HEADER, EnrichmentMessage.SCHEMA_VERSION);
+        return new Message(bytes.toByteArray(), messageProperties);
+    }
+
+    @Override
+    public EnrichmentMessage fromMessage(Message message) {
+        Object versao = message.getMessageProperties().getHeader(SCHEMA_VERSION_HEADER);
+        try {
+            if (versao == null) {
+                return this.legado.readValue(message.getBody());
+            }
+            if (!(versao instanceof Number numero) || numero.intValue() != EnrichmentMessage.SCHEMA_VERSION) {
+                throw new MessageConversionException("Versão de schema não suportada: " + versao);
+            }
+            try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(message.getBody()))) {
+                long imageId = entrada.readLong();
+                long timestamp = entrada.readLong();
+                return new EnrichmentMessage(imageId, ler(entrada), ler(entrada), timestamp);
+            }
+        } catch (IOException e) {
+            throw new MessageConversionException("Mensagem de enriquecimento inválida", e);
+        }
+    }
+
+    private static int tamanho(EnrichmentMessage mensagem) {
+        return (mensagem.imageUrl() != null ? mensagem.imageUrl().length() : 0)
+                + (mensagem.description() != null ? mensagem.description().length() : 0);
+    }
+
+    // Tamanho -1 representa null
+    private static void escrever(DataOutputStream saida, String valor) throws IOException {
+        if (valor == null) {
+            saida.writeInt(-1);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+    }
+
+    private static String ler(DataInputStream entrada) throws IOException {
+        int tamanho = entrada.readInt();
+        if (tamanho < 0) {
+            return null;
+        }
+        if (tamanho > entrada.available()) {
+            throw new IOException("Campo com tamanho " + tamanho + " maior que a mensagem");
+        }
+        return new String(entrada.readNBytes(tamanho), StandardCharsets.UTF_8);
+    }
+}
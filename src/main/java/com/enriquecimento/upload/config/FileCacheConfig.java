@@ -0,0 +1,38 @@
+package com.enriquecimento.upload.config;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class FileCacheConfig {
+
+    @Value("${files.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${files.cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    @Bean
+    public Cache<Long, ResultadoImagem> resultadoImagemCache() {
+        // Quem grava a imagem invalida a entrada; o TTL só limita o que outra instância possa ter alterado
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public MeterBinder resultadoImagemCacheMetrics(Cache<Long, ResultadoImagem> resultadoImagemCache) {
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size com cache=files.result
+        return registry -> CaffeineCacheMetrics.monitor(registry, resultadoImagemCache, "files.result");
+    }
+}
@@ -0,0 +1,35 @@
+package com.enriquecimento.upload.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class GroqConfig {
+
+    @Value("${groq.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Bean
+    public HttpClient groqHttpClient() {
+        // Cliente único e assíncrono: reaproveita as conexões (HTTP/2 multiplexado quando
+        // o servidor aceita) e não prende uma thread por chamada em andamento
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler groqRateLimitScheduler() {
+        // Só reagenda as chamadas adiadas pelo limitador; o trabalho em si roda no HttpClient
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("groq-rate-limit-");
+        return scheduler;
+    }
+}
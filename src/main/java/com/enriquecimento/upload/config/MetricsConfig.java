@@ -0,0 +1,49 @@
+package com.enriquecimento.upload.config;
+
+import com.enriquecimento.upload.service.PipelineMetrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Mede o recebimento do corpo multipart (upload.multipart): o filtro força o parse antes do
+     * DispatcherServlet, e o container guarda as partes (ou o erro) para o resolver do Spring.
+     */
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> multipartMetricsFilter(PipelineMetrics pipelineMetrics) {
+        OncePerRequestFilter filtro = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                    throws ServletException, IOException {
+                String contentType = request.getContentType();
+                if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+                    Timer.Sample inicio = pipelineMetrics.iniciar();
+                    String resultado = PipelineMetrics.SUCESSO;
+                    try {
+                        request.getParts();
+                    } catch (IOException | ServletException | IllegalStateException e) {
+                        // Ex.: tamanho máximo excedido; a mesma falha chega ao controller pelo resolver
+                        resultado = PipelineMetrics.ERRO;
+                    }
+                    pipelineMetrics.registrar(PipelineMetrics.Etapa.MULTIPART, inicio, resultado);
+                }
+                chain.doFilter(request, response);
+            }
+        };
+        FilterRegistrationBean<OncePerRequestFilter> registro = new FilterRegistrationBean<>(filtro);
+        registro.addUrlPatterns("/api/*");
+        return registro;
+    }
+}
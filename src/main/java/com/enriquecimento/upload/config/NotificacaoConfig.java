@@ -0,0 +1,36 @@
+package com.enriquecimento.upload.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor das respostas de SSE e long-poll. A conclusão chega na thread do consumidor AMQP
+ * (ou de quem gravou o enriquecimento); ler a imagem e escrever a resposta fora dela evita que
+ * clientes lentos ou muitas esperas pela mesma imagem segurem o consumo da fila.
+ */
+@Configuration
+public class NotificacaoConfig {
+
+    @Value("${files.notifications.threads:4}")
+    private int threads;
+
+    @Bean
+    public AsyncTaskExecutor notificacaoExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("notificacao-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("notificacao-");
+        return executor;
+    }
+}
@@ -0,0 +1,41 @@
+package com.enriquecimento.upload.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.enriquecimento.upload.service.EnrichmentRetryService;
+import com.enriquecimento.upload.service.EnrichmentService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final EnrichmentService enrichmentService;
+    private final EnrichmentRetryService enrichmentRetryService;
+
+    @GetMapping("/enrichment-cache")
+    @Operation(summary = "Estatísticas do cache de enriquecimento (memória e banco)")
+    public ResponseEntity<?> enrichmentCacheStats() {
+        return ResponseEntity.ok(this.enrichmentService.stats());
+    }
+
+    @DeleteMapping("/enrichment-cache")
+    @Operation(summary = "Invalida o cache de enriquecimento, de um modelo ou inteiro (após trocar prompt ou modelo)")
+    public ResponseEntity<?> invalidateEnrichmentCache(@RequestParam(value = "modelo", required = false) String modelo) {
+        return ResponseEntity.ok(Map.of("removidos", this.enrichmentService.invalidate(modelo)));
+    }
+
+    @PostMapping("/parking-lot/replay")
+    @Operation(summary = "Reenvia para a fila principal as mensagens de enriquecimento da fila de estacionamento")
+    public ResponseEntity<?> replayParkingLot(@RequestParam(value = "max", defaultValue = "100") int max) {
+        if (max <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("erro", "max deve ser positivo"));
+        }
+        return ResponseEntity.ok(Map.of("reenviadas", this.enrichmentRetryService.replayParkingLot(max)));
+    }
+}
@@ -2,18 +2,57 @@ package com.enriquecimento.upload.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.service.AsyncUploadService;
+import com.enriquecimento.upload.service.BatchUploadService;
+import com.enriquecimento.upload.service.EnrichmentStreamService;
 import com.enriquecimento.upload.service.FileUploadService;
+import com.enriquecimento.upload.service.NotificacaoService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/files")
 @RequiredArgsConstructor
 public class FileUploadController {
 
+    // Estados em que não há mais o que esperar
+    private static final Set<StatusImagem> FINAIS = EnumSet.of(StatusImagem.ENRICHED, StatusImagem.FAILED);
+
     private final FileUploadService service;
+    private final AsyncUploadService asyncUploadService;
+    private final BatchUploadService batchUploadService;
+    private final NotificacaoService notificacaoService;
+    private final EnrichmentStreamService enrichmentStreamService;
+    // Envia as respostas fora da thread que publicou a conclusão
+    private final TaskExecutor notificacaoExecutor;
+
+    @Value("${files.notifications.timeout-ms:30000}")
+    private long notificationTimeoutMs = 30000;
+
+    @Value("${files.enrichment-stream.timeout-ms:90000}")
+    private long enrichmentStreamTimeoutMs = 90000;
 
     @PostMapping(value = "/upload", consumes = { "multipart/form-data" })
     @Operation(summary = "Faz upload de uma imagem com descrição")
@@ -23,8 +62,7 @@ public class FileUploadController {
             @RequestPart("descricao") String descricao) {
 
         // Verifica se o arquivo é uma imagem
-        String contentType = arquivo.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
+        if (!this.isImagem(arquivo)) {
             return ResponseEntity
                     .badRequest()
                     .body("O arquivo enviado não é uma imagem válida.");
@@ -37,14 +75,59 @@ public class FileUploadController {
         }
     }
 
+    @PostMapping(value = "/upload/batch", consumes = { "multipart/form-data" })
+    @Operation(summary = "Faz upload de várias imagens em paralelo, com o resultado de cada arquivo")
+    public ResponseEntity<?> uploadFiles(
+            @RequestPart("arquivos") List<MultipartFile> arquivos,
+            @RequestParam(value = "descricoes", required = false) List<String> descricoes) {
+
+        try {
+            return ResponseEntity.ok(this.batchUploadService.saveFiles(arquivos, descricoes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping(value = "/upload/async", consumes = { "multipart/form-data" })
+    @Operation(summary = "Recebe uma imagem e agenda o upload em segundo plano (202 + ID do processamento)")
+    public ResponseEntity<?> uploadFileAsync(
+            @RequestPart("arquivo") MultipartFile arquivo,
+            @RequestPart("nomeArquivo") String nomeArquivo,
+            @RequestPart("descricao") String descricao) {
+
+        if (!this.isImagem(arquivo)) {
+            return ResponseEntity
+                    .badRequest()
+                    .body("O arquivo enviado não é uma imagem válida.");
+        }
+
+        try {
+            var imagem = this.asyncUploadService.enqueue(arquivo, nomeArquivo, descricao);
+            return ResponseEntity
+                    .accepted()
+                    .location(URI.create("/api/files/" + imagem.getId()))
+                    .body(imagem);
+        } catch (TaskRejectedException e) {
+            return ResponseEntity
+                    .status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body("Capacidade de upload esgotada, tente novamente em instantes.");
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/{id}")
-    @Operation(summary = "Consulta o resultado do processamento de uma imagem pelo ID")
+    @Operation(summary = "Consulta o resultado do processamento de uma imagem pelo ID (ETag, 304 com If-None-Match)")
     public ResponseEntity<?> getImageResult(@PathVariable Long id) {
         try {
             var result = this.service.getFile(id);
             
             if (result.isPresent()) {
-                return ResponseEntity.ok(result.get());
+                // Com o If-None-Match igual ao ETag, o Spring responde 304 sem corpo
+                return this.resultado(result.get());
             } else {
                 return ResponseEntity.notFound().build();
             }
@@ -52,4 +135,106 @@ public class FileUploadController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Mantém a conexão aberta (SSE) e envia o resultado quando o enriquecimento termina")
+    public ResponseEntity<SseEmitter> imageEvents(@PathVariable Long id) {
+        // Assina antes de consultar: uma conclusão entre as duas etapas não se perde
+        CompletableFuture<Long> conclusao = this.notificacaoService.aguardar(id);
+        Optional<ResultadoImagem> atual = this.service.getFile(id);
+        if (atual.isEmpty()) {
+            this.notificacaoService.cancelar(id, conclusao);
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(this.notificationTimeoutMs);
+        emitter.onCompletion(() -> this.notificacaoService.cancelar(id, conclusao));
+        emitter.onTimeout(emitter::complete);
+        if (this.concluida(atual.get())) {
+            this.enviar(emitter, atual);
+        } else {
+            conclusao.thenRunAsync(() -> this.enviar(emitter, this.service.getFile(id)), this.notificacaoExecutor);
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping("/{id}/wait")
+    @Operation(summary = "Long-poll: responde quando o enriquecimento termina, ou 204 ao fim do tempo de espera")
+    public DeferredResult<ResponseEntity<?>> waitImageResult(@PathVariable Long id) {
+        DeferredResult<ResponseEntity<?>> resposta = new DeferredResult<>(this.notificationTimeoutMs, ResponseEntity.noContent().build());
+
+        CompletableFuture<Long> conclusao = this.notificacaoService.aguardar(id);
+        resposta.onCompletion(() -> this.notificacaoService.cancelar(id, conclusao));
+        Optional<ResultadoImagem> atual = this.service.getFile(id);
+        if (atual.isEmpty()) {
+            resposta.setResult(ResponseEntity.notFound().build());
+        } else if (this.concluida(atual.get())) {
+            resposta.setResult(this.resultado(atual.get()));
+        } else {
+            conclusao.thenRunAsync(() -> resposta.setResult(this.service.getFile(id)
+                    .<ResponseEntity<?>>map(this::resultado)
+                    .orElseGet(() -> ResponseEntity.notFound().build())), this.notificacaoExecutor);
+        }
+        return resposta;
+    }
+
+    @GetMapping(value = "/{id}/enrichment/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Enriquece a descrição com o texto chegando em pedaços (SSE) e grava o resultado no fim")
+    public ResponseEntity<SseEmitter> streamEnrichment(@PathVariable Long id) {
+        SseEmitter emitter = new SseEmitter(this.enrichmentStreamTimeoutMs);
+        emitter.onTimeout(emitter::complete);
+
+        var enriquecimento = this.enrichmentStreamService.enriquecer(id, pedaco -> this.enviar(emitter, "token", Map.of("texto", pedaco)));
+        if (enriquecimento.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        enriquecimento.get().whenComplete((conteudo, e) -> {
+            if (e != null) {
+                this.enviar(emitter, "erro", Map.of("erro", "Falha ao enriquecer a descrição"));
+            } else {
+                this.enviar(emitter, "fim", Map.of("conteudo", conteudo));
+            }
+            emitter.complete();
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void enviar(SseEmitter emitter, String evento, Object dados) {
+        try {
+            emitter.send(SseEmitter.event().name(evento).data(dados, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado ou emitter encerrado: o enriquecimento segue e é gravado mesmo assim
+        }
+    }
+
+    private boolean concluida(ResultadoImagem resultado) {
+        return FINAIS.contains(resultado.imagem().getStatus());
+    }
+
+    private ResponseEntity<?> resultado(ResultadoImagem resultado) {
+        return ResponseEntity.ok()
+                .eTag(resultado.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(resultado.imagem());
+    }
+
+    private void enviar(SseEmitter emitter, Optional<ResultadoImagem> resultado) {
+        try {
+            if (resultado.isPresent()) {
+                emitter.send(SseEmitter.event()
+                        .name("resultado")
+                        .id(resultado.get().etag())
+                        .data(resultado.get().imagem(), MediaType.APPLICATION_JSON));
+            }
+            emitter.complete();
+        } catch (IOException e) {
+            // Cliente desconectou
+            emitter.completeWithError(e);
+        }
+    }
+
+    private boolean isImagem(MultipartFile arquivo) {
+        String contentType = arquivo.getContentType();
+        return contentType != null && contentType.startsWith("image/");
+    }
 }
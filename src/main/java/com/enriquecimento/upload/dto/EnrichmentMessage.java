@@ -0,0 +1,15 @@
+package com.enriquecimento.upload.dto;
+
+/**
+ * Mensagem da fila de enriquecimento. Trafega no formato binário do
+ * {@link com.enriquecimento.upload.config.EnrichmentMessageConverter}, com a versão do schema no cabeçalho.
+ */
+public record EnrichmentMessage(
+        long imageId,
+        String imageUrl,
+        String description,
+        long timestamp) {
+
+    // Versão atual do formato binário; a 0 é o Map em JSON das versões anteriores
+    public static final int SCHEMA_VERSION = 1;
+}
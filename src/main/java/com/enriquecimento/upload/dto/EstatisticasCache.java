@@ -0,0 +1,13 @@
+package com.enriquecimento.upload.dto;
+
+/**
+ * Estatísticas dos dois níveis do cache de enriquecimento.
+ */
+public record EstatisticasCache(
+        long memoriaAcertos,
+        long memoriaFalhas,
+        long memoriaRemocoes,
+        long memoriaTamanho,
+        long persistenteAcertos,
+        long persistenteFalhas) {
+}
@@ -0,0 +1,15 @@
+package com.enriquecimento.upload.dto;
+
+import com.enriquecimento.upload.entity.Rendicao;
+
+import java.util.List;
+
+/**
+ * Imagem publicada no Cloudinary: o public_id, a URL da versão exibida e as versões geradas no upload.
+ */
+public record ImagemCloudinary(String publicId, String linkPublico, List<Rendicao> rendicoes) {
+
+    public ImagemCloudinary(String publicId, String linkPublico) {
+        this(publicId, linkPublico, List.of());
+    }
+}
@@ -0,0 +1,9 @@
+package com.enriquecimento.upload.dto;
+
+import com.enriquecimento.upload.entity.DadosImagem;
+
+/**
+ * Imagem consultada junto com o ETag forte da sua representação JSON.
+ */
+public record ResultadoImagem(DadosImagem imagem, String etag) {
+}
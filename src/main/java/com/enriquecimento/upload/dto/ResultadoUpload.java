@@ -0,0 +1,20 @@
+package com.enriquecimento.upload.dto;
+
+/**
+ * Resultado do upload de um arquivo dentro de um lote.
+ */
+public record ResultadoUpload(
+        String nomeArquivo,
+        boolean sucesso,
+        Long id,
+        String linkPublico,
+        String erro) {
+
+    public static ResultadoUpload sucesso(String nomeArquivo, Long id, String linkPublico) {
+        return new ResultadoUpload(nomeArquivo, true, id, linkPublico, null);
+    }
+
+    public static ResultadoUpload falha(String nomeArquivo, String erro) {
+        return new ResultadoUpload(nomeArquivo, false, null, null, erro);
+    }
+}
@@ -3,8 +3,11 @@ package com.enriquecimento.upload.entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Entity
-@Table(name = "TBL_Dados_Image")
+@Table(name = "TBL_Dados_Image", indexes = @Index(name = "idx_dados_image_sha256", columnList = "sha256"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -12,18 +15,47 @@ import lombok.*;
 @Builder
 public class DadosImagem {
 
+    // Sequence com otimizador pooled-lo: um nextval reserva allocationSize IDs e o Hibernate
+    // consegue agrupar os inserts (hibernate.jdbc.batch_size). Migração: db/013-dados-image-sequence.sql
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dados_image_seq")
+    @SequenceGenerator(name = "dados_image_seq", sequenceName = "dados_image_seq", allocationSize = 50)
     private Long id;
 
     private String nomeArquivo;
 
+    // URL da versão exibida (rendição "padrao")
     @Column(length = 1000)
     private String linkPublico;
+
+    private String idCloudinary;
+
+    // SHA-256 (hex) do conteúdo enviado, usado na deduplicação
+    @Column(length = 64)
+    private String sha256;
     
     @Column(length = 1000)
     private String descricao;
 
     @Column(length = 4000)
     private String conteudo;
+
+    // Registros anteriores ao status: db/015-status-backfill.sql
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private StatusImagem status;
+
+    // Preenchidos pela etapa opcional de quality_analysis do Cloudinary
+    private Double notaQualidade;
+
+    @Column(length = 2000)
+    private String analiseQualidade;
+
+    // Uma linha por variante; carregadas junto com a imagem, que é devolvida direto pela API
+    // e guardada no cache de consultas. Migração dos registros antigos: db/014-rendicoes.sql
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "TBL_Dados_Image_Rendicao", joinColumns = @JoinColumn(name = "imagem_id"),
+            indexes = @Index(name = "idx_dados_image_rendicao_imagem", columnList = "imagem_id"))
+    @Builder.Default
+    private List<Rendicao> rendicoes = new ArrayList<>();
 }
@@ -0,0 +1,33 @@
+package com.enriquecimento.upload.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Segundo nível do cache de enriquecimento: resposta do Groq indexada pelo hash
+ * do prompt normalizado e do modelo.
+ */
+@Entity
+@Table(name = "TBL_Enriquecimento_Cache", indexes = @Index(name = "idx_enriquecimento_cache_modelo", columnList = "modelo"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EnriquecimentoCache {
+
+    // SHA-256 (hex) de modelo + prompt normalizado
+    @Id
+    @Column(length = 64)
+    private String chave;
+
+    @Column(length = 100)
+    private String modelo;
+
+    @Column(length = 4000)
+    private String conteudo;
+
+    private Instant criadoEm;
+}
@@ -0,0 +1,49 @@
+package com.enriquecimento.upload.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Mensagem de enriquecimento ou de análise de qualidade gravada na mesma transação da imagem e
+ * publicada depois pelo {@link com.enriquecimento.upload.service.OutboxRelay}; a linha é apagada
+ * quando o broker confirma.
+ */
+@Entity
+@Table(name = "TBL_Outbox_Enriquecimento")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MensagemOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_enriquecimento_seq")
+    @SequenceGenerator(name = "outbox_enriquecimento_seq", sequenceName = "outbox_enriquecimento_seq", allocationSize = 50)
+    private Long id;
+
+    // Nulo nas linhas gravadas antes de a análise de qualidade passar pelo outbox: enriquecimento
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Tipo tipo;
+
+    private Long imageId;
+
+    @Column(length = 1000)
+    private String imageUrl;
+
+    @Column(length = 1000)
+    private String descricao;
+
+    private Instant criadoEm;
+
+    // public_id no Cloudinary, só nas mensagens de qualidade
+    private String publicId;
+
+    public enum Tipo {
+        ENRIQUECIMENTO,
+        QUALIDADE
+    }
+}
@@ -0,0 +1,30 @@
+package com.enriquecimento.upload.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+/**
+ * Versão transformada da imagem, gerada pelo Cloudinary no upload (eager): a primeira
+ * visualização já encontra a versão pronta na CDN.
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Rendicao {
+
+    // "padrao" (pad 300x400, a exibida) ou "w<largura>" para as variantes responsivas
+    @Column(length = 20)
+    private String nome;
+
+    // Dimensões geradas; nulas quando o Cloudinary não as devolveu
+    private Integer largura;
+
+    private Integer altura;
+
+    @Column(length = 500)
+    private String url;
+}
@@ -0,0 +1,12 @@
+package com.enriquecimento.upload.entity;
+
+public enum StatusImagem {
+    // Recebida e aguardando o upload em segundo plano
+    PENDING,
+    // Publicada no Cloudinary, aguardando o enriquecimento
+    UPLOADED,
+    // Descrição enriquecida pelo Groq gravada
+    ENRICHED,
+    // Falha no upload para o Cloudinary
+    FAILED
+}
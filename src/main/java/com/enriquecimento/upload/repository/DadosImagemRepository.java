@@ -1,8 +1,37 @@
 package com.enriquecimento.upload.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
 
-public interface DadosImagemRepository extends JpaRepository<DadosImagem, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface DadosImagemRepository extends JpaRepository<DadosImagem, Long>, DadosImagemRepositoryCustom {
+
+    Optional<DadosImagem> findFirstBySha256AndStatusInOrderByIdAsc(String sha256, Collection<StatusImagem> status);
+
+    // Só os IDs, sem hidratar as entidades
+    @Query("select d.id from DadosImagem d where d.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Grava o resultado do enriquecimento em um único UPDATE, sem carregar a entidade. Imagens com
+    // upload falho ficam como estão: uma mensagem repetida ou atrasada não as marca como enriquecidas
+    @Transactional
+    @Modifying
+    @Query("update DadosImagem d set d.conteudo = :conteudo, d.status = :status where d.id = :id"
+            + " and d.status <> com.enriquecimento.upload.entity.StatusImagem.FAILED")
+    int updateConteudo(@Param("id") Long id, @Param("conteudo") String conteudo, @Param("status") StatusImagem status);
+
+    // Atualiza só as colunas de qualidade, sem sobrescrever o conteúdo gravado pelo enriquecimento
+    @Transactional
+    @Modifying
+    @Query("update DadosImagem d set d.notaQualidade = :nota, d.analiseQualidade = :analise where d.id = :id")
+    int updateQualidade(@Param("id") Long id, @Param("nota") Double nota, @Param("analise") String analise);
 }
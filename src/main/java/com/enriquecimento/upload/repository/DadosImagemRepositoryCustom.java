@@ -0,0 +1,22 @@
+package com.enriquecimento.upload.repository;
+
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+
+import java.util.List;
+import java.util.Map;
+
+public interface DadosImagemRepositoryCustom {
+
+    /**
+     * Insere todas as imagens em batches JDBC (hibernate.jdbc.batch_size) e preenche os IDs gerados.
+     */
+    List<DadosImagem> insertAll(List<DadosImagem> imagens);
+
+    /**
+     * Grava o conteúdo de cada ID e o status em um único batch JDBC.
+     *
+     * @return quantidade de linhas atualizadas
+     */
+    int updateConteudoAll(Map<Long, String> conteudos, StatusImagem status);
+}
@@ -0,0 +1,59 @@
+package com.enriquecimento.upload.repository;
+
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+class DadosImagemRepositoryImpl implements DadosImagemRepositoryCustom {
+
+    // Mesma regra do updateConteudo: imagens com upload falho não são marcadas como enriquecidas
+    private static final String UPDATE_CONTEUDO_SQL =
+            "update TBL_Dados_Image set conteudo = ?, status = ? where id = ? and status <> 'FAILED'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize = 50;
+
+    @Override
+    @Transactional
+    public List<DadosImagem> insertAll(List<DadosImagem> imagens) {
+        // Os IDs vêm da sequence já no persist; o Hibernate agrupa os inserts a cada flush.
+        // O flush/clear por bloco mantém o contexto de persistência pequeno em cargas grandes
+        for (int i = 0; i < imagens.size(); i++) {
+            this.entityManager.persist(imagens.get(i));
+            if ((i + 1) % this.batchSize == 0) {
+                this.entityManager.flush();
+                this.entityManager.clear();
+            }
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+        return imagens;
+    }
+
+    @Override
+    @Transactional
+    public int updateConteudoAll(Map<Long, String> conteudos, StatusImagem status) {
+        if (conteudos.isEmpty()) {
+            return 0;
+        }
+        int[][] linhas = this.jdbcTemplate.batchUpdate(UPDATE_CONTEUDO_SQL, conteudos.entrySet(), conteudos.size(), (ps, conteudo) -> {
+            ps.setString(1, conteudo.getValue());
+            ps.setString(2, status.name());
+            ps.setLong(3, conteudo.getKey());
+        });
+        // Alguns drivers devolvem SUCCESS_NO_INFO (-2) em vez da contagem
+        return Arrays.stream(linhas).flatMapToInt(Arrays::stream).map(n -> n < 0 ? 1 : n).sum();
+    }
+}
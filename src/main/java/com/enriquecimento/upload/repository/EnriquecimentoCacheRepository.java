@@ -0,0 +1,22 @@
+package com.enriquecimento.upload.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.enriquecimento.upload.entity.EnriquecimentoCache;
+
+public interface EnriquecimentoCacheRepository extends JpaRepository<EnriquecimentoCache, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from EnriquecimentoCache c where c.modelo = :modelo")
+    int deleteByModelo(@Param("modelo") String modelo);
+
+    @Transactional
+    @Modifying
+    @Query("delete from EnriquecimentoCache c")
+    int deleteAllEntries();
+}
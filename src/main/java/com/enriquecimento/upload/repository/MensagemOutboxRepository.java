@@ -0,0 +1,19 @@
+package com.enriquecimento.upload.repository;
+
+import com.enriquecimento.upload.entity.MensagemOutbox;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
+
+public interface MensagemOutboxRepository extends JpaRepository<MensagemOutbox, Long> {
+
+    // SELECT ... FOR UPDATE SKIP LOCKED: cada instância do relay pega um lote diferente
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<MensagemOutbox> findByOrderByIdAsc(Pageable pageable);
+}
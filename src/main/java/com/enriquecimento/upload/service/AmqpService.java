@@ -1,15 +1,32 @@
 package com.enriquecimento.upload.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import com.enriquecimento.upload.config.EnrichmentMessageConverter;
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.enriquecimento.upload.dto.ResultadoImagem;
 import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.enriquecimento.upload.service.EnrichmentRetryService.Falha;
+import com.enriquecimento.upload.service.PipelineMetrics.Etapa;
+import io.micrometer.core.instrument.Timer;
 
-import java.util.Optional;
-import com.enriquecimento.upload.entity.DadosImagem;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import com.enriquecimento.upload.entity.StatusImagem;
 import java.util.Map;
 
 @Log
@@ -19,7 +36,12 @@ public class AmqpService {
 
     private final DadosImagemRepository dadosImagemRepository;
     private final RabbitTemplate rabbitTemplate;
-    private final GroqService groqService;
+    private final EnrichmentService enrichmentService;
+    private final EnrichmentMessageConverter enrichmentMessageConverter;
+    private final EnrichmentRetryService enrichmentRetryService;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+    private final NotificacaoService notificacaoService;
+    private final PipelineMetrics pipelineMetrics;
 
     @Value("${amqp.exchange.name:image-processing-exchange}")
     private String exchangeName;
@@ -27,56 +49,181 @@ public class AmqpService {
     @Value("${amqp.routing.key:image-processing}")
     private String routingKey;
 
-    private void sendMessage(Object message) {
+    @Value("${amqp.quality.routing.key:image-quality}")
+    private String qualityRoutingKey;
+
+    @Value("${amqp.publisher.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs = 5000;
+
+    // 0: derivado do prazo do Groq (ver init)
+    @Value("${amqp.listener.enrichment-timeout-ms:0}")
+    private long enrichmentTimeoutMs = 180000;
+
+    @Value("${groq.http.deadline-ms:60000}")
+    private long groqDeadlineMs = 60000;
+
+    /**
+     * Sem valor configurado, o lote espera a chamada em lote e a individual da resposta inválida
+     * (2 × {@code groq.http.deadline-ms}) mais uma janela inteira do limitador (um minuto). Abaixo do
+     * prazo do Groq, o lote iria para a repetição com a chamada ainda em andamento: a aplicação não sobe.
+     */
+    @PostConstruct
+    void init() {
+        if (this.enrichmentTimeoutMs <= 0) {
+            this.enrichmentTimeoutMs = 2 * this.groqDeadlineMs + Duration.ofMinutes(1).toMillis();
+        } else if (this.enrichmentTimeoutMs < this.groqDeadlineMs) {
+            throw new IllegalStateException("amqp.listener.enrichment-timeout-ms (" + this.enrichmentTimeoutMs
+                    + ") menor que groq.http.deadline-ms (" + this.groqDeadlineMs + ")");
+        }
+    }
+
+    /**
+     * Publica as mensagens em um único canal e aguarda a confirmação do broker para todas
+     * (publisher confirms); qualquer nack ou timeout vira exceção para o chamador repetir.
+     */
+    public void sendImageProcessingMessages(List<EnrichmentMessage> mensagens) {
+        if (mensagens.isEmpty()) {
+            return;
+        }
+        Timer.Sample inicio = this.pipelineMetrics.iniciar();
+        String resultado = PipelineMetrics.ERRO;
         try {
-            this.rabbitTemplate.convertAndSend(exchangeName, routingKey, message);
-            log.info("Mensagem enviada para a fila AMQP: " + message);
-        } catch (Exception e) {
-            log.severe("Erro ao enviar mensagem para AMQP: " + e.getMessage());
-            throw new RuntimeException("Falha ao enviar mensagem para fila", e);
+            this.rabbitTemplate.invoke(operations -> {
+                for (EnrichmentMessage mensagem : mensagens) {
+                    operations.send(exchangeName, routingKey, this.toMessage(mensagem));
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMs);
+                return null;
+            });
+            resultado = PipelineMetrics.SUCESSO;
+        } finally {
+            this.pipelineMetrics.registrar(Etapa.AMQP_PUBLICACAO, inicio, resultado);
         }
+        log.info(mensagens.size() + " mensagens enviadas e confirmadas pela fila AMQP");
     }
 
-    public void sendImageProcessingMessage(String imageId, String imageUrl, String description) {
-        Map<String, Object> message = Map.of(
-                "imageId", imageId,
-                "imageUrl", imageUrl,
-                "description", description,
-                "timestamp", System.currentTimeMillis()
-        );
-        this.sendMessage(message);
+    /**
+     * Publica as mensagens de análise de qualidade (JSON, lidas pelo {@link QualityAnalysisService})
+     * com a mesma espera por confirmação do broker.
+     */
+    public void sendQualityAnalysisMessages(List<Map<String, String>> mensagens) {
+        if (mensagens.isEmpty()) {
+            return;
+        }
+        this.rabbitTemplate.invoke(operations -> {
+            for (Map<String, String> mensagem : mensagens) {
+                operations.convertAndSend(exchangeName, qualityRoutingKey, mensagem);
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+        log.info(mensagens.size() + " mensagens de análise de qualidade enviadas e confirmadas pela fila AMQP");
     }
 
-    @RabbitListener(queues = "${amqp.queue.name:image-processing-queue}")
-    public void receiveImageProcessingMessage(Map<String, Object> message) {
-        try {
-            log.info("Mensagem recebida da fila AMQP: " + message);
-            
-            String imageId =  message.get("imageId").toString();
-            var imagem = this.getFile(Long.valueOf(imageId));
-            String imageUrl =  message.get("imageUrl").toString();
-            String description = message.get("description").toString();
-            Long timestamp = (Long) message.get("timestamp");
-            
-            log.info("Processando imagem - ID: " + imageId + ", URL: " + imageUrl);
-            
-            // Processa a imagem com IA via Groq
-            String enrichedDescription = this.groqService.improveDescription(description);
-            
-            // Atualiza a descrição enriquecida no banco
-            if (imagem.isPresent()) {
-                DadosImagem dadosImagem = imagem.get();
-                dadosImagem.setConteudo(enrichedDescription);
-                this.dadosImagemRepository.save(dadosImagem);
-                log.info("Descrição enriquecida salva para imagem " + imageId);
+    private Message toMessage(EnrichmentMessage message) {
+        return this.enrichmentMessageConverter.toMessage(message, new MessageProperties());
+    }
+
+    /**
+     * Recebe um lote de mensagens: confere os IDs existentes em uma consulta, enriquece todas as
+     * imagens em paralelo e grava conteúdo e status com um UPDATE direto, sem carregar as entidades.
+     * O que falhar (Groq ou banco) vai para a repetição com atraso, e o lote é confirmado no fim;
+     * só uma falha ao publicar as repetições devolve o lote para a fila. Mensagens repetidas da mesma
+     * imagem no lote são enriquecidas uma vez, com a mais recente (pelo timestamp do outbox).
+     */
+    @RabbitListener(queues = "${amqp.queue.name:image-processing-queue}", containerFactory = "batchListenerContainerFactory")
+    public void receiveImageProcessingMessages(List<Message> messages) {
+        log.info(messages.size() + " mensagens recebidas da fila AMQP");
+
+        List<Falha> falhas = new ArrayList<>();
+        Map<Long, Message> originais = new LinkedHashMap<>();
+        Map<Long, EnrichmentMessage> recebidas = new LinkedHashMap<>();
+        int repetidas = 0;
+        long agora = System.currentTimeMillis();
+        for (Message message : messages) {
+            try {
+                EnrichmentMessage mensagem = (EnrichmentMessage) this.enrichmentMessageConverter.fromMessage(message);
+                // O timestamp é o da gravação no outbox: a espera inclui o relay e as repetições com atraso
+                this.pipelineMetrics.registrar(Etapa.FILA, Duration.ofMillis(Math.max(0, agora - mensagem.timestamp())),
+                        "tentativa", String.valueOf(EnrichmentRetryService.tentativas(message.getMessageProperties())));
+                EnrichmentMessage anterior = recebidas.get(mensagem.imageId());
+                if (anterior != null) {
+                    repetidas++;
+                    if (anterior.timestamp() > mensagem.timestamp()) {
+                        continue;
+                    }
+                }
+                originais.put(mensagem.imageId(), message);
+                recebidas.put(mensagem.imageId(), mensagem);
+            } catch (MessageConversionException e) {
+                // Repetir não adianta: a mensagem vai direto para a fila de estacionamento
+                falhas.add(new Falha(message, "Mensagem inválida: " + e.getMessage(), true));
             }
-            
-        } catch (Exception e) {
-            log.severe("Erro ao processar mensagem da fila: " + e.getMessage());
         }
+
+        if (repetidas > 0) {
+            // Entregas repetidas do outbox ou repetições atrasadas: as mais antigas são confirmadas sem processar
+            log.info(repetidas + " mensagens repetidas no lote, enriquecida só a mais recente de cada imagem");
+        }
+
+        Map<Long, String> descricoes = new LinkedHashMap<>();
+        recebidas.forEach((id, mensagem) -> descricoes.put(id, mensagem.description()));
+        Map<Long, String> motivos = new LinkedHashMap<>();
+        try {
+            this.enriquecer(descricoes, motivos);
+        } catch (RuntimeException e) {
+            log.warning("Erro ao processar lote da fila, " + originais.size() + " mensagens vão para a repetição: " + e.getMessage());
+            originais.keySet().forEach(id -> motivos.putIfAbsent(id, e.toString()));
+        }
+
+        motivos.forEach((id, motivo) -> falhas.add(new Falha(originais.get(id), motivo, false)));
+        this.enrichmentRetryService.reenviar(falhas);
     }
 
-    private Optional<DadosImagem> getFile(Long id) {
-        return this.dadosImagemRepository.findById(id);
+    // Enriquece e grava o lote; as falhas individuais do Groq ficam em "motivos"
+    private void enriquecer(Map<Long, String> descricoes, Map<Long, String> motivos) {
+        if (descricoes.isEmpty()) {
+            return;
+        }
+        List<Long> existentes = this.dadosImagemRepository.findExistingIds(descricoes.keySet());
+        if (existentes.size() < descricoes.size()) {
+            log.warning((descricoes.size() - existentes.size()) + " imagens do lote não encontradas, mensagens descartadas");
+        }
+
+        // Processa as imagens com IA via Groq (com cache e micro-batching das chamadas)
+        Map<Long, CompletableFuture<String>> enriquecimentos = new LinkedHashMap<>();
+        for (Long id : existentes) {
+            enriquecimentos.put(id, this.enrichmentService.enrich(id.toString(), descricoes.get(id)));
+        }
+        // Espera todas, inclusive as que falharem, até o limite do lote; as que não terminaram vão para a repetição
+        CompletableFuture.allOf(enriquecimentos.values().toArray(CompletableFuture[]::new))
+                .orTimeout(this.enrichmentTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> null)
+                .join();
+
+        Map<Long, String> conteudos = new LinkedHashMap<>();
+        enriquecimentos.forEach((id, enriquecimento) -> {
+            if (!enriquecimento.isDone()) {
+                motivos.put(id, "Enriquecimento não concluído em " + this.enrichmentTimeoutMs + " ms");
+                return;
+            }
+            try {
+                conteudos.put(id, enriquecimento.join());
+            } catch (CompletionException e) {
+                motivos.put(id, String.valueOf(e.getCause() != null ? e.getCause() : e));
+            }
+        });
+
+        // Atualiza as descrições enriquecidas no banco: um UPDATE para um resultado, um batch JDBC para vários
+        if (conteudos.size() == 1) {
+            Map.Entry<Long, String> unico = conteudos.entrySet().iterator().next();
+            this.dadosImagemRepository.updateConteudo(unico.getKey(), unico.getValue(), StatusImagem.ENRICHED);
+        } else if (!conteudos.isEmpty()) {
+            this.dadosImagemRepository.updateConteudoAll(conteudos, StatusImagem.ENRICHED);
+        }
+        // As consultas seguintes já veem o conteúdo enriquecido, e quem espera por SSE ou long-poll é avisado
+        this.resultadoImagemCache.invalidateAll(conteudos.keySet());
+        this.notificacaoService.publicarConclusao(conteudos.keySet());
+        log.info("Descrições enriquecidas salvas para " + conteudos.size() + " imagens, " + motivos.size() + " com falha");
     }
 }
@@ -0,0 +1,125 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Optional;
+
+@Log
+@Service
+@RequiredArgsConstructor
+public class AsyncUploadService {
+
+    private final DadosImagemRepository dadosImagemRepository;
+    private final UploadStagingService uploadStagingService;
+    private final CloudinaryService cloudinaryService;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final OutboxService outboxService;
+    private final DeduplicationService deduplicationService;
+    private final TaskExecutor uploadExecutor;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    /**
+     * Guarda a imagem no staging, registra a linha como PENDING e agenda o upload.
+     * Conteúdo já enviado antes é resolvido na hora, sem upload nem enriquecimento.
+     * Lança {@link TaskRejectedException} quando o staging ou a fila de trabalho estão cheios.
+     */
+    public DadosImagem enqueue(MultipartFile arquivo, String nomeArquivo, String descricao) throws Exception {
+        UploadStagingService.ArquivoStaging staged = this.uploadStagingService.stage(arquivo);
+
+        Optional<DadosImagem> duplicada;
+        DadosImagem savedImagem = null;
+        try {
+            duplicada = this.deduplicationService.findDuplicate(staged.sha256());
+            if (duplicada.isEmpty()) {
+                savedImagem = this.dadosImagemRepository.save(DadosImagem.builder()
+                        .nomeArquivo(nomeArquivo)
+                        .descricao(descricao)
+                        .conteudo("")
+                        .sha256(staged.sha256())
+                        .status(StatusImagem.PENDING)
+                        .build());
+            }
+        } catch (RuntimeException e) {
+            this.uploadStagingService.release(staged);
+            throw e;
+        }
+
+        if (duplicada.isPresent()) {
+            this.uploadStagingService.release(staged);
+            return this.saveDuplicate(duplicada.get(), nomeArquivo, descricao);
+        }
+
+        Long id = savedImagem.getId();
+        try {
+            this.uploadExecutor.execute(() -> this.process(id, staged, nomeArquivo));
+        } catch (TaskRejectedException e) {
+            log.warning("Fila de upload cheia, rejeitando imagem " + id);
+            this.uploadStagingService.release(staged);
+            this.dadosImagemRepository.deleteById(id);
+            throw e;
+        }
+
+        return savedImagem;
+    }
+
+    private DadosImagem saveDuplicate(DadosImagem original, String nomeArquivo, String descricao) {
+        DadosImagem copia = this.deduplicationService.reutilizar(original, nomeArquivo, descricao);
+        return this.outboxService.save(copia, this.deduplicationService.precisaEnriquecer(copia));
+    }
+
+    void process(Long id, UploadStagingService.ArquivoStaging staged, String nomeArquivo) {
+        try {
+            ImagemCloudinary enviada;
+            ImagePreprocessingService.ImagemPreparada preparada = this.imagePreprocessingService
+                    .preparar(new FileSystemResource(staged.caminho()), staged.tamanho());
+            try (InputStream conteudo = preparada.conteudo().getInputStream()) {
+                enviada = this.cloudinaryService.upload(nomeArquivo, conteudo, preparada.tamanho());
+            }
+
+            var imagem = this.dadosImagemRepository.findById(id);
+            if (imagem.isEmpty()) {
+                log.warning("Imagem " + id + " removida antes do fim do upload");
+                return;
+            }
+
+            DadosImagem dadosImagem = imagem.get();
+            if (enviada == null) {
+                this.marcarFalha(dadosImagem);
+                return;
+            }
+
+            dadosImagem.setLinkPublico(enviada.linkPublico());
+            dadosImagem.setIdCloudinary(enviada.publicId());
+            dadosImagem.setRendicoes(new ArrayList<>(enviada.rendicoes()));
+            dadosImagem.setStatus(StatusImagem.UPLOADED);
+            // Status e mensagens para as filas AMQP na mesma transação (outbox)
+            this.outboxService.save(dadosImagem, true);
+        } catch (Exception e) {
+            log.severe("Erro no upload em segundo plano da imagem " + id + ": " + e.getMessage());
+            this.dadosImagemRepository.findById(id).ifPresent(this::marcarFalha);
+        } finally {
+            this.uploadStagingService.release(staged);
+        }
+    }
+
+    // Quem consulta enquanto a imagem está PENDING pode ter a linha em cache
+    private void marcarFalha(DadosImagem dadosImagem) {
+        dadosImagem.setStatus(StatusImagem.FAILED);
+        this.dadosImagemRepository.save(dadosImagem);
+        this.resultadoImagemCache.invalidate(dadosImagem.getId());
+    }
+}
@@ -0,0 +1,159 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.dto.ResultadoUpload;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@Log
+@Service
+@RequiredArgsConstructor
+public class BatchUploadService {
+
+    private final DadosImagemRepository dadosImagemRepository;
+    private final CloudinaryService cloudinaryService;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final OutboxService outboxService;
+    private final DeduplicationService deduplicationService;
+    private final TaskExecutor batchUploadExecutor;
+
+    @Value("${upload.batch.max-files:500}")
+    private int maxFiles;
+
+    /**
+     * Envia os arquivos ao Cloudinary em paralelo, grava todas as linhas em um único batch
+     * e publica as mensagens de enriquecimento juntas. Devolve o resultado de cada arquivo,
+     * na ordem recebida.
+     */
+    public List<ResultadoUpload> saveFiles(List<MultipartFile> arquivos, List<String> descricoes) {
+        if (arquivos.size() > this.maxFiles) {
+            throw new IllegalArgumentException("O lote excede o limite de " + this.maxFiles + " arquivos.");
+        }
+
+        // Calcula o hash de cada imagem antes de disparar os uploads: conteúdo já conhecido
+        // (no banco ou repetido no próprio lote) não vai de novo ao Cloudinary
+        List<CompletableFuture<ImagemCloudinary>> uploads = new ArrayList<>(arquivos.size());
+        String[] digests = new String[arquivos.size()];
+        DadosImagem[] duplicadas = new DadosImagem[arquivos.size()];
+        Map<String, CompletableFuture<ImagemCloudinary>> uploadsPorDigest = new HashMap<>();
+        for (int i = 0; i < arquivos.size(); i++) {
+            MultipartFile arquivo = arquivos.get(i);
+            if (!this.isImagem(arquivo)) {
+                uploads.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+
+            try {
+                digests[i] = this.deduplicationService.sha256(arquivo);
+            } catch (IOException e) {
+                uploads.add(CompletableFuture.failedFuture(e));
+                continue;
+            }
+
+            CompletableFuture<ImagemCloudinary> repetido = uploadsPorDigest.get(digests[i]);
+            if (repetido != null) {
+                this.deduplicationService.recordHit();
+                uploads.add(repetido);
+                continue;
+            }
+
+            Optional<DadosImagem> duplicada = this.deduplicationService.findDuplicate(digests[i]);
+            if (duplicada.isPresent()) {
+                duplicadas[i] = duplicada.get();
+                uploads.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+
+            CompletableFuture<ImagemCloudinary> upload = CompletableFuture.supplyAsync(() -> this.upload(arquivo), this.batchUploadExecutor);
+            uploadsPorDigest.put(digests[i], upload);
+            uploads.add(upload);
+        }
+
+        ResultadoUpload[] resultados = new ResultadoUpload[arquivos.size()];
+        List<DadosImagem> imagens = new ArrayList<>();
+        List<Integer> posicoes = new ArrayList<>();
+        for (int i = 0; i < arquivos.size(); i++) {
+            MultipartFile arquivo = arquivos.get(i);
+            String nomeArquivo = arquivo.getOriginalFilename();
+
+            if (!this.isImagem(arquivo)) {
+                resultados[i] = ResultadoUpload.falha(nomeArquivo, "O arquivo enviado não é uma imagem válida.");
+                continue;
+            }
+
+            String descricao = descricoes != null && i < descricoes.size() ? descricoes.get(i) : "";
+            if (duplicadas[i] != null) {
+                imagens.add(this.deduplicationService.reutilizar(duplicadas[i], nomeArquivo, descricao));
+                posicoes.add(i);
+                continue;
+            }
+
+            ImagemCloudinary enviada;
+            try {
+                enviada = uploads.get(i).join();
+            } catch (CompletionException e) {
+                resultados[i] = ResultadoUpload.falha(nomeArquivo, e.getCause().getMessage());
+                continue;
+            }
+            if (enviada == null) {
+                resultados[i] = ResultadoUpload.falha(nomeArquivo, "Falha no upload para o Cloudinary.");
+                continue;
+            }
+
+            imagens.add(DadosImagem.builder()
+                    .nomeArquivo(nomeArquivo)
+                    .descricao(descricao)
+                    .conteudo("")
+                    .linkPublico(enviada.linkPublico())
+                    .idCloudinary(enviada.publicId())
+                    .rendicoes(new ArrayList<>(enviada.rendicoes()))
+                    .sha256(digests[i])
+                    .status(StatusImagem.UPLOADED)
+                    .build());
+            posicoes.add(i);
+        }
+
+        // Imagens e mensagens para a fila AMQP na mesma transação (outbox); duplicadas já enriquecidas ficam de fora
+        this.outboxService.insertAll(imagens, this.deduplicationService::precisaEnriquecer);
+        for (int j = 0; j < imagens.size(); j++) {
+            DadosImagem imagem = imagens.get(j);
+            resultados[posicoes.get(j)] = ResultadoUpload.sucesso(imagem.getNomeArquivo(), imagem.getId(), imagem.getLinkPublico());
+        }
+
+        log.info("Lote processado: " + imagens.size() + " de " + arquivos.size() + " arquivos enviados");
+        return Arrays.asList(resultados);
+    }
+
+    private ImagemCloudinary upload(MultipartFile arquivo) {
+        ImagePreprocessingService.ImagemPreparada preparada = this.imagePreprocessingService.preparar(arquivo, arquivo.getSize());
+        try (InputStream conteudo = preparada.conteudo().getInputStream()) {
+            return this.cloudinaryService.upload(arquivo.getOriginalFilename(), conteudo, preparada.tamanho());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isImagem(MultipartFile arquivo) {
+        String contentType = arquivo.getContentType();
+        return contentType != null && contentType.startsWith("image/");
+    }
+}
@@ -0,0 +1,151 @@
+package com.enriquecimento.upload.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Transformation;
+import com.cloudinary.utils.ObjectUtils;
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.entity.Rendicao;
+import com.enriquecimento.upload.service.PipelineMetrics.Etapa;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+@Log
+@Service
+@RequiredArgsConstructor
+public class CloudinaryService {
+
+    public static final String PADRAO = "padrao";
+
+    private final Cloudinary cloudinary;
+    private final PipelineMetrics pipelineMetrics;
+    private final ConcurrencyLimiter cloudinaryConcurrencyLimiter;
+
+    // Larguras das variantes responsivas geradas no upload, além da versão exibida
+    @Value("${cloudinary.renditions.widths:320,640,1280}")
+    private int[] renditionWidths = {320, 640, 1280};
+
+    // Tamanho de cada parte enviada ao Cloudinary (mínimo aceito pela API: 5 MB)
+    @Value("${cloudinary.upload.chunk-size:6291456}")
+    private int chunkSize;
+
+    /**
+     * Envia a imagem ao Cloudinary e devolve o public_id e as URLs das versões transformadas,
+     * ou {@code null} quando o upload falha.
+     */
+    public ImagemCloudinary upload(String nomeImagem, InputStream conteudo, long tamanho) {
+        try {
+            return this.cloudinaryConcurrencyLimiter.executar(() -> this.enviar(nomeImagem, conteudo, tamanho));
+        } catch (Exception e) {
+            // Sem vaga dentro da espera máxima; o upload não chegou a sair
+            log.log(Level.SEVERE, e.getMessage());
+            return null;
+        }
+    }
+
+    private ImagemCloudinary enviar(String nomeImagem, InputStream conteudo, long tamanho) {
+        Timer.Sample inicio = this.pipelineMetrics.iniciar();
+        try {
+
+            log.info("Iniciando upload");
+
+            // As transformações vão junto com o upload (eager): o Cloudinary as gera antes de
+            // responder, em vez de na primeira requisição de cada uma à CDN
+            Map<String, Transformation> variantes = this.variantes();
+            Map params1 = ObjectUtils.asMap(
+                "filename", nomeImagem,
+                "use_filename", true,
+                "unique_filename", false,
+                "overwrite", true,
+                "eager", new ArrayList<>(variantes.values())
+            );
+            // Envia o stream em partes de tamanho fixo: o heap usado por
+            // requisição fica limitado ao buffer da parte, sem cópia em disco
+            Map uploadResult = this.cloudinary.uploader().uploadLarge(conteudo, params1, this.bufferSize(tamanho));
+            String publicId = uploadResult.get("public_id").toString();
+            log.info(uploadResult.toString());
+
+            List<Rendicao> rendicoes = this.rendicoes(publicId, variantes, uploadResult.get("eager"));
+            this.pipelineMetrics.registrar(Etapa.CLOUDINARY_UPLOAD, inicio, PipelineMetrics.SUCESSO);
+            return new ImagemCloudinary(publicId, rendicoes.get(0).getUrl(), rendicoes);
+        } catch (Exception e) {
+            log.log(Level.SEVERE, e.getMessage());
+            this.pipelineMetrics.registrar(Etapa.CLOUDINARY_UPLOAD, inicio, PipelineMetrics.ERRO);
+            return null; // Return null in case of error
+        }
+    }
+
+    /**
+     * Consulta os detalhes do recurso com quality_analysis (Admin API).
+     */
+    public Map analyzeQuality(String publicId) throws Exception {
+        Map params = ObjectUtils.asMap(
+                "quality_analysis", true
+        );
+        return this.cloudinaryConcurrencyLimiter.executar(() -> {
+            Timer.Sample inicio = this.pipelineMetrics.iniciar();
+            String resultado = PipelineMetrics.ERRO;
+            try {
+                Map recurso = this.cloudinary.api().resource(publicId, params);
+                resultado = PipelineMetrics.SUCESSO;
+                return recurso;
+            } finally {
+                this.pipelineMetrics.registrar(Etapa.CLOUDINARY_RECURSO, inicio, resultado);
+            }
+        });
+    }
+
+    /**
+     * Transformações pedidas no upload, na ordem da resposta: a exibida (pad 300x400 com fundo na
+     * cor predominante) e uma variante por largura de {@code cloudinary.renditions.widths}.
+     */
+    private Map<String, Transformation> variantes() {
+        Map<String, Transformation> variantes = new LinkedHashMap<>();
+        variantes.put(PADRAO, new Transformation()
+                .crop("pad")
+                .width(300)
+                .height(400)
+                .background("auto:predominant"));
+        for (int largura : this.renditionWidths) {
+            // limit: imagens mais estreitas que a largura pedida não são ampliadas
+            variantes.put("w" + largura, new Transformation().crop("limit").width(largura));
+        }
+        return variantes;
+    }
+
+    // URL e dimensões de cada variante pelo item "eager" da resposta; sem ele, a URL é montada localmente
+    private List<Rendicao> rendicoes(String publicId, Map<String, Transformation> variantes, Object eager) {
+        List<?> geradas = eager instanceof List<?> lista ? lista : List.of();
+        List<Rendicao> rendicoes = new ArrayList<>(variantes.size());
+        for (Map.Entry<String, Transformation> variante : variantes.entrySet()) {
+            int i = rendicoes.size();
+            Map<?, ?> gerada = i < geradas.size() && geradas.get(i) instanceof Map<?, ?> item ? item : Map.of();
+            Object url = gerada.get("secure_url");
+            rendicoes.add(Rendicao.builder()
+                    .nome(variante.getKey())
+                    .largura(gerada.get("width") instanceof Number largura ? largura.intValue() : null)
+                    .altura(gerada.get("height") instanceof Number altura ? altura.intValue() : null)
+                    .url(url != null ? url.toString()
+                            : this.cloudinary.url().secure(true).transformation(variante.getValue()).generate(publicId))
+                    .build());
+        }
+        return rendicoes;
+    }
+
+    private int bufferSize(long tamanho) {
+        if (tamanho <= 0) {
+            return this.chunkSize;
+        }
+        // Arquivos menores que uma parte seguem em uma única requisição, sem alocar o buffer inteiro
+        return (int) Math.min(this.chunkSize, tamanho);
+    }
+}
@@ -0,0 +1,89 @@
+package com.enriquecimento.upload.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limite de chamadas simultâneas a um serviço externo. Com threads virtuais o tamanho dos pools
+ * deixa de limitar a concorrência: quem passa do limite espera uma vaga, por ordem de chegada,
+ * até a espera máxima, em vez de abrir mais uma chamada.
+ */
+public class ConcurrencyLimiter implements MeterBinder {
+
+    private final String servico;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    private final Semaphore vagas;
+
+    private final AtomicInteger aguardando = new AtomicInteger();
+    private final AtomicLong esgotadas = new AtomicLong();
+
+    public ConcurrencyLimiter(String servico, int maximo, Duration esperaMaxima) {
+        this.servico = servico;
+        this.maximo = maximo;
+        this.esperaMaximaMs = esperaMaxima.toMillis();
+        this.vagas = new Semaphore(maximo, true);
+    }
+
+    /**
+     * Executa a chamada dentro do limite. Lança {@link TimeoutException} se nenhuma vaga abrir
+     * dentro da espera máxima; a chamada não chega a ser feita.
+     */
+    public <T> T executar(Callable<T> chamada) throws Exception {
+        this.aguardando.incrementAndGet();
+        boolean liberado;
+        try {
+            liberado = this.vagas.tryAcquire(this.esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } finally {
+            this.aguardando.decrementAndGet();
+        }
+        if (!liberado) {
+            this.esgotadas.incrementAndGet();
+            throw new TimeoutException("Sem vaga para chamar " + this.servico + " em " + this.esperaMaximaMs
+                    + " ms (limite de " + this.maximo + " chamadas simultâneas)");
+        }
+        try {
+            return chamada.call();
+        } finally {
+            this.vagas.release();
+        }
+    }
+
+    public int getEmUso() {
+        return this.maximo - this.vagas.availablePermits();
+    }
+
+    public int getAguardando() {
+        return this.aguardando.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("downstream.concurrency.active", this, ConcurrencyLimiter::getEmUso)
+                .tag("servico", this.servico)
+                .description("Chamadas em andamento ao serviço externo")
+                .register(registry);
+        Gauge.builder("downstream.concurrency.waiting", this, ConcurrencyLimiter::getAguardando)
+                .tag("servico", this.servico)
+                .description("Chamadas esperando uma vaga no limite de concorrência")
+                .register(registry);
+        Gauge.builder("downstream.concurrency.limit", this, limitador -> limitador.maximo)
+                .tag("servico", this.servico)
+                .description("Máximo de chamadas simultâneas ao serviço externo")
+                .register(registry);
+        FunctionCounter.builder("downstream.concurrency.timeouts", this.esgotadas, AtomicLong::get)
+                .tag("servico", this.servico)
+                .description("Chamadas desistidas por falta de vaga dentro da espera máxima")
+                .register(registry);
+    }
+}
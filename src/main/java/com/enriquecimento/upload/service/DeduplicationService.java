@@ -0,0 +1,134 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicação por conteúdo: imagens com o mesmo SHA-256 de uma imagem já enviada
+ * reaproveitam o link do Cloudinary e o enriquecimento existentes.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class DeduplicationService implements MeterBinder {
+
+    // Imagens já publicadas no Cloudinary, enriquecidas ou não
+    private static final Set<StatusImagem> REAPROVEITAVEIS = EnumSet.of(StatusImagem.UPLOADED, StatusImagem.ENRICHED);
+
+    private final DadosImagemRepository dadosImagemRepository;
+
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    public static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    public static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Calcula o SHA-256 do multipart lendo o stream uma única vez, sem carregá-lo no heap.
+     */
+    public String sha256(MultipartFile arquivo) throws IOException {
+        MessageDigest digest = novoDigest();
+        try (InputStream conteudo = new DigestInputStream(arquivo.getInputStream(), digest)) {
+            conteudo.transferTo(OutputStream.nullOutputStream());
+        }
+        return hex(digest);
+    }
+
+    /**
+     * Procura uma imagem já enviada com o mesmo conteúdo e contabiliza o acerto ou a falha.
+     */
+    public Optional<DadosImagem> findDuplicate(String sha256) {
+        Optional<DadosImagem> original = this.dadosImagemRepository
+                .findFirstBySha256AndStatusInOrderByIdAsc(sha256, REAPROVEITAVEIS);
+        if (original.isPresent()) {
+            this.acertos.incrementAndGet();
+            log.info("Imagem duplicada da " + original.get().getId() + ", reaproveitando upload e enriquecimento");
+        } else {
+            this.falhas.incrementAndGet();
+        }
+        return original;
+    }
+
+    /**
+     * Contabiliza como acerto uma repetição resolvida sem consultar o banco (ex.: dentro do mesmo lote).
+     */
+    public void recordHit() {
+        this.acertos.incrementAndGet();
+    }
+
+    /**
+     * Monta (sem gravar) uma nova linha que reaproveita o link, as rendições, o enriquecimento e a análise de qualidade da original.
+     */
+    public DadosImagem reutilizar(DadosImagem original, String nomeArquivo, String descricao) {
+        return DadosImagem.builder()
+                .nomeArquivo(nomeArquivo)
+                .descricao(descricao)
+                .conteudo(original.getConteudo() != null ? original.getConteudo() : "")
+                .linkPublico(original.getLinkPublico())
+                .idCloudinary(original.getIdCloudinary())
+                .rendicoes(new ArrayList<>(original.getRendicoes()))
+                .sha256(original.getSha256())
+                .status(this.precisaEnriquecer(original) ? StatusImagem.UPLOADED : StatusImagem.ENRICHED)
+                .notaQualidade(original.getNotaQualidade())
+                .analiseQualidade(original.getAnaliseQualidade())
+                .build();
+    }
+
+    /**
+     * Indica se a imagem ainda precisa passar pelo Groq (a original pode estar com o enriquecimento pendente).
+     */
+    public boolean precisaEnriquecer(DadosImagem imagem) {
+        return imagem.getConteudo() == null || imagem.getConteudo().isBlank();
+    }
+
+    public double getTaxaDeAcerto() {
+        long total = this.acertos.get() + this.falhas.get();
+        return total == 0 ? 0.0 : (double) this.acertos.get() / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("upload.dedup", this.acertos, AtomicLong::get)
+                .tag("resultado", "hit")
+                .description("Uploads resolvidos por uma imagem já existente")
+                .register(registry);
+        FunctionCounter.builder("upload.dedup", this.falhas, AtomicLong::get)
+                .tag("resultado", "miss")
+                .description("Uploads com conteúdo inédito")
+                .register(registry);
+        Gauge.builder("upload.dedup.hit.ratio", this, DeduplicationService::getTaxaDeAcerto)
+                .description("Fração dos uploads resolvidos pela deduplicação")
+                .register(registry);
+    }
+}
@@ -0,0 +1,137 @@
+package com.enriquecimento.upload.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Agrupa as descrições que chegam ao mesmo tempo em uma única completion do Groq:
+ * o lote sai quando junta {@code enrichment.batch.size} itens ou quando o primeiro item
+ * espera {@code enrichment.batch.max-wait-ms}. Se a resposta do lote vier inválida,
+ * os itens seguem em chamadas individuais; se a chamada falhar (429 esgotado, 5xx, prazo),
+ * todos os itens falham juntos e seguem para a repetição com atraso da fila.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class EnrichmentBatcher {
+
+    private final GroqService groqService;
+    private final TaskScheduler enrichmentBatchScheduler;
+
+    @Value("${enrichment.batch.size:8}")
+    private int batchSize;
+
+    @Value("${enrichment.batch.max-wait-ms:50}")
+    private long maxWaitMs;
+
+    private final Object lock = new Object();
+    private List<Pedido> pendentes = new ArrayList<>();
+    private ScheduledFuture<?> flushAgendado;
+
+    record Pedido(String id, String descricao, CompletableFuture<String> resultado) {
+    }
+
+    /**
+     * Enfileira a descrição no lote atual; o future completa com o texto melhorado
+     * ou excepcionalmente quando até a chamada individual falha.
+     */
+    public CompletableFuture<String> submit(String id, String descricao) {
+        Pedido pedido = new Pedido(id, descricao, new CompletableFuture<>());
+
+        List<Pedido> lote = null;
+        synchronized (this.lock) {
+            this.pendentes.add(pedido);
+            if (this.pendentes.size() >= this.batchSize) {
+                lote = this.retirarLote();
+            } else if (this.flushAgendado == null) {
+                this.flushAgendado = this.enrichmentBatchScheduler.schedule(
+                        this::flushPorTempo, Instant.now().plusMillis(this.maxWaitMs));
+            }
+        }
+
+        // Lote cheio: quem completou o lote dispara o envio (sem bloquear)
+        if (lote != null) {
+            this.enviar(lote);
+        }
+        return pedido.resultado();
+    }
+
+    private void flushPorTempo() {
+        List<Pedido> lote;
+        synchronized (this.lock) {
+            lote = this.retirarLote();
+        }
+        if (!lote.isEmpty()) {
+            this.enviar(lote);
+        }
+    }
+
+    // Chamado com o lock
+    private List<Pedido> retirarLote() {
+        List<Pedido> lote = this.pendentes;
+        this.pendentes = new ArrayList<>();
+        if (this.flushAgendado != null) {
+            this.flushAgendado.cancel(false);
+            this.flushAgendado = null;
+        }
+        return lote;
+    }
+
+    void enviar(List<Pedido> lote) {
+        if (lote.size() == 1) {
+            this.individual(lote.get(0));
+            return;
+        }
+
+        Map<String, String> descricoesPorId = new LinkedHashMap<>();
+        lote.forEach(pedido -> descricoesPorId.putIfAbsent(pedido.id(), pedido.descricao()));
+
+        this.groqService.completeBatch(descricoesPorId).whenComplete((melhoradas, e) -> {
+            Throwable causa = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (causa != null && !(causa instanceof GroqService.RespostaLoteInvalidaException)) {
+                // Repetir item a item multiplicaria as chamadas justo quando o Groq está limitando ou fora
+                log.warning("Falha na chamada em lote, " + lote.size() + " itens vão para a repetição: " + causa);
+                lote.forEach(pedido -> pedido.resultado().completeExceptionally(causa));
+                return;
+            }
+            if (causa != null) {
+                log.warning("Resposta em lote inválida, usando chamadas individuais: " + causa.getMessage());
+                melhoradas = Map.of();
+            }
+
+            int individuais = 0;
+            for (Pedido pedido : lote) {
+                String conteudo = melhoradas.get(pedido.id());
+                if (conteudo != null) {
+                    pedido.resultado().complete(conteudo);
+                } else {
+                    individuais++;
+                    this.individual(pedido);
+                }
+            }
+            log.info("Lote de enriquecimento com " + lote.size() + " itens, " + individuais + " em chamadas individuais");
+        });
+    }
+
+    private void individual(Pedido pedido) {
+        this.groqService.complete(this.groqService.buildPrompt(pedido.descricao())).whenComplete((conteudo, e) -> {
+            if (e != null) {
+                pedido.resultado().completeExceptionally(e);
+            } else {
+                pedido.resultado().complete(conteudo);
+            }
+        });
+    }
+}
@@ -0,0 +1,169 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.config.AmqpConfig;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repetição com atraso das mensagens de enriquecimento que falharam: cada nova tentativa vai para
+ * a fila de repetição do nível seguinte (TTL crescente) e, esgotados os níveis, para a fila de
+ * estacionamento, de onde pode ser reenviada em bloco.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class EnrichmentRetryService implements MeterBinder {
+
+    public static final String RETRY_COUNT_HEADER = "x-retry-count";
+    public static final String PARKING_REASON_HEADER = "x-parking-reason";
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${amqp.exchange.name:image-processing-exchange}")
+    private String exchangeName;
+
+    @Value("${amqp.routing.key:image-processing}")
+    private String routingKey;
+
+    @Value("${amqp.retry.exchange.name:image-processing-retry}")
+    private String retryExchangeName;
+
+    @Value("${amqp.retry.delays-ms:5000,25000,125000}")
+    private long[] retryDelaysMs = {5000, 25000, 125000};
+
+    @Value("${amqp.dlx.name:image-processing-dlx}")
+    private String deadLetterExchangeName;
+
+    @Value("${amqp.parking-lot.queue.name:image-processing-parking-lot}")
+    private String parkingLotQueueName;
+
+    @Value("${amqp.publisher.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs = 5000;
+
+    private final AtomicLong repeticoes = new AtomicLong();
+    private final AtomicLong estacionadas = new AtomicLong();
+    private final AtomicLong reenviadas = new AtomicLong();
+
+    /**
+     * Mensagem que não pôde ser processada; falhas definitivas (ex.: corpo ilegível) vão direto
+     * para a fila de estacionamento.
+     */
+    public record Falha(Message mensagem, String motivo, boolean definitiva) {
+    }
+
+    /**
+     * Publica as falhas na fila de repetição do próximo nível ou na de estacionamento e aguarda as
+     * confirmações do broker. Se a publicação falhar, a exceção chega ao consumidor e o lote volta
+     * para a fila principal.
+     */
+    public void reenviar(List<Falha> falhas) {
+        if (falhas.isEmpty()) {
+            return;
+        }
+        int[] estacionadasAgora = {0};
+        this.rabbitTemplate.invoke(operations -> {
+            for (Falha falha : falhas) {
+                MessageProperties propriedades = falha.mensagem().getMessageProperties();
+                int tentativas = tentativas(propriedades);
+                if (!falha.definitiva() && tentativas < this.retryDelaysMs.length) {
+                    propriedades.setHeader(RETRY_COUNT_HEADER, tentativas + 1);
+                    operations.send(this.retryExchangeName, AmqpConfig.retryRoutingKey(tentativas), falha.mensagem());
+                } else {
+                    propriedades.setHeader(PARKING_REASON_HEADER, falha.motivo());
+                    operations.send(this.deadLetterExchangeName, AmqpConfig.PARKING_LOT_ROUTING_KEY, falha.mensagem());
+                    estacionadasAgora[0]++;
+                    log.warning("Mensagem estacionada após " + tentativas + " repetições: " + falha.motivo());
+                }
+            }
+            operations.waitForConfirmsOrDie(this.confirmTimeoutMs);
+            return null;
+        });
+        this.estacionadas.addAndGet(estacionadasAgora[0]);
+        this.repeticoes.addAndGet(falhas.size() - estacionadasAgora[0]);
+    }
+
+    /**
+     * Devolve até {@code max} mensagens da fila de estacionamento para a fila principal, com a
+     * contagem de repetições zerada. As mensagens só são confirmadas na fila de estacionamento
+     * depois que o broker confirma a republicação.
+     */
+    public int replayParkingLot(int max) {
+        Integer total = this.rabbitTemplate.execute(channel -> {
+            channel.confirmSelect();
+            int quantidade = 0;
+            long ultimaTag = -1;
+            try {
+                while (quantidade < max) {
+                    GetResponse resposta = channel.basicGet(this.parkingLotQueueName, false);
+                    if (resposta == null) {
+                        break;
+                    }
+                    channel.basicPublish(this.exchangeName, this.routingKey, semRepeticoes(resposta.getProps()), resposta.getBody());
+                    ultimaTag = resposta.getEnvelope().getDeliveryTag();
+                    quantidade++;
+                }
+                if (ultimaTag >= 0) {
+                    channel.waitForConfirmsOrDie(this.confirmTimeoutMs);
+                    channel.basicAck(ultimaTag, true);
+                }
+            } catch (Exception e) {
+                // Nada foi confirmado: tudo volta para a fila de estacionamento
+                if (ultimaTag >= 0) {
+                    channel.basicNack(ultimaTag, true, true);
+                }
+                throw e;
+            }
+            return quantidade;
+        });
+        int reenviadasAgora = total == null ? 0 : total;
+        this.reenviadas.addAndGet(reenviadasAgora);
+        log.info(reenviadasAgora + " mensagens reenviadas da fila de estacionamento");
+        return reenviadasAgora;
+    }
+
+    private static AMQP.BasicProperties semRepeticoes(AMQP.BasicProperties propriedades) {
+        Map<String, Object> headers = new HashMap<>();
+        if (propriedades.getHeaders() != null) {
+            headers.putAll(propriedades.getHeaders());
+        }
+        headers.remove(RETRY_COUNT_HEADER);
+        headers.remove(PARKING_REASON_HEADER);
+        headers.remove("x-death");
+        return propriedades.builder().headers(headers).build();
+    }
+
+    static int tentativas(MessageProperties propriedades) {
+        Object valor = propriedades.getHeader(RETRY_COUNT_HEADER);
+        return valor instanceof Number numero ? numero.intValue() : 0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("enrichment.retry", this.repeticoes, AtomicLong::get)
+                .tag("destino", "retry")
+                .description("Mensagens de enriquecimento enviadas para nova tentativa com atraso")
+                .register(registry);
+        FunctionCounter.builder("enrichment.retry", this.estacionadas, AtomicLong::get)
+                .tag("destino", "parking-lot")
+                .description("Mensagens de enriquecimento enviadas para a fila de estacionamento")
+                .register(registry);
+        FunctionCounter.builder("enrichment.retry.replayed", this.reenviadas, AtomicLong::get)
+                .description("Mensagens reenviadas da fila de estacionamento")
+                .register(registry);
+    }
+}
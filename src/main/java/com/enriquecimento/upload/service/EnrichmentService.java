@@ -0,0 +1,168 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.EstatisticasCache;
+import com.enriquecimento.upload.entity.EnriquecimentoCache;
+import com.enriquecimento.upload.repository.EnriquecimentoCacheRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Enriquecimento de descrições com cache em dois níveis na frente do Groq:
+ * memória (Caffeine, com TTL) e tabela no banco, ambos indexados pelo hash
+ * do modelo e do prompt normalizado.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class EnrichmentService implements MeterBinder {
+
+    private final GroqService groqService;
+    private final EnrichmentBatcher enrichmentBatcher;
+    private final EnriquecimentoCacheRepository enriquecimentoCacheRepository;
+    private final AsyncCache<String, String> enrichmentCache;
+
+    private final AtomicLong persistenteAcertos = new AtomicLong();
+    private final AtomicLong persistenteFalhas = new AtomicLong();
+
+    /**
+     * Devolve a descrição enriquecida, consultando o Groq só quando nenhum dos níveis tem a resposta.
+     * Chamadas simultâneas com a mesma chave aguardam uma única consulta, e as faltas de
+     * chaves diferentes são agrupadas em lotes pelo {@link EnrichmentBatcher}. Falhas completam
+     * o future com exceção para que a mensagem seja repetida.
+     */
+    public CompletableFuture<String> enrich(String imageId, String description) {
+        String modelo = this.groqService.getModel();
+        String chave = chave(modelo, this.groqService.buildPrompt(normalizar(description)));
+
+        // Futures que completam com exceção são descartados pelo Caffeine: falhas não entram em nenhum dos níveis
+        return this.enrichmentCache.get(chave, (k, executor) -> this.carregar(k, modelo, imageId, description));
+    }
+
+    /**
+     * Variante em stream de {@link #enrich}: o texto chega a {@code aoReceber} em pedaços, à medida
+     * que o Groq gera. Com a resposta em cache, ela é entregue inteira de uma vez. O resultado vai
+     * para os dois níveis, então o consumidor da fila não chama o Groq de novo para a mesma descrição.
+     */
+    public CompletableFuture<String> enrichStreaming(String description, Consumer<String> aoReceber) {
+        String modelo = this.groqService.getModel();
+        String chave = chave(modelo, this.groqService.buildPrompt(normalizar(description)));
+
+        CompletableFuture<String> emMemoria = this.enrichmentCache.getIfPresent(chave);
+        if (emMemoria != null) {
+            return emMemoria.thenApply(conteudo -> this.entregar(conteudo, aoReceber));
+        }
+        Optional<EnriquecimentoCache> persistido = this.enriquecimentoCacheRepository.findById(chave);
+        if (persistido.isPresent()) {
+            this.persistenteAcertos.incrementAndGet();
+            return CompletableFuture.completedFuture(this.entregar(persistido.get().getConteudo(), aoReceber));
+        }
+        this.persistenteFalhas.incrementAndGet();
+
+        return this.groqService.stream(this.groqService.buildPrompt(description), aoReceber).thenApply(conteudo -> {
+            this.persistir(chave, modelo, conteudo);
+            this.enrichmentCache.put(chave, CompletableFuture.completedFuture(conteudo));
+            return conteudo;
+        });
+    }
+
+    private String entregar(String conteudo, Consumer<String> aoReceber) {
+        aoReceber.accept(conteudo);
+        return conteudo;
+    }
+
+    /**
+     * Remove as entradas do modelo informado (ou todas, quando {@code null}) e limpa o nível em memória.
+     */
+    public int invalidate(String modelo) {
+        int removidos = modelo == null
+                ? this.enriquecimentoCacheRepository.deleteAllEntries()
+                : this.enriquecimentoCacheRepository.deleteByModelo(modelo);
+        // As chaves em memória são hashes: não há como filtrar por modelo
+        this.enrichmentCache.synchronous().invalidateAll();
+        log.info("Cache de enriquecimento invalidado" + (modelo != null ? " para o modelo " + modelo : "") + ": " + removidos + " entradas");
+        return removidos;
+    }
+
+    public EstatisticasCache stats() {
+        CacheStats memoria = this.enrichmentCache.synchronous().stats();
+        return new EstatisticasCache(
+                memoria.hitCount(),
+                memoria.missCount(),
+                memoria.evictionCount(),
+                this.enrichmentCache.synchronous().estimatedSize(),
+                this.persistenteAcertos.get(),
+                this.persistenteFalhas.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("groq.enrichment.cache.persistent", this.persistenteAcertos, AtomicLong::get)
+                .tag("resultado", "hit")
+                .description("Respostas encontradas na tabela de cache")
+                .register(registry);
+        FunctionCounter.builder("groq.enrichment.cache.persistent", this.persistenteFalhas, AtomicLong::get)
+                .tag("resultado", "miss")
+                .description("Consultas que precisaram chamar o Groq")
+                .register(registry);
+    }
+
+    private CompletableFuture<String> carregar(String chave, String modelo, String imageId, String description) {
+        Optional<EnriquecimentoCache> persistido = this.enriquecimentoCacheRepository.findById(chave);
+        if (persistido.isPresent()) {
+            this.persistenteAcertos.incrementAndGet();
+            return CompletableFuture.completedFuture(persistido.get().getConteudo());
+        }
+        this.persistenteFalhas.incrementAndGet();
+
+        return this.enrichmentBatcher.submit(imageId, description).thenApply(conteudo -> {
+            this.persistir(chave, modelo, conteudo);
+            return conteudo;
+        });
+    }
+
+    private void persistir(String chave, String modelo, String conteudo) {
+        try {
+            this.enriquecimentoCacheRepository.save(EnriquecimentoCache.builder()
+                    .chave(chave)
+                    .modelo(modelo)
+                    .conteudo(conteudo)
+                    .criadoEm(Instant.now())
+                    .build());
+        } catch (Exception e) {
+            // Outra instância pode ter gravado a mesma chave; a resposta continua válida
+            log.warning("Falha ao gravar cache de enriquecimento: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Normaliza a descrição para a chave do cache: Unicode NFKC, espaços colapsados e minúsculas.
+     */
+    static String normalizar(String texto) {
+        String normalizado = Normalizer.normalize(texto != null ? texto : "", Normalizer.Form.NFKC);
+        return normalizado.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    static String chave(String modelo, String prompt) {
+        MessageDigest digest = DeduplicationService.novoDigest();
+        digest.update(modelo.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+        return DeduplicationService.hex(digest);
+    }
+}
@@ -0,0 +1,54 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Enriquecimento sob demanda com o texto entregue em pedaços, para quem está com a tela aberta:
+ * no fim do stream o resultado é gravado como faria o consumidor da fila.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class EnrichmentStreamService {
+
+    private final DadosImagemRepository dadosImagemRepository;
+    private final EnrichmentService enrichmentService;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+    private final NotificacaoService notificacaoService;
+
+    /**
+     * Enriquece a imagem em stream; vazio quando a imagem não existe. Imagens já enriquecidas
+     * entregam o conteúdo gravado de uma vez, sem chamar o Groq.
+     */
+    public Optional<CompletableFuture<String>> enriquecer(Long id, Consumer<String> aoReceber) {
+        Optional<DadosImagem> imagem = this.dadosImagemRepository.findById(id);
+        if (imagem.isEmpty()) {
+            return Optional.empty();
+        }
+        if (imagem.get().getStatus() == StatusImagem.ENRICHED) {
+            aoReceber.accept(imagem.get().getConteudo());
+            return Optional.of(CompletableFuture.completedFuture(imagem.get().getConteudo()));
+        }
+
+        return Optional.of(this.enrichmentService.enrichStreaming(imagem.get().getDescricao(), aoReceber)
+                .thenApply(conteudo -> {
+                    this.dadosImagemRepository.updateConteudo(id, conteudo, StatusImagem.ENRICHED);
+                    this.resultadoImagemCache.invalidate(id);
+                    this.notificacaoService.publicarConclusao(List.of(id));
+                    log.info("Descrição enriquecida em stream salva para imagem " + id);
+                    return conteudo;
+                }));
+    }
+}
@@ -1,25 +1,27 @@
 package com.enriquecimento.upload.service;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
-import com.cloudinary.Transformation;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.dto.ResultadoImagem;
 import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
 
 import com.enriquecimento.upload.repository.DadosImagemRepository;
 
 
+import java.util.ArrayList;
 import java.util.Optional;
-import java.util.logging.Level;
 
-import com.cloudinary.*;
-import com.cloudinary.utils.ObjectUtils;
-import org.springframework.beans.factory.annotation.Value;
-import java.io.FileOutputStream;
-import java.io.File;
-import java.util.Map;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
 
 
 @Log
@@ -28,87 +30,74 @@ import java.util.Map;
 public class FileUploadService {
 
     private final DadosImagemRepository dadosImagemRepository;
-    private final AmqpService amqpService;
-    
-    @Value("${cloudinary.url}")
-    private String cloudinaryUrl;
+    private final OutboxService outboxService;
+    private final CloudinaryService cloudinaryService;
+    private final ImagePreprocessingService imagePreprocessingService;
+    private final DeduplicationService deduplicationService;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+    private final ObjectMapper objectMapper;
     
 
     public DadosImagem saveFile(MultipartFile file, String nomeArquivo, String descricao) throws Exception {
-        
-                
-        File tempFile = File.createTempFile("imagem_", "_" + nomeArquivo);
-        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-            fos.write(file.getBytes());
+        // O multipart já está em disco: o hash é calculado antes do upload para poder evitá-lo
+        String sha256 = this.deduplicationService.sha256(file);
+        Optional<DadosImagem> duplicada = this.deduplicationService.findDuplicate(sha256);
+        if (duplicada.isPresent()) {
+            return this.saveDuplicate(duplicada.get(), nomeArquivo, descricao);
         }
 
-        String url = this.upload(nomeArquivo, tempFile);
+        ImagemCloudinary enviada;
+        ImagePreprocessingService.ImagemPreparada preparada = this.imagePreprocessingService.preparar(file, file.getSize());
+        try (InputStream conteudo = preparada.conteudo().getInputStream()) {
+            enviada = this.cloudinaryService.upload(nomeArquivo, conteudo, preparada.tamanho());
+        }
+        String url = enviada != null ? enviada.linkPublico() : null;
         
         DadosImagem imagem = DadosImagem.builder()
         .nomeArquivo(nomeArquivo)
         .descricao(descricao)
         .conteudo("")
         .linkPublico(url)
+        .idCloudinary(enviada != null ? enviada.publicId() : null)
+        .rendicoes(enviada != null ? new ArrayList<>(enviada.rendicoes()) : new ArrayList<>())
+        .sha256(sha256)
+        .status(enviada != null ? StatusImagem.UPLOADED : StatusImagem.FAILED)
         .build();
 
-        DadosImagem savedImagem = this.dadosImagemRepository.save(imagem);
-        
-        // Envia mensagem para a fila AMQP para processamento
-        try {
-            this.amqpService.sendImageProcessingMessage(
-                savedImagem.getId().toString(),
-                url,
-                descricao
-            );
-        } catch (Exception e) {
-            log.warning("Falha ao enviar mensagem para fila AMQP: " + e.getMessage());
-        }
+        // As mensagens de enriquecimento e de qualidade são gravadas no outbox junto com a imagem
+        // e publicadas depois do commit; upload que falhou não vai ao Groq, como nos caminhos assíncrono e em lote
+        return this.outboxService.save(imagem, enviada != null);
+    }
+
+    private DadosImagem saveDuplicate(DadosImagem original, String nomeArquivo, String descricao) {
+        DadosImagem copia = this.deduplicationService.reutilizar(original, nomeArquivo, descricao);
 
-        return savedImagem;
+        // Só vai ao Groq se a original ainda não tiver sido enriquecida
+        return this.outboxService.save(copia, this.deduplicationService.precisaEnriquecer(copia));
     }
 
-    public Optional<DadosImagem> getFile(Long id) {
-        return this.dadosImagemRepository.findById(id);
+    /**
+     * Consulta a imagem pelo cache (read-through): o banco só é lido na falta, e quem grava
+     * a imagem invalida a entrada. Imagens inexistentes não entram no cache.
+     */
+    public Optional<ResultadoImagem> getFile(Long id) {
+        return Optional.ofNullable(this.resultadoImagemCache.get(id, this::carregar));
     }
 
-    private String upload(String nomeImagem,  File arquivoImagem) {
-        // Set your Cloudinary credentials
-        Cloudinary cloudinary = new Cloudinary(cloudinaryUrl);
-        cloudinary.config.secure = true;
-        log.info(cloudinary.config.cloudName);
+    private ResultadoImagem carregar(Long id) {
+        return this.dadosImagemRepository.findById(id)
+                .map(imagem -> new ResultadoImagem(imagem, this.etag(imagem)))
+                .orElse(null);
+    }
 
+    // ETag forte: hash do JSON devolvido ao cliente, muda com qualquer campo da resposta
+    private String etag(DadosImagem imagem) {
         try {
-
-            log.info("Iniciando upload");
-
-            // Upload the image
-            Map params1 = ObjectUtils.asMap(
-                "use_filename", true,
-                "unique_filename", false,
-                "overwrite", true
-            );
-            Map uploadResult = cloudinary.uploader().upload(arquivoImagem, params1);
-            String publicId = uploadResult.get("public_id").toString();
-            log.info(uploadResult.toString());
-            // Get the asset details
-            Map params2 = ObjectUtils.asMap(
-                    "quality_analysis", true
-            );
-            Map uploadResponse = cloudinary.api().resource(publicId, params2);
-            log.info(uploadResponse.toString());
-
-            // Create the image tag with the transformed image and log it to the console
-            
-            String url = cloudinary.url().transformation(new Transformation()
-                    .crop("pad")
-                    .width(300)
-                    .height(400)
-                    .background("auto:predominant"))
-                    .imageTag(publicId);
-            return url;
-        } catch (Exception e) {
-            log.log(Level.SEVERE, e.getMessage());
-            return null; // Return null in case of error
+            MessageDigest digest = DeduplicationService.novoDigest();
+            digest.update(this.objectMapper.writeValueAsBytes(imagem));
+            return DeduplicationService.hex(digest);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
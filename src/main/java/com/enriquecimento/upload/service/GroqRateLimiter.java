@@ -0,0 +1,238 @@
+package com.enriquecimento.upload.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.net.http.HttpHeaders;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Limitador do lado do cliente para a API do Groq: dois token buckets (requisições e tokens
+ * por minuto) ajustados pelos cabeçalhos {@code x-ratelimit-*} e {@code Retry-After} das respostas.
+ * Quem passa do limite espera (sem bloquear threads) em vez de falhar.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class GroqRateLimiter implements MeterBinder {
+
+    private static final Pattern DURACAO = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final TaskScheduler groqRateLimitScheduler;
+
+    @Value("${groq.rate-limit.requests-per-minute:30}")
+    private long requestsPerMinute = 30;
+
+    @Value("${groq.rate-limit.tokens-per-minute:8000}")
+    private long tokensPerMinute = 8000;
+
+    // Pausa usada quando um 429 chega sem Retry-After nem cabeçalho de reset
+    @Value("${groq.rate-limit.default-backoff-ms:1000}")
+    private long defaultBackoffMs = 1000;
+
+    private LongSupplier relogio = System::currentTimeMillis;
+
+    private final Object lock = new Object();
+    private Bucket requisicoes;
+    private Bucket tokens;
+    private long pausadoAte;
+
+    private final AtomicLong esperas = new AtomicLong();
+    private final AtomicLong respostas429 = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        long agora = this.relogio.getAsLong();
+        this.requisicoes = new Bucket(this.requestsPerMinute, agora);
+        this.tokens = new Bucket(this.tokensPerMinute, agora);
+    }
+
+    /**
+     * Completa quando houver orçamento para uma requisição com o número estimado de tokens.
+     */
+    public CompletableFuture<Void> acquire(long tokensEstimados) {
+        CompletableFuture<Void> liberado = new CompletableFuture<>();
+        this.tentar(liberado, Math.min(tokensEstimados, this.tokensPerMinute));
+        return liberado;
+    }
+
+    private void tentar(CompletableFuture<Void> liberado, long tokensEstimados) {
+        long espera;
+        synchronized (this.lock) {
+            long agora = this.relogio.getAsLong();
+            espera = Math.max(this.pausadoAte - agora, 0);
+            espera = Math.max(espera, this.requisicoes.espera(1, agora));
+            espera = Math.max(espera, this.tokens.espera(tokensEstimados, agora));
+            if (espera == 0) {
+                this.requisicoes.consumir(1);
+                this.tokens.consumir(tokensEstimados);
+            }
+        }
+
+        if (espera == 0) {
+            liberado.complete(null);
+            return;
+        }
+        this.esperas.incrementAndGet();
+        this.groqRateLimitScheduler.schedule(() -> this.tentar(liberado, tokensEstimados),
+                Instant.ofEpochMilli(this.relogio.getAsLong() + espera));
+    }
+
+    /**
+     * Corrige o bucket de tokens com o consumo real informado pela API ({@code usage.total_tokens}).
+     */
+    public void ajustarConsumo(long tokensEstimados, long tokensReais) {
+        synchronized (this.lock) {
+            this.tokens.consumir(tokensReais - Math.min(tokensEstimados, this.tokensPerMinute));
+        }
+    }
+
+    /**
+     * Sincroniza os buckets com o que o servidor informa: o restante do servidor prevalece
+     * quando é menor que o local, e um 429 pausa todas as chamadas até o {@code Retry-After}.
+     */
+    public void registrarResposta(int status, HttpHeaders headers) {
+        long agora = this.relogio.getAsLong();
+        synchronized (this.lock) {
+            this.sincronizar(this.requisicoes, headers, "requests", agora);
+            this.sincronizar(this.tokens, headers, "tokens", agora);
+
+            if (status == 429) {
+                this.respostas429.incrementAndGet();
+                long pausa = headers.firstValue("retry-after")
+                        .map(GroqRateLimiter::segundos)
+                        .orElse(-1L);
+                if (pausa < 0) {
+                    pausa = Math.max(this.reset(headers, "requests"), this.reset(headers, "tokens"));
+                }
+                if (pausa <= 0) {
+                    pausa = this.defaultBackoffMs;
+                }
+                this.pausadoAte = Math.max(this.pausadoAte, agora + pausa);
+                log.warning("Limite do Groq atingido (429), pausando chamadas por " + pausa + " ms");
+            }
+        }
+    }
+
+    private void sincronizar(Bucket bucket, HttpHeaders headers, String tipo, long agora) {
+        headers.firstValue("x-ratelimit-remaining-" + tipo).ifPresent(valor -> {
+            try {
+                long restante = Long.parseLong(valor.trim());
+                bucket.limitar(restante, agora);
+                if (restante == 0) {
+                    this.pausadoAte = Math.max(this.pausadoAte, agora + this.reset(headers, tipo));
+                }
+            } catch (NumberFormatException e) {
+                log.fine("Cabeçalho x-ratelimit-remaining-" + tipo + " inválido: " + valor);
+            }
+        });
+    }
+
+    private long reset(HttpHeaders headers, String tipo) {
+        return headers.firstValue("x-ratelimit-reset-" + tipo).map(GroqRateLimiter::duracao).orElse(0L);
+    }
+
+    /**
+     * Converte durações no formato da API ({@code 2m59.56s}, {@code 7.66s}, {@code 120ms}) em milissegundos.
+     */
+    static long duracao(String valor) {
+        Matcher matcher = DURACAO.matcher(valor.trim());
+        double total = 0;
+        while (matcher.find()) {
+            double quantidade = Double.parseDouble(matcher.group(1));
+            total += switch (matcher.group(2)) {
+                case "h" -> quantidade * 3_600_000;
+                case "m" -> quantidade * 60_000;
+                case "s" -> quantidade * 1_000;
+                default -> quantidade;
+            };
+        }
+        return (long) Math.ceil(total);
+    }
+
+    private static long segundos(String valor) {
+        try {
+            return (long) Math.ceil(Double.parseDouble(valor.trim()) * 1_000);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("groq.ratelimit.waits", this.esperas, AtomicLong::get)
+                .description("Chamadas adiadas pelo limitador")
+                .register(registry);
+        FunctionCounter.builder("groq.ratelimit.throttled", this.respostas429, AtomicLong::get)
+                .description("Respostas 429 recebidas do Groq")
+                .register(registry);
+        Gauge.builder("groq.ratelimit.available", this, limiter -> limiter.disponivel(limiter.requisicoes))
+                .tag("tipo", "requests")
+                .register(registry);
+        Gauge.builder("groq.ratelimit.available", this, limiter -> limiter.disponivel(limiter.tokens))
+                .tag("tipo", "tokens")
+                .register(registry);
+    }
+
+    private double disponivel(Bucket bucket) {
+        synchronized (this.lock) {
+            bucket.reabastecer(this.relogio.getAsLong());
+            return bucket.disponivel;
+        }
+    }
+
+    /**
+     * Bucket com reposição contínua: a capacidade por minuto é reposta de forma linear.
+     */
+    static final class Bucket {
+
+        private final double capacidade;
+        private final double porMs;
+        private double disponivel;
+        private long ultimaReposicao;
+
+        Bucket(long porMinuto, long agora) {
+            this.capacidade = porMinuto;
+            this.porMs = porMinuto / 60_000.0;
+            this.disponivel = porMinuto;
+            this.ultimaReposicao = agora;
+        }
+
+        void reabastecer(long agora) {
+            if (agora > this.ultimaReposicao) {
+                this.disponivel = Math.min(this.capacidade, this.disponivel + (agora - this.ultimaReposicao) * this.porMs);
+                this.ultimaReposicao = agora;
+            }
+        }
+
+        long espera(long quantidade, long agora) {
+            this.reabastecer(agora);
+            if (this.disponivel >= quantidade) {
+                return 0;
+            }
+            return (long) Math.ceil((quantidade - this.disponivel) / this.porMs);
+        }
+
+        void consumir(long quantidade) {
+            this.disponivel = Math.min(this.capacidade, this.disponivel - quantidade);
+        }
+
+        void limitar(long restante, long agora) {
+            this.reabastecer(agora);
+            this.disponivel = Math.min(this.disponivel, restante);
+        }
+    }
+}
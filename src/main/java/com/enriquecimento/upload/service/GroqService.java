@@ -1,78 +1,381 @@
 package com.enriquecimento.upload.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.enriquecimento.upload.service.PipelineMetrics.Etapa;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.java.Log;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Log
 @Service
 @RequiredArgsConstructor
 public class GroqService {
 
-    private final RestTemplate restTemplate;
+    private final HttpClient groqHttpClient;
+    private final ObjectMapper objectMapper;
+    private final GroqRateLimiter groqRateLimiter;
+    private final PipelineMetrics pipelineMetrics;
 
     @Value("${groq.api.key}")
     private String groqApiKey;
     
     @Value("${groq.api.url}")
     private String groqApiUrl;
-    public String improveDescription(String description) {
+
+    @Value("${groq.api.model:openai/gpt-oss-20b}")
+    private String model = "openai/gpt-oss-20b";
+
+    // Tempo máximo até o início da resposta
+    @Value("${groq.http.read-timeout-ms:30000}")
+    private long readTimeoutMs = 30000;
+
+    // Prazo total da chamada, incluindo a leitura do corpo
+    @Value("${groq.http.deadline-ms:60000}")
+    private long deadlineMs = 60000;
+
+    // Reserva de tokens da resposta na estimativa enviada ao limitador
+    @Value("${groq.rate-limit.completion-tokens-estimate:256}")
+    private long completionTokensEstimate = 256;
+
+    // Quantas vezes uma chamada recusada com 429 volta para a fila do limitador antes de falhar
+    @Value("${groq.rate-limit.max-retries:10}")
+    private int maxRetries = 10;
+
+    /**
+     * Melhora a descrição com o prompt padrão. Falhas completam o future com exceção,
+     * nunca com um texto de erro no lugar do resultado.
+     */
+    public CompletableFuture<String> improveDescription(String description) {
+        return this.complete(this.buildPrompt(description));
+    }
+
+    public String buildPrompt(String description) {
+        return "Melhore esse texto '" + description + "'";
+    }
+
+    public String getModel() {
+        return this.model;
+    }
+
+    /**
+     * Envia o prompt ao modelo e devolve o conteúdo da resposta.
+     * O future completa com exceção em qualquer falha, para que o resultado nunca seja confundido com uma resposta válida.
+     */
+    public CompletableFuture<String> complete(String prompt) {
+        return this.chat(prompt, false);
+    }
+
+    /**
+     * Melhora várias descrições em uma única completion, pedindo a resposta em JSON
+     * indexado pelo ID de cada imagem. Completa com {@link RespostaLoteInvalidaException} quando a resposta
+     * não é um objeto JSON válido, e com a exceção da chamada nas demais falhas (429, 5xx, prazo);
+     * IDs ausentes na resposta simplesmente não aparecem no mapa devolvido.
+     */
+    public CompletableFuture<Map<String, String>> completeBatch(Map<String, String> descricoesPorId) {
+        String prompt;
         try {
-            
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(this.groqApiKey);
-            
-            Map<String, Object> requestBody = Map.of(
-                "model", "openai/gpt-oss-20b",
-                "messages", List.of(
-                    Map.of(
-                        "role", "user",
-                        "content", "Melhore esse texto '" + description + "'"
-                    )
-                )
-            );
-            
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-            
-            ResponseEntity<Map> response = restTemplate.exchange(
-                this.groqApiUrl, 
-                HttpMethod.POST, 
-                request, 
-                Map.class
-            );
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                Map<String, Object> responseBody = response.getBody();
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-                
-                if (choices != null && !choices.isEmpty()) {
-                    Map<String, Object> firstChoice = choices.get(0);
-                    Map<String, Object> message = (Map<String, Object>) firstChoice.get("message");
-                    String content = (String) message.get("content");
-                    
-                    log.info("Resposta do Groq: " + content);
-                    return content;
+            prompt = "Melhore cada um dos textos abaixo. Responda somente com um objeto JSON em que cada chave "
+                    + "é o ID recebido e cada valor é o texto melhorado correspondente, sem comentários.\n"
+                    + this.objectMapper.writeValueAsString(descricoesPorId);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return this.chat(prompt, true).thenApply(conteudo -> {
+            Map<String, Object> resposta;
+            try {
+                resposta = this.objectMapper.readValue(conteudo, new TypeReference<>() {});
+            } catch (Exception e) {
+                throw new RespostaLoteInvalidaException("Resposta em lote não é um JSON válido", e);
+            }
+            if (resposta == null) {
+                throw new RespostaLoteInvalidaException("Resposta em lote não é um objeto JSON", null);
+            }
+            Map<String, String> melhoradas = new LinkedHashMap<>();
+            resposta.forEach((id, texto) -> {
+                if (descricoesPorId.containsKey(id) && texto instanceof String melhorada && !melhorada.isBlank()) {
+                    melhoradas.put(id, melhorada);
                 }
+            });
+            return melhoradas;
+        });
+    }
+
+    /**
+     * Envia o prompt no modo {@code stream=true}: cada pedaço de texto é entregue a {@code aoReceber}
+     * assim que chega (eventos SSE da API), e o future completa com o texto inteiro no fim do stream.
+     * Uma chamada recusada com 429 não entrega nada antes de ser repetida.
+     */
+    public CompletableFuture<String> stream(String prompt, Consumer<String> aoReceber) {
+        Map<String, Object> requestBody = this.corpo(prompt);
+        requestBody.put("stream", true);
+
+        HttpRequest request;
+        try {
+            request = this.request(requestBody);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long tokensEstimados = prompt.length() / 4 + this.completionTokensEstimate;
+        // Leitor da última tentativa (um 429 repete a chamada com um leitor novo)
+        AtomicReference<LeitorStream> ultimoLeitor = new AtomicReference<>();
+        HttpResponse.BodyHandler<String> handler = info -> {
+            if (info.statusCode() / 100 != 2) {
+                return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
             }
-            
-            log.warning("Resposta inesperada da API Groq: " + response.getBody());
-            return "Erro ao processar com IA: " + description;
-            
+            LeitorStream leitor = new LeitorStream(aoReceber, tokensEstimados);
+            ultimoLeitor.set(leitor);
+            // Separador nulo: aceita \n e \r\n, como o BufferedReader
+            return HttpResponse.BodySubscribers.fromLineSubscriber(leitor, LeitorStream::texto, StandardCharsets.UTF_8, null);
+        };
+        return this.enviarComLimite(request, handler, "stream", tokensEstimados, 0).thenApply(response -> {
+            if (response.statusCode() / 100 != 2 || response.body().isEmpty()) {
+                throw new IllegalStateException("Resposta inesperada da API Groq em stream (" + response.statusCode() + "): " + response.body());
+            }
+            ultimoLeitor.get().verificar();
+            log.info("Resposta do Groq em stream: " + response.body());
+            return response.body();
+        });
+    }
+
+    private Map<String, Object> corpo(String prompt) {
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("model", this.model);
+        requestBody.put("messages", List.of(
+            Map.of(
+                "role", "user",
+                "content", prompt
+            )
+        ));
+        return requestBody;
+    }
+
+    private HttpRequest request(Map<String, Object> requestBody) throws Exception {
+        return HttpRequest.newBuilder(URI.create(this.groqApiUrl))
+                .timeout(Duration.ofMillis(this.readTimeoutMs))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + this.groqApiKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(this.objectMapper.writeValueAsBytes(requestBody)))
+                .build();
+    }
+
+    private CompletableFuture<String> chat(String prompt, boolean json) {
+        Map<String, Object> requestBody = this.corpo(prompt);
+        if (json) {
+            // Modo JSON da API: a resposta é garantidamente um objeto JSON
+            requestBody.put("response_format", Map.of("type", "json_object"));
+        }
+
+        HttpRequest request;
+        try {
+            request = this.request(requestBody);
         } catch (Exception e) {
-            log.severe("Erro ao chamar API Groq: " + e.getMessage());
-            return "Erro ao processar com IA: " + description;
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // Estimativa grosseira (4 caracteres por token); corrigida depois com o usage da resposta
+        long tokensEstimados = prompt.length() / 4 + this.completionTokensEstimate;
+        return this.enviarComLimite(request, HttpResponse.BodyHandlers.ofString(), json ? "lote" : "individual", tokensEstimados, 0)
+                .thenApply(response -> this.conteudo(response, tokensEstimados));
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> enviarComLimite(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                                   String modo, long tokensEstimados, int tentativa) {
+        return this.groqRateLimiter.acquire(tokensEstimados)
+                .thenCompose(liberado -> this.enviar(request, handler, modo))
+                .thenCompose(response -> {
+                    this.groqRateLimiter.registrarResposta(response.statusCode(), response.headers());
+                    if (response.statusCode() == 429 && tentativa < this.maxRetries) {
+                        // Recusada por limite: volta a esperar no limitador em vez de falhar
+                        return this.enviarComLimite(request, handler, modo, tokensEstimados, tentativa + 1);
+                    }
+                    return CompletableFuture.completedFuture(response);
+                });
+    }
+
+    // A espera no limitador fica de fora: o timer mede só a troca HTTP, por modo e resultado
+    private <T> CompletableFuture<HttpResponse<T>> enviar(HttpRequest request, HttpResponse.BodyHandler<T> handler, String modo) {
+        Timer.Sample inicio = this.pipelineMetrics.iniciar();
+        CompletableFuture<HttpResponse<T>> envio = this.groqHttpClient.sendAsync(request, handler);
+        return envio.copy().orTimeout(this.deadlineMs, TimeUnit.MILLISECONDS)
+                .whenComplete((response, e) -> {
+                    this.pipelineMetrics.registrar(Etapa.GROQ, inicio, resultado(response, e), "modo", modo);
+                    // Estourado o prazo, aborta a troca HTTP em vez de deixá-la ocupando a conexão
+                    if (e != null) {
+                        envio.cancel(true);
+                    }
+                });
+    }
+
+    private static String resultado(HttpResponse<?> response, Throwable erro) {
+        if (erro != null) {
+            Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+            return causa instanceof TimeoutException || causa instanceof HttpTimeoutException ? "timeout" : PipelineMetrics.ERRO;
+        }
+        if (response.statusCode() == 429) {
+            return "limitado";
+        }
+        return response.statusCode() / 100 == 2 ? PipelineMetrics.SUCESSO : PipelineMetrics.ERRO;
+    }
+
+    // Corrige a estimativa do limitador e registra o consumo real de tokens
+    private void registrarUso(Object usage, long tokensEstimados) {
+        if (!(usage instanceof Map<?, ?> consumo)) {
+            return;
+        }
+        if (consumo.get("total_tokens") instanceof Number total) {
+            this.groqRateLimiter.ajustarConsumo(tokensEstimados, total.longValue());
+        }
+        if (consumo.get("prompt_tokens") instanceof Number prompt) {
+            this.pipelineMetrics.registrarTokens("prompt", prompt.longValue());
+        }
+        if (consumo.get("completion_tokens") instanceof Number completion) {
+            this.pipelineMetrics.registrarTokens("completion", completion.longValue());
+        }
+    }
+
+    private String conteudo(HttpResponse<String> response, long tokensEstimados) {
+        if (response.statusCode() / 100 == 2) {
+            Map<String, Object> responseBody;
+            try {
+                responseBody = this.objectMapper.readValue(response.body(), new TypeReference<>() {});
+            } catch (Exception e) {
+                throw new IllegalStateException("Resposta da API Groq não é um JSON válido", e);
+            }
+            this.registrarUso(responseBody.get("usage"), tokensEstimados);
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
+
+            if (choices != null && !choices.isEmpty()) {
+                Map<String, Object> firstChoice = choices.get(0);
+                Map<String, Object> message = (Map<String, Object>) firstChoice.get("message");
+                String content = (String) message.get("content");
+
+                log.info("Resposta do Groq: " + content);
+                return content;
+            }
+        }
+
+        throw new IllegalStateException("Resposta inesperada da API Groq (" + response.statusCode() + "): " + response.body());
+    }
+
+    /**
+     * A chamada em lote foi respondida, mas o conteúdo não é o objeto JSON pedido. Só nesse caso
+     * vale repetir os itens em chamadas individuais.
+     */
+    public static class RespostaLoteInvalidaException extends IllegalStateException {
+
+        public RespostaLoteInvalidaException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Lê as linhas {@code data: {...}} do stream de chat completions, entrega cada
+     * {@code choices[0].delta.content} e acumula o texto até {@code data: [DONE]}. Um evento que não é
+     * JSON ou o fim da conexão sem {@code [DONE]} tornam o stream inválido ({@link #verificar()}).
+     */
+    private final class LeitorStream implements Flow.Subscriber<String> {
+
+        private final Consumer<String> aoReceber;
+        private final long tokensEstimados;
+        private final StringBuilder texto = new StringBuilder();
+        private volatile boolean concluido;
+        private volatile IllegalStateException erro;
+
+        LeitorStream(Consumer<String> aoReceber, long tokensEstimados) {
+            this.aoReceber = aoReceber;
+            this.tokensEstimados = tokensEstimados;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String linha) {
+            if (!linha.startsWith("data:")) {
+                return;
+            }
+            String dados = linha.substring(5).strip();
+            if (this.erro != null || dados.isEmpty()) {
+                return;
+            }
+            if (dados.equals("[DONE]")) {
+                this.concluido = true;
+                return;
+            }
+
+            Map<String, Object> evento;
+            try {
+                evento = GroqService.this.objectMapper.readValue(dados, new TypeReference<>() {});
+            } catch (Exception e) {
+                // Um Subscriber não pode lançar exceção em onNext, e cancelar a assinatura deixaria
+                // o corpo da resposta sem conclusão: o erro é guardado, o restante do stream é
+                // descartado sem ser entregue e a chamada falha no fim
+                this.erro = new IllegalStateException("Evento do stream da API Groq não é um JSON válido: " + dados, e);
+                return;
+            }
+            // O Groq manda o usage no último evento, dentro de x_groq
+            Object usage = evento.get("x_groq") instanceof Map<?, ?> groq ? groq.get("usage") : evento.get("usage");
+            GroqService.this.registrarUso(usage, this.tokensEstimados);
+            if (evento.get("choices") instanceof List<?> choices && !choices.isEmpty()
+                    && choices.get(0) instanceof Map<?, ?> choice
+                    && choice.get("delta") instanceof Map<?, ?> delta
+                    && delta.get("content") instanceof String pedaco && !pedaco.isEmpty()) {
+                this.texto.append(pedaco);
+                try {
+                    this.aoReceber.accept(pedaco);
+                } catch (RuntimeException e) {
+                    // Quem recebe pode ter desistido (cliente desconectado); o texto continua sendo acumulado
+                    log.fine("Falha ao entregar pedaço do stream: " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // O erro chega ao future da chamada
+        }
+
+        @Override
+        public void onComplete() {
+            // Conexão encerrada antes do [DONE]: o texto acumulado pode estar truncado
+            if (!this.concluido && this.erro == null) {
+                this.erro = new IllegalStateException("Stream da API Groq terminou sem [DONE]");
+            }
+        }
+
+        String texto() {
+            return this.texto.toString();
+        }
+
+        void verificar() {
+            if (this.erro != null) {
+                throw this.erro;
+            }
         }
     }
 }
@@ -0,0 +1,312 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.service.PipelineMetrics.Etapa;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.FileCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Pré-processamento opcional antes do upload: decodifica a imagem, reduz para caber em
+ * {@code max-width} x {@code max-height}, aplica a orientação EXIF, descarta os metadados e recomprime.
+ * Só a versão 300x400 é publicada, então o original em resolução cheia é banda, tempo de upload e
+ * armazenamento pagos à toa. O trabalho roda no pool de CPU {@code imagePreprocessingExecutor};
+ * quando a imagem não pode ser lida, o resultado não fica menor ou o pool está cheio, segue o original.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class ImagePreprocessingService {
+
+    public static final String IGNORADA = "ignorada";
+    public static final String REJEITADA = "rejeitada";
+
+    // GIF fica de fora para não perder a animação; os demais formatos do ImageIO são raros em upload
+    private static final Set<String> FORMATOS = Set.of("jpeg", "png", "bmp");
+
+    private static final String METADADOS_JPEG = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1 = 0xE1;
+    private static final int TAG_ORIENTACAO = 0x0112;
+
+    private final TaskExecutor imagePreprocessingExecutor;
+    private final PipelineMetrics pipelineMetrics;
+
+    @Value("${upload.preprocessing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.preprocessing.max-width:1200}")
+    private int maxWidth;
+
+    @Value("${upload.preprocessing.max-height:1600}")
+    private int maxHeight;
+
+    @Value("${upload.preprocessing.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    /**
+     * Conteúdo a enviar ao Cloudinary: o original ou a versão reduzida em memória.
+     */
+    public record ImagemPreparada(InputStreamSource conteudo, long tamanho) {
+    }
+
+    /**
+     * Prepara a imagem no pool de CPU e espera o resultado. Nunca falha: em qualquer problema
+     * devolve o original, que pode ser lido de novo a partir de {@code original}.
+     */
+    public ImagemPreparada preparar(InputStreamSource original, long tamanho) {
+        ImagemPreparada semAlteracao = new ImagemPreparada(original, tamanho);
+        if (!this.enabled) {
+            return semAlteracao;
+        }
+
+        Timer.Sample inicio = this.pipelineMetrics.iniciar();
+        CompletableFuture<byte[]> tarefa;
+        try {
+            tarefa = CompletableFuture.supplyAsync(() -> this.processar(original, tamanho), this.imagePreprocessingExecutor);
+        } catch (TaskRejectedException e) {
+            // Pool de CPU saturado: melhor enviar o original do que segurar o upload
+            this.pipelineMetrics.registrar(Etapa.PRE_PROCESSAMENTO, inicio, REJEITADA);
+            return semAlteracao;
+        }
+
+        try {
+            byte[] reduzida = tarefa.get();
+            return reduzida != null ? new ImagemPreparada(new ByteArrayResource(reduzida), reduzida.length) : semAlteracao;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return semAlteracao;
+        } catch (ExecutionException e) {
+            log.warning("Falha no pré-processamento da imagem: " + e.getCause());
+            return semAlteracao;
+        }
+    }
+
+    // Devolve a imagem recomprimida, ou null para seguir com o original
+    byte[] processar(InputStreamSource original, long tamanho) {
+        Timer.Sample inicio = this.pipelineMetrics.iniciar();
+        String resultado = PipelineMetrics.ERRO;
+        try {
+            BufferedImage imagem = this.decodificar(original);
+            if (imagem == null) {
+                resultado = IGNORADA;
+                return null;
+            }
+
+            byte[] saida = this.codificar(imagem);
+            if (tamanho > 0 && saida.length >= tamanho) {
+                resultado = IGNORADA;
+                return null;
+            }
+            resultado = PipelineMetrics.SUCESSO;
+            if (tamanho > 0) {
+                this.pipelineMetrics.registrarEconomia(tamanho - saida.length);
+            }
+            return saida;
+        } catch (IOException | RuntimeException e) {
+            log.warning("Imagem não pôde ser pré-processada, enviando o original: " + e.getMessage());
+            return null;
+        } finally {
+            this.pipelineMetrics.registrar(Etapa.PRE_PROCESSAMENTO, inicio, resultado);
+        }
+    }
+
+    /**
+     * Lê a imagem já reduzida e na orientação de exibição, ou {@code null} se o formato não é tratado.
+     * O leitor volta no conteúdo (cabeçalhos, metadados EXIF), então a origem precisa de acesso
+     * aleatório: um arquivo em disco (staging do upload assíncrono) é lido direto; as demais fontes
+     * usam um cache em arquivo temporário, para o buffer não crescer no heap com imagens grandes.
+     */
+    private BufferedImage decodificar(InputStreamSource original) throws IOException {
+        if (original instanceof Resource recurso && recurso.isFile()) {
+            try (ImageInputStream entrada = ImageIO.createImageInputStream(recurso.getFile())) {
+                return this.decodificar(entrada);
+            }
+        }
+        try (InputStream conteudo = original.getInputStream();
+             ImageInputStream entrada = new FileCacheImageInputStream(conteudo, ImageIO.getCacheDirectory())) {
+            return this.decodificar(entrada);
+        }
+    }
+
+    private BufferedImage decodificar(ImageInputStream entrada) throws IOException {
+        Iterator<ImageReader> leitores = ImageIO.getImageReaders(entrada);
+        if (!leitores.hasNext()) {
+            return null;
+        }
+        ImageReader leitor = leitores.next();
+        try {
+            leitor.setInput(entrada, true, false);
+            String formato = leitor.getFormatName().toLowerCase(Locale.ROOT);
+            if (!FORMATOS.contains(formato)) {
+                return null;
+            }
+
+            int orientacao = "jpeg".equals(formato) ? orientacaoExif(leitor.getImageMetadata(0)) : 1;
+            // Orientações 5 a 8 giram 90°: a largura armazenada vira a altura exibida
+            boolean girada = orientacao >= 5;
+            int largura = leitor.getWidth(0);
+            int altura = leitor.getHeight(0);
+            double escala = Math.min(1.0, Math.min(
+                    (double) (girada ? this.maxHeight : this.maxWidth) / largura,
+                    (double) (girada ? this.maxWidth : this.maxHeight) / altura));
+
+            // Subamostragem na leitura: o decoder descarta linhas e colunas em vez de montar a imagem
+            // inteira no heap; fica uma folga de 2x para a redução final suavizar o resultado
+            ImageReadParam parametros = leitor.getDefaultReadParam();
+            int passo = (int) Math.max(1, Math.floor(1 / (2 * escala)));
+            parametros.setSourceSubsampling(passo, passo, 0, 0);
+            BufferedImage lida = leitor.read(0, parametros);
+
+            BufferedImage reduzida = reduzir(lida,
+                    Math.max(1, (int) Math.round(largura * escala)),
+                    Math.max(1, (int) Math.round(altura * escala)));
+            return orientar(reduzida, orientacao);
+        } finally {
+            leitor.dispose();
+        }
+    }
+
+    // Reduções de até metade por passo, com interpolação bilinear, para não serrilhar
+    private static BufferedImage reduzir(BufferedImage imagem, int largura, int altura) {
+        BufferedImage atual = imagem;
+        do {
+            int proximaLargura = Math.max(largura, atual.getWidth() / 2);
+            int proximaAltura = Math.max(altura, atual.getHeight() / 2);
+            atual = desenhar(atual, proximaLargura, proximaAltura, AffineTransform.getScaleInstance(
+                    (double) proximaLargura / atual.getWidth(), (double) proximaAltura / atual.getHeight()));
+        } while (atual.getWidth() != largura || atual.getHeight() != altura);
+        return atual;
+    }
+
+    private static BufferedImage orientar(BufferedImage imagem, int orientacao) {
+        int w = imagem.getWidth();
+        int h = imagem.getHeight();
+        return switch (orientacao) {
+            case 2 -> desenhar(imagem, w, h, new AffineTransform(-1, 0, 0, 1, w, 0));
+            case 3 -> desenhar(imagem, w, h, new AffineTransform(-1, 0, 0, -1, w, h));
+            case 4 -> desenhar(imagem, w, h, new AffineTransform(1, 0, 0, -1, 0, h));
+            case 5 -> desenhar(imagem, h, w, new AffineTransform(0, 1, 1, 0, 0, 0));
+            case 6 -> desenhar(imagem, h, w, new AffineTransform(0, 1, -1, 0, h, 0));
+            case 7 -> desenhar(imagem, h, w, new AffineTransform(0, -1, -1, 0, h, w));
+            case 8 -> desenhar(imagem, h, w, new AffineTransform(0, -1, 1, 0, 0, w));
+            default -> imagem;
+        };
+    }
+
+    // Sempre RGB(A) em pixels inteiros: paletas e tons de cinza saem no mesmo tipo que o encoder JPEG aceita
+    private static BufferedImage desenhar(BufferedImage origem, int largura, int altura, AffineTransform transformacao) {
+        int tipo = origem.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage destino = new BufferedImage(largura, altura, tipo);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(origem, transformacao, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    /**
+     * JPEG para imagens opacas e PNG para as com transparência, sem metadados: EXIF (câmera, GPS),
+     * miniaturas e comentários ficam de fora.
+     */
+    private byte[] codificar(BufferedImage imagem) throws IOException {
+        boolean transparente = imagem.getColorModel().hasAlpha();
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName(transparente ? "png" : "jpeg").next();
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        try (ImageOutputStream destino = new MemoryCacheImageOutputStream(saida)) {
+            escritor.setOutput(destino);
+            ImageWriteParam parametros = escritor.getDefaultWriteParam();
+            if (!transparente) {
+                parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                parametros.setCompressionQuality(this.jpegQuality);
+            }
+            escritor.write(null, new IIOImage(imagem, null, null), parametros);
+        } finally {
+            escritor.dispose();
+        }
+        return saida.toByteArray();
+    }
+
+    /**
+     * Orientação EXIF (tag 0x0112 do IFD0, no segmento APP1), de 1 a 8; 1 quando ausente ou ilegível.
+     */
+    static int orientacaoExif(IIOMetadata metadados) {
+        if (metadados == null || !Arrays.asList(metadados.getMetadataFormatNames()).contains(METADADOS_JPEG)) {
+            return 1;
+        }
+        IIOMetadataNode raiz = (IIOMetadataNode) metadados.getAsTree(METADADOS_JPEG);
+        var desconhecidos = raiz.getElementsByTagName("unknown");
+        for (int i = 0; i < desconhecidos.getLength(); i++) {
+            IIOMetadataNode marcador = (IIOMetadataNode) desconhecidos.item(i);
+            if (String.valueOf(APP1).equals(marcador.getAttribute("MarkerTag"))
+                    && marcador.getUserObject() instanceof byte[] dados) {
+                int orientacao = orientacao(dados);
+                if (orientacao != 1) {
+                    return orientacao;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static int orientacao(byte[] app1) {
+        if (app1.length < 14 || !"Exif\0\0".equals(new String(app1, 0, 6, StandardCharsets.ISO_8859_1))) {
+            return 1;
+        }
+        try {
+            // Cabeçalho TIFF logo depois do "Exif\0\0": ordem dos bytes (II/MM) e offset do IFD0
+            int tiff = 6;
+            ByteBuffer dados = ByteBuffer.wrap(app1)
+                    .order(app1[tiff] == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff + dados.getInt(tiff + 4);
+            int entradas = Short.toUnsignedInt(dados.getShort(ifd));
+            for (int i = 0; i < entradas; i++) {
+                int entrada = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(dados.getShort(entrada)) == TAG_ORIENTACAO) {
+                    int valor = Short.toUnsignedInt(dados.getShort(entrada + 8));
+                    return valor >= 1 && valor <= 8 ? valor : 1;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Segmento truncado: segue sem girar
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,112 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Avisa quem está esperando (SSE ou long-poll) que o enriquecimento de uma imagem terminou.
+ * As assinaturas ficam em memória; a conclusão é distribuída para todas as instâncias por uma
+ * exchange fanout, e cada instância acorda as suas assinaturas e invalida o seu cache de consultas.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class NotificacaoService implements MeterBinder {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @Value("${amqp.events.exchange.name:image-processing-events}")
+    private String eventsExchangeName;
+
+    // Os conjuntos só são alterados dentro de compute/computeIfPresent, que são atômicos por chave
+    private final Map<Long, Set<CompletableFuture<Long>>> assinaturas = new ConcurrentHashMap<>();
+
+    /**
+     * Registra uma assinatura para a imagem; o future completa com o ID quando o resultado é gravado.
+     * Quem assina deve conferir o estado atual depois, para não perder uma conclusão anterior.
+     */
+    public CompletableFuture<Long> aguardar(Long id) {
+        CompletableFuture<Long> assinatura = new CompletableFuture<>();
+        this.assinaturas.compute(id, (chave, atuais) -> {
+            Set<CompletableFuture<Long>> conjunto = atuais != null ? atuais : new HashSet<>();
+            conjunto.add(assinatura);
+            return conjunto;
+        });
+        return assinatura;
+    }
+
+    /**
+     * Remove a assinatura (timeout, desconexão ou resposta já enviada).
+     */
+    public void cancelar(Long id, CompletableFuture<Long> assinatura) {
+        this.assinaturas.computeIfPresent(id, (chave, atuais) -> {
+            atuais.remove(assinatura);
+            return atuais.isEmpty() ? null : atuais;
+        });
+    }
+
+    /**
+     * Publica a conclusão para todas as instâncias. O resultado já está gravado, então uma falha
+     * aqui não pode voltar para o consumidor: só as assinaturas locais são acordadas, e as
+     * das outras instâncias terminam pelo timeout.
+     */
+    public void publicarConclusao(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            this.rabbitTemplate.convertAndSend(this.eventsExchangeName, "", new ArrayList<>(ids));
+        } catch (AmqpException e) {
+            log.warning("Falha ao publicar conclusão de " + ids.size() + " imagens: " + e.getMessage());
+            this.concluir(ids);
+        }
+    }
+
+    @RabbitListener(queues = "#{eventsQueue.name}")
+    public void receberConclusao(List<? extends Number> ids) {
+        List<Long> concluidas = ids.stream().map(Number::longValue).toList();
+        // O cache desta instância pode ter o estado anterior à gravação feita em outra instância
+        this.resultadoImagemCache.invalidateAll(concluidas);
+        this.concluir(concluidas);
+    }
+
+    void concluir(Collection<Long> ids) {
+        for (Long id : ids) {
+            Set<CompletableFuture<Long>> aguardando = this.assinaturas.remove(id);
+            if (aguardando != null) {
+                aguardando.forEach(assinatura -> assinatura.complete(id));
+            }
+        }
+    }
+
+    public int getAguardando() {
+        return this.assinaturas.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("files.notifications.waiting", this, NotificacaoService::getAguardando)
+                .description("Requisições SSE e long-poll aguardando a conclusão do enriquecimento")
+                .register(registry);
+    }
+}
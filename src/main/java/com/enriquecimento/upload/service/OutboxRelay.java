@@ -0,0 +1,112 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.enriquecimento.upload.entity.MensagemOutbox;
+import com.enriquecimento.upload.repository.MensagemOutboxRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Drena o outbox em lotes: trava as linhas mais antigas ({@code SKIP LOCKED}), publica com
+ * publisher confirms e só então apaga, na mesma transação. Se o broker falhar, a transação
+ * volta e o lote é reenviado no próximo ciclo (entrega pelo menos uma vez).
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class OutboxRelay implements MeterBinder {
+
+    private final MensagemOutboxRepository mensagemOutboxRepository;
+    private final AmqpService amqpService;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler outboxRelayScheduler;
+
+    @Value("${outbox.relay.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${outbox.relay.interval-ms:1000}")
+    private long intervalMs = 1000;
+
+    private final AtomicBoolean acordado = new AtomicBoolean();
+    private final AtomicLong publicadas = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        this.outboxRelayScheduler.scheduleWithFixedDelay(this::drenar, Duration.ofMillis(this.intervalMs));
+    }
+
+    /**
+     * Agenda uma drenagem imediata; chamadas repetidas antes dela rodar viram uma só.
+     */
+    public void acordar() {
+        if (this.acordado.compareAndSet(false, true)) {
+            this.outboxRelayScheduler.schedule(() -> {
+                this.acordado.set(false);
+                this.drenar();
+            }, Instant.now());
+        }
+    }
+
+    void drenar() {
+        try {
+            int enviadas;
+            do {
+                enviadas = this.publicarLote();
+            } while (enviadas == this.batchSize);
+        } catch (Exception e) {
+            this.falhas.incrementAndGet();
+            log.warning("Falha ao publicar o outbox, nova tentativa no próximo ciclo: " + e.getMessage());
+        }
+    }
+
+    int publicarLote() {
+        Integer enviadas = this.transactionTemplate.execute(status -> {
+            List<MensagemOutbox> lote = this.mensagemOutboxRepository.findByOrderByIdAsc(PageRequest.of(0, this.batchSize));
+            if (lote.isEmpty()) {
+                return 0;
+            }
+            // Linhas sem tipo são anteriores às mensagens de qualidade no outbox: enriquecimento
+            Map<Boolean, List<MensagemOutbox>> porTipo = lote.stream()
+                    .collect(Collectors.partitioningBy(mensagem -> mensagem.getTipo() == MensagemOutbox.Tipo.QUALIDADE));
+            this.amqpService.sendImageProcessingMessages(porTipo.get(false).stream()
+                    .map(mensagem -> new EnrichmentMessage(mensagem.getImageId(), mensagem.getImageUrl(),
+                            mensagem.getDescricao(), mensagem.getCriadoEm().toEpochMilli()))
+                    .toList());
+            this.amqpService.sendQualityAnalysisMessages(porTipo.get(true).stream()
+                    .map(mensagem -> Map.of("imageId", mensagem.getImageId().toString(), "publicId", mensagem.getPublicId()))
+                    .toList());
+            this.mensagemOutboxRepository.deleteAllInBatch(lote);
+            return lote.size();
+        });
+        this.publicadas.addAndGet(enviadas);
+        return enviadas;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("outbox.relay.published", this.publicadas, AtomicLong::get)
+                .description("Mensagens do outbox confirmadas pelo broker")
+                .register(registry);
+        FunctionCounter.builder("outbox.relay.failures", this.falhas, AtomicLong::get)
+                .description("Ciclos do relay que falharam e serão repetidos")
+                .register(registry);
+    }
+}
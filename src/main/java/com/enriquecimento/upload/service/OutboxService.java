@@ -0,0 +1,102 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.MensagemOutbox;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.enriquecimento.upload.repository.MensagemOutboxRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Grava a imagem e a mensagem de enriquecimento na mesma transação (outbox). Nenhuma chamada
+ * ao broker acontece aqui: o {@link OutboxRelay} publica as mensagens depois do commit.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final DadosImagemRepository dadosImagemRepository;
+    private final MensagemOutboxRepository mensagemOutboxRepository;
+    private final OutboxRelay outboxRelay;
+    private final QualityAnalysisService qualityAnalysisService;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @Transactional
+    public DadosImagem save(DadosImagem imagem, boolean enriquecer) {
+        DadosImagem salva = this.dadosImagemRepository.save(imagem);
+        // A imagem pode já existir (upload assíncrono) e estar em cache com o status anterior
+        Long id = salva.getId();
+        this.aposCommit(() -> this.resultadoImagemCache.invalidate(id));
+        boolean analisar = this.qualityAnalysisService.deveAnalisar(salva);
+        if (enriquecer) {
+            this.mensagemOutboxRepository.save(this.mensagem(salva));
+        }
+        if (analisar) {
+            this.mensagemOutboxRepository.save(this.mensagemQualidade(salva));
+        }
+        if (enriquecer || analisar) {
+            this.aposCommit(this.outboxRelay::acordar);
+        }
+        return salva;
+    }
+
+    /**
+     * Insere o lote de imagens, as mensagens de enriquecimento das que passam no filtro e as de
+     * análise de qualidade, tudo em uma transação.
+     */
+    @Transactional
+    public List<DadosImagem> insertAll(List<DadosImagem> imagens, Predicate<DadosImagem> enriquecer) {
+        this.dadosImagemRepository.insertAll(imagens);
+        List<MensagemOutbox> mensagens = new ArrayList<>();
+        imagens.stream().filter(enriquecer).map(this::mensagem).forEach(mensagens::add);
+        imagens.stream().filter(this.qualityAnalysisService::deveAnalisar).map(this::mensagemQualidade).forEach(mensagens::add);
+        if (!mensagens.isEmpty()) {
+            this.mensagemOutboxRepository.saveAll(mensagens);
+            this.aposCommit(this.outboxRelay::acordar);
+        }
+        return imagens;
+    }
+
+    private MensagemOutbox mensagem(DadosImagem imagem) {
+        return MensagemOutbox.builder()
+                .tipo(MensagemOutbox.Tipo.ENRIQUECIMENTO)
+                .imageId(imagem.getId())
+                .imageUrl(imagem.getLinkPublico())
+                .descricao(imagem.getDescricao())
+                .criadoEm(Instant.now())
+                .build();
+    }
+
+    private MensagemOutbox mensagemQualidade(DadosImagem imagem) {
+        return MensagemOutbox.builder()
+                .tipo(MensagemOutbox.Tipo.QUALIDADE)
+                .imageId(imagem.getId())
+                .publicId(imagem.getIdCloudinary())
+                .criadoEm(Instant.now())
+                .build();
+    }
+
+    // Publica e invalida logo após o commit: antes dele, o relay e as consultas ainda veem o estado anterior
+    private void aposCommit(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.enriquecimento.upload.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Timers das etapas do upload e do enriquecimento, todos com histograma de percentis
+ * (buckets no Prometheus) para achar o p99 de cada etapa em produção.
+ */
+@Component
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    public static final String SUCESSO = "sucesso";
+    public static final String ERRO = "erro";
+
+    // Esperas na fila passam dos 30 s padrão dos buckets quando há repetições com atraso
+    private static final Duration MAXIMO_ESPERADO = Duration.ofMinutes(10);
+
+    private final MeterRegistry meterRegistry;
+
+    public enum Etapa {
+        MULTIPART("upload.multipart", "Recebimento e parse do corpo multipart"),
+        PRE_PROCESSAMENTO("upload.preprocessing", "Decodificação, redução e recompressão da imagem antes do upload"),
+        CLOUDINARY_UPLOAD("cloudinary.upload", "Upload da imagem para o Cloudinary"),
+        CLOUDINARY_RECURSO("cloudinary.resource", "Consulta de recurso na Admin API do Cloudinary"),
+        AMQP_PUBLICACAO("amqp.publish", "Publicação de um lote de mensagens de enriquecimento até a confirmação do broker"),
+        FILA("enrichment.queue.dwell", "Tempo entre a criação da mensagem de enriquecimento e o consumo"),
+        GROQ("groq.request", "Chamada HTTP à API Groq, até o fim do corpo da resposta");
+
+        private final String nome;
+        private final String descricao;
+
+        Etapa(String nome, String descricao) {
+            this.nome = nome;
+            this.descricao = descricao;
+        }
+
+        public String getNome() {
+            return this.nome;
+        }
+    }
+
+    public Timer.Sample iniciar() {
+        return Timer.start(this.meterRegistry);
+    }
+
+    /**
+     * Encerra a medição da etapa; {@code tags} são pares chave/valor extras, sempre os mesmos por etapa.
+     */
+    public void registrar(Etapa etapa, Timer.Sample inicio, String resultado, String... tags) {
+        inicio.stop(this.timer(etapa, Tags.of(tags).and("resultado", resultado)));
+    }
+
+    public void registrar(Etapa etapa, Duration duracao, String... tags) {
+        this.timer(etapa, Tags.of(tags)).record(duracao);
+    }
+
+    /**
+     * Tokens consumidos por chamada ao Groq, separados em prompt e completion.
+     */
+    public void registrarTokens(String tipo, long tokens) {
+        DistributionSummary.builder("groq.tokens")
+                .description("Tokens consumidos por chamada à API Groq")
+                .baseUnit("tokens")
+                .tag("tipo", tipo)
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+                .record(tokens);
+    }
+
+    /**
+     * Bytes a menos enviados ao Cloudinary pelo pré-processamento de uma imagem.
+     */
+    public void registrarEconomia(long bytes) {
+        DistributionSummary.builder("upload.preprocessing.bytes.saved")
+                .description("Bytes economizados no upload pelo pré-processamento da imagem")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(this.meterRegistry)
+                .record(bytes);
+    }
+
+    public static String resultado(Throwable erro) {
+        return erro == null ? SUCESSO : ERRO;
+    }
+
+    private Timer timer(Etapa etapa, Tags tags) {
+        return Timer.builder(etapa.nome)
+                .description(etapa.descricao)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(MAXIMO_ESPERADO)
+                .register(this.meterRegistry);
+    }
+}
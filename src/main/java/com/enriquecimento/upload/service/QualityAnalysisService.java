@@ -0,0 +1,73 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Etapa diferida de quality_analysis: a consulta à Admin API do Cloudinary sai do
+ * caminho do upload e roda a partir de uma fila própria, com amostragem opcional.
+ */
+@Log
+@Service
+@RequiredArgsConstructor
+public class QualityAnalysisService {
+
+    private final DadosImagemRepository dadosImagemRepository;
+    private final CloudinaryService cloudinaryService;
+    private final ObjectMapper objectMapper;
+    private final Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @Value("${cloudinary.quality-analysis.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cloudinary.quality-analysis.sample-rate:1.0}")
+    private double sampleRate;
+
+    /**
+     * Indica se a imagem vai para a análise de qualidade, respeitando a chave de ativação e a taxa
+     * de amostragem. A mensagem é gravada no outbox junto com a imagem ({@link OutboxService}).
+     */
+    public boolean deveAnalisar(DadosImagem imagem) {
+        // Imagens deduplicadas já chegam com a nota copiada da original
+        return this.enabled && imagem.getIdCloudinary() != null && imagem.getNotaQualidade() == null && this.sampled();
+    }
+
+    @RabbitListener(queues = "${amqp.quality.queue.name:image-quality-queue}",
+            autoStartup = "${cloudinary.quality-analysis.enabled:true}")
+    public void receiveQualityAnalysisMessage(Map<String, Object> message) {
+        try {
+            Long imageId = Long.valueOf(message.get("imageId").toString());
+            String publicId = message.get("publicId").toString();
+
+            Map resposta = this.cloudinaryService.analyzeQuality(publicId);
+            Object analise = resposta.get("quality_analysis");
+            Double nota = this.nota(resposta.get("quality_score"));
+
+            this.dadosImagemRepository.updateQualidade(imageId, nota,
+                    analise != null ? this.objectMapper.writeValueAsString(analise) : null);
+            this.resultadoImagemCache.invalidate(imageId);
+            log.info("Análise de qualidade salva para imagem " + imageId + ": " + nota);
+        } catch (Exception e) {
+            log.severe("Erro ao processar análise de qualidade: " + e.getMessage());
+        }
+    }
+
+    private boolean sampled() {
+        return this.sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < this.sampleRate;
+    }
+
+    private Double nota(Object valor) {
+        return valor instanceof Number numero ? numero.doubleValue() : null;
+    }
+}
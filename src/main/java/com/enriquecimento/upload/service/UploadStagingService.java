@@ -0,0 +1,84 @@
+package com.enriquecimento.upload.service;
+
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Log
+@Service
+public class UploadStagingService {
+
+    @Value("${upload.async.staging-dir:${java.io.tmpdir}/upload-staging}")
+    private String stagingDir;
+
+    @Value("${upload.async.staging-max-bytes:2147483648}")
+    private long maxBytes;
+
+    private final AtomicLong bytesReservados = new AtomicLong();
+
+    public record ArquivoStaging(Path caminho, long tamanho, String sha256) {
+    }
+
+    /**
+     * Copia o multipart para a área local de staging, reservando o espaço antes da cópia
+     * e calculando o SHA-256 do conteúdo durante a própria cópia.
+     * Lança {@link TaskRejectedException} quando a área está cheia.
+     */
+    public ArquivoStaging stage(MultipartFile arquivo) throws IOException {
+        long tamanho = arquivo.getSize();
+        if (!this.reservar(tamanho)) {
+            throw new TaskRejectedException("Área de staging cheia: " + this.bytesReservados.get() + " bytes em uso");
+        }
+
+        try {
+            Path diretorio = Files.createDirectories(Paths.get(this.stagingDir));
+            Path destino = Files.createTempFile(diretorio, "upload_", ".tmp");
+            MessageDigest digest = DeduplicationService.novoDigest();
+            try (InputStream conteudo = new DigestInputStream(arquivo.getInputStream(), digest)) {
+                Files.copy(conteudo, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new ArquivoStaging(destino, tamanho, DeduplicationService.hex(digest));
+        } catch (IOException | RuntimeException e) {
+            this.bytesReservados.addAndGet(-tamanho);
+            throw e;
+        }
+    }
+
+    public void release(ArquivoStaging arquivo) {
+        try {
+            Files.deleteIfExists(arquivo.caminho());
+        } catch (IOException e) {
+            log.warning("Falha ao remover arquivo de staging " + arquivo.caminho() + ": " + e.getMessage());
+        } finally {
+            this.bytesReservados.addAndGet(-arquivo.tamanho());
+        }
+    }
+
+    public long getBytesReservados() {
+        return this.bytesReservados.get();
+    }
+
+    private boolean reservar(long tamanho) {
+        while (true) {
+            long atual = this.bytesReservados.get();
+            if (atual + tamanho > this.maxBytes) {
+                return false;
+            }
+            if (this.bytesReservados.compareAndSet(atual, atual + tamanho)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- Migração de TBL_Dados_Image de IDENTITY para a sequence dados_image_seq (PostgreSQL).
+--
+-- Rode ANTES de subir a versão que usa a sequence: com ddl-auto=update o Hibernate criaria
+-- a sequence começando em 1 e os novos IDs colidiriam com os existentes. Não deixe instâncias
+-- antigas inserindo junto com as novas: o IDENTITY e a sequence acabariam gerando os mesmos IDs.
+--
+-- O incremento precisa ser igual ao allocationSize de DadosImagem (50). A sequence começa
+-- um bloco acima do maior ID para funcionar tanto com pooled-lo (o valor é o início do bloco)
+-- quanto com pooled (o valor é o fim do bloco).
+
+-- 1. Cria a sequence a partir dos IDs atuais
+DO $$
+DECLARE
+    inicio bigint;
+BEGIN
+    SELECT coalesce(max(id), 0) + 51 INTO inicio FROM tbl_dados_image;
+    EXECUTE format('CREATE SEQUENCE IF NOT EXISTS dados_image_seq START WITH %s INCREMENT BY 50', inicio);
+END $$;
+
+-- 2. Remove o IDENTITY da coluna, que deixa de ser usado (inserts sem ID passam a falhar em vez
+--    de gerar IDs fora da sequence)
+ALTER TABLE tbl_dados_image ALTER COLUMN id DROP IDENTITY IF EXISTS;
@@ -0,0 +1,29 @@
+-- Rendições geradas no upload (TBL_Dados_Image_Rendicao) e link_publico como URL simples (PostgreSQL).
+--
+-- Antes, link_publico guardava a tag <img src='...'/> da versão pad 300x400, transformada sob demanda
+-- na primeira visualização. Com ddl-auto=update o Hibernate cria a tabela nova sozinho; este script
+-- a cria antes (para rodar fora da aplicação) e converte os registros antigos: o link vira a URL do
+-- src e a mesma URL entra como a rendição "padrao". As variantes responsivas não existem para esses
+-- registros; o Cloudinary ainda gera a "padrao" na primeira visualização.
+
+-- 1. Tabela das rendições
+CREATE TABLE IF NOT EXISTS tbl_dados_image_rendicao (
+    imagem_id bigint NOT NULL REFERENCES tbl_dados_image (id),
+    nome varchar(20),
+    largura integer,
+    altura integer,
+    url varchar(500)
+);
+CREATE INDEX IF NOT EXISTS idx_dados_image_rendicao_imagem ON tbl_dados_image_rendicao (imagem_id);
+
+-- 2. Extrai a URL da tag; linhas já convertidas (sem "<img") ficam como estão
+UPDATE tbl_dados_image
+SET link_publico = substring(link_publico from 'src=''([^'']+)''')
+WHERE link_publico LIKE '<img%';
+
+-- 3. Rendição "padrao" para as imagens que ainda não têm nenhuma
+INSERT INTO tbl_dados_image_rendicao (imagem_id, nome, largura, altura, url)
+SELECT d.id, 'padrao', 300, 400, d.link_publico
+FROM tbl_dados_image d
+WHERE d.link_publico IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM tbl_dados_image_rendicao r WHERE r.imagem_id = d.id);
@@ -0,0 +1,25 @@
+-- Preenche o status dos registros gravados antes da coluna existir e a torna NOT NULL (PostgreSQL).
+--
+-- Com ddl-auto=update o Hibernate adicionou a coluna aceitando nulos e não altera colunas existentes.
+-- Sem o status, o acompanhamento (GET /api/files/{id}/events) nunca trata esses registros como
+-- concluídos e o streaming do enriquecimento chamaria o Groq de novo para imagens já enriquecidas.
+-- Rode antes de subir a versão que declara a coluna como obrigatória.
+
+-- 1. Enriquecidas: o conteúdo do Groq já foi gravado. As versões antigas gravavam o texto de erro
+-- em conteudo quando o Groq falhava; esses registros não foram enriquecidos e ficam para o passo 2
+UPDATE tbl_dados_image
+SET status = 'ENRICHED'
+WHERE status IS NULL
+  AND conteudo IS NOT NULL
+  AND conteudo <> ''
+  AND conteudo NOT LIKE 'Erro ao processar com IA:%';
+
+-- 2. As demais foram publicadas no Cloudinary e aguardam o enriquecimento; o texto de erro
+-- antigo sai do conteudo para não ser servido como descrição enriquecida
+UPDATE tbl_dados_image
+SET status = 'UPLOADED',
+    conteudo = CASE WHEN conteudo LIKE 'Erro ao processar com IA:%' THEN '' ELSE conteudo END
+WHERE status IS NULL;
+
+-- 3. Coluna obrigatória
+ALTER TABLE tbl_dados_image ALTER COLUMN status SET NOT NULL;
@@ -0,0 +1,103 @@
+package com.enriquecimento.upload.config;
+
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EnrichmentMessageConverterTest {
+
+    private final EnrichmentMessageConverter converter = new EnrichmentMessageConverter(new ObjectMapper());
+
+    @Test
+    void toMessage_deveGerarPayloadBinarioComVersaoEIdaEVolta() {
+        // Arrange
+        EnrichmentMessage original = new EnrichmentMessage(42L, "<img src='https://res.cloudinary.com/demo/a.jpg'/>",
+                "Imagem de um senhor segurando um bebê", 1_700_000_000_000L);
+
+        // Act
+        Message message = converter.toMessage(original, new MessageProperties());
+
+        // Assert
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(EnrichmentMessageConverter.CONTENT_TYPE);
+        assertThat(message.getMessageProperties().<Integer>getHeader(EnrichmentMessageConverter.SCHEMA_VERSION_HEADER))
+                .isEqualTo(EnrichmentMessage.SCHEMA_VERSION);
+        assertThat(converter.fromMessage(message)).isEqualTo(original);
+    }
+
+    @Test
+    void toMessage_deveSerMenorQueOMapEmJson() {
+        // Arrange
+        String url = "<img src='https://res.cloudinary.com/demo/a.jpg'/>";
+        String descricao = "Imagem de um senhor segurando um bebê";
+        Message json = new Jackson2JsonMessageConverter().toMessage(Map.of(
+                "imageId", "42", "imageUrl", url, "description", descricao, "timestamp", 1_700_000_000_000L),
+                new MessageProperties());
+
+        // Act
+        Message binaria = converter.toMessage(new EnrichmentMessage(42L, url, descricao, 1_700_000_000_000L), new MessageProperties());
+
+        // Assert
+        assertThat(binaria.getBody().length).isLessThan(json.getBody().length);
+    }
+
+    @Test
+    void toMessage_devePreservarCamposNulos() {
+        // Arrange
+        EnrichmentMessage original = new EnrichmentMessage(1L, null, null, 0L);
+
+        // Act
+        EnrichmentMessage lida = converter.fromMessage(converter.toMessage(original, new MessageProperties()));
+
+        // Assert
+        assertThat(lida).isEqualTo(original);
+    }
+
+    @Test
+    void fromMessage_deveLerMapJsonDaVersaoAnteriorComTimestampInteiro() {
+        // Arrange: o Jackson decodificava timestamps pequenos como Integer, quebrando o cast para Long
+        String json = "{\"imageId\":\"7\",\"imageUrl\":\"url\",\"description\":\"foto\",\"timestamp\":123}";
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setHeader("__TypeId__", "java.util.Map");
+
+        // Act
+        EnrichmentMessage lida = converter.fromMessage(new Message(json.getBytes(StandardCharsets.UTF_8), properties));
+
+        // Assert
+        assertThat(lida).isEqualTo(new EnrichmentMessage(7L, "url", "foto", 123L));
+    }
+
+    @Test
+    void fromMessage_deveRejeitarVersaoDesconhecida() {
+        // Arrange
+        Message message = converter.toMessage(new EnrichmentMessage(1L, "url", "foto", 0L), new MessageProperties());
+        message.getMessageProperties().setHeader(EnrichmentMessageConverter.SCHEMA_VERSION_HEADER, 99);
+
+        // Act & Assert
+        assertThatThrownBy(() -> converter.fromMessage(message))
+                .isInstanceOf(MessageConversionException.class)
+                .hasMessageContaining("99");
+    }
+
+    @Test
+    void fromMessage_deveRejeitarPayloadTruncado() {
+        // Arrange
+        Message completa = converter.toMessage(new EnrichmentMessage(1L, "url", "foto", 0L), new MessageProperties());
+        byte[] truncado = Arrays.copyOf(completa.getBody(), completa.getBody().length - 2);
+
+        // Act & Assert
+        assertThatThrownBy(() -> converter.fromMessage(new Message(truncado, completa.getMessageProperties())))
+                .isInstanceOf(MessageConversionException.class);
+    }
+}
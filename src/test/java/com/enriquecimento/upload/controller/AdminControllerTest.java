@@ -0,0 +1,66 @@
+package com.enriquecimento.upload.controller;
+
+import com.enriquecimento.upload.dto.EstatisticasCache;
+import com.enriquecimento.upload.service.EnrichmentRetryService;
+import com.enriquecimento.upload.service.EnrichmentService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(controllers = AdminController.class)
+class AdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private EnrichmentService enrichmentService;
+
+    @MockitoBean
+    private EnrichmentRetryService enrichmentRetryService;
+
+    @Test
+    void enrichmentCacheStats_deveRetornarEstatisticas() throws Exception {
+        Mockito.when(enrichmentService.stats()).thenReturn(new EstatisticasCache(5, 2, 1, 4, 1, 1));
+
+        this.mockMvc.perform(get("/api/admin/enrichment-cache"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.memoriaAcertos").value(5))
+                .andExpect(jsonPath("$.persistenteFalhas").value(1));
+    }
+
+    @Test
+    void invalidateEnrichmentCache_deveInvalidarPorModelo() throws Exception {
+        Mockito.when(enrichmentService.invalidate("modelo-a")).thenReturn(3);
+
+        this.mockMvc.perform(delete("/api/admin/enrichment-cache").param("modelo", "modelo-a"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.removidos").value(3));
+    }
+
+    @Test
+    void replayParkingLot_deveReenviarMensagensEstacionadas() throws Exception {
+        Mockito.when(enrichmentRetryService.replayParkingLot(50)).thenReturn(7);
+
+        this.mockMvc.perform(post("/api/admin/parking-lot/replay").param("max", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reenviadas").value(7));
+    }
+
+    @Test
+    void replayParkingLot_deveRejeitarMaximoInvalido() throws Exception {
+        this.mockMvc.perform(post("/api/admin/parking-lot/replay").param("max", "0"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(enrichmentRetryService);
+    }
+}
@@ -1,21 +1,40 @@
 package com.enriquecimento.upload.controller;
 
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.dto.ResultadoUpload;
 import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.service.AsyncUploadService;
+import com.enriquecimento.upload.service.BatchUploadService;
+import com.enriquecimento.upload.service.EnrichmentStreamService;
 import com.enriquecimento.upload.service.FileUploadService;
+import com.enriquecimento.upload.service.NotificacaoService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.mock.web.MockPart;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -31,6 +50,30 @@ class FileUploadControllerTest {
     @MockBean
     private FileUploadService service;
 
+    @MockBean
+    private AsyncUploadService asyncUploadService;
+
+    @MockBean
+    private BatchUploadService batchUploadService;
+
+    @MockBean
+    private NotificacaoService notificacaoService;
+
+    @MockBean
+    private EnrichmentStreamService enrichmentStreamService;
+
+    @TestConfiguration
+    static class Executores {
+
+        @Bean
+        TaskExecutor notificacaoExecutor() {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setThreadNamePrefix("notificacao-");
+            executor.initialize();
+            return executor;
+        }
+    }
+
     @Test
     void uploadFile_deveRetornarBadRequestParaArquivoNaoImagem() throws Exception {
         MockMultipartFile arquivo = new MockMultipartFile("arquivo", "doc.txt", "text/plain", "abc".getBytes());
@@ -69,6 +112,78 @@ class FileUploadControllerTest {
                 .andExpect(jsonPath("$.nomeArquivo").value("img.png"));
     }
 
+    @Test
+    void uploadFiles_deveRetornarResultadoDeCadaArquivo() throws Exception {
+        MockMultipartFile arquivo1 = new MockMultipartFile("arquivos", "a.png", "image/png", new byte[]{1});
+        MockMultipartFile arquivo2 = new MockMultipartFile("arquivos", "b.txt", "text/plain", new byte[]{2});
+
+        Mockito.when(this.batchUploadService.saveFiles(any(), any())).thenReturn(List.of(
+            ResultadoUpload.sucesso("a.png", 1L, "https://example.com/a.png"),
+            ResultadoUpload.falha("b.txt", "O arquivo enviado não é uma imagem válida.")));
+
+        this.mockMvc.perform(multipart("/api/files/upload/batch")
+                        .file(arquivo1)
+                        .file(arquivo2)
+                        .param("descricoes", "A", "B"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sucesso").value(true))
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[1].sucesso").value(false))
+                .andExpect(jsonPath("$[1].erro").value("O arquivo enviado não é uma imagem válida."));
+    }
+
+    @Test
+    void uploadFiles_deveRetornarBadRequestQuandoLoteExcedeLimite() throws Exception {
+        MockMultipartFile arquivo = new MockMultipartFile("arquivos", "a.png", "image/png", new byte[]{1});
+
+        Mockito.when(this.batchUploadService.saveFiles(any(), any()))
+            .thenThrow(new IllegalArgumentException("O lote excede o limite de 500 arquivos."));
+
+        this.mockMvc.perform(multipart("/api/files/upload/batch").file(arquivo))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void uploadFileAsync_deveRetornarAcceptedComIdDoProcessamento() throws Exception {
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1});
+        MockPart nomeArquivo = new MockPart("nomeArquivo", "img.png".getBytes());
+        MockPart descricao = new MockPart("descricao", "uma imagem".getBytes());
+
+        DadosImagem mockImagem = DadosImagem.builder()
+            .id(7L)
+            .nomeArquivo("img.png")
+            .descricao("uma imagem")
+            .status(StatusImagem.PENDING)
+            .build();
+
+        Mockito.when(this.asyncUploadService.enqueue(any(), any(), any())).thenReturn(mockImagem);
+
+        this.mockMvc.perform(multipart("/api/files/upload/async")
+                        .file(arquivo)
+                        .part(nomeArquivo)
+                        .part(descricao))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/files/7"))
+                .andExpect(jsonPath("$.id").value(7L))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    void uploadFileAsync_deveRetornarServiceUnavailableQuandoFilaCheia() throws Exception {
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1});
+        MockPart nomeArquivo = new MockPart("nomeArquivo", "img.png".getBytes());
+        MockPart descricao = new MockPart("descricao", "uma imagem".getBytes());
+
+        Mockito.when(this.asyncUploadService.enqueue(any(), any(), any())).thenThrow(new TaskRejectedException("cheia"));
+
+        this.mockMvc.perform(multipart("/api/files/upload/async")
+                        .file(arquivo)
+                        .part(nomeArquivo)
+                        .part(descricao))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
     @Test
     void getImageResult_deveRetornarImagemQuandoEncontrada() throws Exception {
         // Arrange
@@ -81,11 +196,13 @@ class FileUploadControllerTest {
             .linkPublico("https://example.com/image.jpg")
             .build();
 
-        Mockito.when(this.service.getFile(imageId)).thenReturn(Optional.of(mockImagem));
+        Mockito.when(this.service.getFile(imageId)).thenReturn(Optional.of(new ResultadoImagem(mockImagem, "abc123")));
 
         // Act & Assert
         this.mockMvc.perform(get("/api/files/{id}", imageId))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().string("Cache-Control", "no-cache"))
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id").value(imageId))
                 .andExpect(jsonPath("$.nomeArquivo").value("test.jpg"))
@@ -94,6 +211,31 @@ class FileUploadControllerTest {
                 .andExpect(jsonPath("$.linkPublico").value("https://example.com/image.jpg"));
     }
 
+    @Test
+    void getImageResult_deveRetornarNotModifiedQuandoEtagIgual() throws Exception {
+        // Arrange
+        DadosImagem mockImagem = DadosImagem.builder().id(1L).conteudo("Descrição enriquecida pela IA").build();
+        Mockito.when(this.service.getFile(1L)).thenReturn(Optional.of(new ResultadoImagem(mockImagem, "abc123")));
+
+        // Act & Assert
+        this.mockMvc.perform(get("/api/files/{id}", 1L).header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getImageResult_deveRetornarCorpoQuandoEtagMudou() throws Exception {
+        // Arrange
+        DadosImagem mockImagem = DadosImagem.builder().id(1L).conteudo("Descrição enriquecida pela IA").build();
+        Mockito.when(this.service.getFile(1L)).thenReturn(Optional.of(new ResultadoImagem(mockImagem, "novo")));
+
+        // Act & Assert
+        this.mockMvc.perform(get("/api/files/{id}", 1L).header("If-None-Match", "\"antigo\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conteudo").value("Descrição enriquecida pela IA"));
+    }
+
     @Test
     void getImageResult_deveRetornarNotFoundQuandoImagemNaoEncontrada() throws Exception {
         // Arrange
@@ -115,6 +257,145 @@ class FileUploadControllerTest {
         this.mockMvc.perform(get("/api/files/{id}", imageId))
                 .andExpect(status().isInternalServerError());
     }
-}
 
+    @Test
+    void waitImageResult_deveResponderNaHoraQuandoJaEnriquecida() throws Exception {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(1L).conteudo("pronta").status(StatusImagem.ENRICHED).build();
+        CompletableFuture<Long> conclusao = new CompletableFuture<>();
+        Mockito.when(notificacaoService.aguardar(1L)).thenReturn(conclusao);
+        Mockito.when(service.getFile(1L)).thenReturn(Optional.of(new ResultadoImagem(imagem, "pronta")));
+
+        // Act
+        MvcResult resultado = this.mockMvc.perform(get("/api/files/{id}/wait", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        this.mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"pronta\""))
+                .andExpect(jsonPath("$.conteudo").value("pronta"));
+        Mockito.verify(notificacaoService).cancelar(1L, conclusao);
+    }
+
+    @Test
+    void waitImageResult_deveSegurarRequisicaoAteConclusao() throws Exception {
+        // Arrange
+        DadosImagem pendente = DadosImagem.builder().id(1L).conteudo("").status(StatusImagem.UPLOADED).build();
+        DadosImagem enriquecida = DadosImagem.builder().id(1L).conteudo("enriquecida").status(StatusImagem.ENRICHED).build();
+        CompletableFuture<Long> conclusao = new CompletableFuture<>();
+        Mockito.when(notificacaoService.aguardar(1L)).thenReturn(conclusao);
+        AtomicReference<String> threadDaResposta = new AtomicReference<>();
+        Mockito.when(service.getFile(1L))
+            .thenReturn(Optional.of(new ResultadoImagem(pendente, "v1")))
+            .thenAnswer(invocacao -> {
+                threadDaResposta.set(Thread.currentThread().getName());
+                return Optional.of(new ResultadoImagem(enriquecida, "v2"));
+            });
 
+        MvcResult resultado = this.mockMvc.perform(get("/api/files/{id}/wait", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Act
+        conclusao.complete(1L);
+
+        // Assert
+        this.mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conteudo").value("enriquecida"));
+        // A resposta é montada no executor de notificações, não na thread que completou a conclusão
+        assertThat(threadDaResposta.get()).startsWith("notificacao-");
+    }
+
+    @Test
+    void waitImageResult_deveRetornarNotFoundQuandoImagemNaoExiste() throws Exception {
+        // Arrange
+        Mockito.when(notificacaoService.aguardar(9L)).thenReturn(new CompletableFuture<>());
+        Mockito.when(service.getFile(9L)).thenReturn(Optional.empty());
+
+        // Act
+        MvcResult resultado = this.mockMvc.perform(get("/api/files/{id}/wait", 9L)).andReturn();
+
+        // Assert
+        this.mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void imageEvents_deveEnviarResultadoQuandoEnriquecimentoTermina() throws Exception {
+        // Arrange
+        DadosImagem pendente = DadosImagem.builder().id(1L).conteudo("").status(StatusImagem.UPLOADED).build();
+        DadosImagem enriquecida = DadosImagem.builder().id(1L).conteudo("enriquecida").status(StatusImagem.ENRICHED).build();
+        CompletableFuture<Long> conclusao = new CompletableFuture<>();
+        Mockito.when(notificacaoService.aguardar(1L)).thenReturn(conclusao);
+        Mockito.when(service.getFile(1L))
+            .thenReturn(Optional.of(new ResultadoImagem(pendente, "v1")))
+            .thenReturn(Optional.of(new ResultadoImagem(enriquecida, "v2")));
+
+        MvcResult resultado = this.mockMvc.perform(get("/api/files/{id}/events", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Act
+        conclusao.complete(1L);
+
+        // Assert
+        this.mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:resultado")))
+                .andExpect(content().string(containsString("\"conteudo\":\"enriquecida\"")));
+        Mockito.verify(notificacaoService).cancelar(1L, conclusao);
+    }
+
+    @Test
+    void imageEvents_deveRetornarNotFoundSemManterAssinatura() throws Exception {
+        // Arrange
+        CompletableFuture<Long> conclusao = new CompletableFuture<>();
+        Mockito.when(notificacaoService.aguardar(9L)).thenReturn(conclusao);
+        Mockito.when(service.getFile(9L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        this.mockMvc.perform(get("/api/files/{id}/events", 9L))
+                .andExpect(status().isNotFound());
+        Mockito.verify(notificacaoService).cancelar(9L, conclusao);
+    }
+
+    @Test
+    void streamEnrichment_deveEnviarPedacosEResultadoFinal() throws Exception {
+        // Arrange
+        CompletableFuture<String> enriquecimento = new CompletableFuture<>();
+        Mockito.when(enrichmentStreamService.enriquecer(eq(1L), any())).thenAnswer(invocation -> {
+            Consumer<String> aoReceber = invocation.getArgument(1);
+            aoReceber.accept("Foto ");
+            aoReceber.accept("bonita");
+            return Optional.of(enriquecimento);
+        });
+
+        MvcResult resultado = this.mockMvc.perform(get("/api/files/{id}/enrichment/stream", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Act
+        enriquecimento.complete("Foto bonita");
+
+        // Assert
+        this.mockMvc.perform(asyncDispatch(resultado))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:token\ndata:{\"texto\":\"Foto \"}")))
+                .andExpect(content().string(containsString("event:token\ndata:{\"texto\":\"bonita\"}")))
+                .andExpect(content().string(containsString("event:fim\ndata:{\"conteudo\":\"Foto bonita\"}")));
+    }
+
+    @Test
+    void streamEnrichment_deveRetornarNotFoundQuandoImagemNaoExiste() throws Exception {
+        // Arrange
+        Mockito.when(enrichmentStreamService.enriquecer(eq(9L), any())).thenReturn(Optional.empty());
+
+        // Act & Assert
+        this.mockMvc.perform(get("/api/files/{id}/enrichment/stream", 9L))
+                .andExpect(status().isNotFound());
+    }
+}
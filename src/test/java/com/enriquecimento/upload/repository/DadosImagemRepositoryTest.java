@@ -1,13 +1,27 @@
 package com.enriquecimento.upload.repository;
 
 import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.Rendicao;
+import com.enriquecimento.upload.entity.StatusImagem;
+import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
@@ -17,6 +31,9 @@ class DadosImagemRepositoryTest {
     @Autowired
     private DadosImagemRepository repository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     @Test
     void deveSalvarERecuperarDadosImagem() {
         // Arrange
@@ -25,6 +42,7 @@ class DadosImagemRepositoryTest {
                 .descricao("Imagem de teste")
                 .linkPublico("https://example.com/image.jpg")
                 .conteudo("Descrição enriquecida pela IA")
+                .status(StatusImagem.ENRICHED)
                 .build();
 
         // Act
@@ -46,6 +64,7 @@ class DadosImagemRepositoryTest {
                 .descricao("Descrição original")
                 .linkPublico("https://example.com/original.jpg")
                 .conteudo("")
+                .status(StatusImagem.UPLOADED)
                 .build();
 
         DadosImagem saved = repository.save(dadosImagem);
@@ -67,6 +86,7 @@ class DadosImagemRepositoryTest {
                 .descricao("Imagem para busca")
                 .linkPublico("https://example.com/busca.jpg")
                 .conteudo("")
+                .status(StatusImagem.UPLOADED)
                 .build();
 
         DadosImagem saved = repository.save(dadosImagem);
@@ -79,6 +99,42 @@ class DadosImagemRepositoryTest {
         assertThat(found.get().getNomeArquivo()).isEqualTo("busca.jpg");
     }
 
+    @Test
+    void deveRecusarImagemSemStatus() {
+        // Arrange
+        DadosImagem semStatus = DadosImagem.builder().nomeArquivo("sem-status.jpg").conteudo("").build();
+
+        // Act / Assert
+        assertThatThrownBy(() -> repository.saveAndFlush(semStatus)).isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void deveSalvarERecuperarRendicoesComAImagem() {
+        // Arrange
+        DadosImagem dadosImagem = DadosImagem.builder()
+                .nomeArquivo("rendicoes.jpg")
+                .linkPublico("https://example.com/c_pad/rendicoes.jpg")
+                .rendicoes(new ArrayList<>(List.of(
+                        new Rendicao("padrao", 300, 400, "https://example.com/c_pad/rendicoes.jpg"),
+                        new Rendicao("w640", 640, 480, "https://example.com/w_640/rendicoes.jpg"))))
+                .status(StatusImagem.UPLOADED)
+                .build();
+        Long id = repository.save(dadosImagem).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        var found = repository.findById(id);
+
+        // Assert
+        assertThat(found).isPresent();
+        assertThat(found.get().getRendicoes())
+                .extracting(Rendicao::getNome, Rendicao::getLargura, Rendicao::getAltura, Rendicao::getUrl)
+                .containsExactlyInAnyOrder(
+                        tuple("padrao", 300, 400, "https://example.com/c_pad/rendicoes.jpg"),
+                        tuple("w640", 640, 480, "https://example.com/w_640/rendicoes.jpg"));
+    }
+
     @Test
     void deveRetornarVazioParaIdInexistente() {
         // Act
@@ -87,4 +143,158 @@ class DadosImagemRepositoryTest {
         // Assert
         assertThat(found).isEmpty();
     }
+
+    @Test
+    void deveInserirLoteEPreencherIds() {
+        // Arrange
+        List<DadosImagem> imagens = List.of(
+                DadosImagem.builder().nomeArquivo("a.jpg").descricao("A").linkPublico("https://example.com/a.jpg")
+                        .conteudo("").status(StatusImagem.UPLOADED).build(),
+                DadosImagem.builder().nomeArquivo("b.jpg").descricao("B").linkPublico("https://example.com/b.jpg")
+                        .conteudo("").status(StatusImagem.UPLOADED).build());
+
+        // Act
+        repository.insertAll(imagens);
+
+        // Assert
+        assertThat(imagens).allSatisfy(imagem -> assertThat(imagem.getId()).isNotNull());
+        var found = repository.findById(imagens.get(1).getId());
+        assertThat(found).isPresent();
+        assertThat(found.get().getNomeArquivo()).isEqualTo("b.jpg");
+        assertThat(found.get().getStatus()).isEqualTo(StatusImagem.UPLOADED);
+    }
+
+    @Test
+    void deveAgruparInsertsDoLoteEmBatchesJdbc() {
+        // Arrange
+        // 120 imagens com batch_size=50: três batches de insert (50, 50 e 20)
+        List<DadosImagem> imagens = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            imagens.add(DadosImagem.builder().nomeArquivo("lote-" + i + ".jpg").conteudo("")
+                    .status(StatusImagem.UPLOADED).build());
+        }
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger statements = new AtomicInteger();
+        entityManager.getEntityManager().unwrap(Session.class).addEventListeners(new SessionEventListener() {
+            @Override
+            public void jdbcExecuteBatchStart() {
+                batches.incrementAndGet();
+            }
+
+            @Override
+            public void jdbcExecuteStatementStart() {
+                statements.incrementAndGet();
+            }
+        });
+
+        // Act
+        repository.insertAll(imagens);
+
+        // Assert
+        assertThat(imagens).extracting(DadosImagem::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(batches.get()).isEqualTo(3);
+        // Fora dos batches, só os nextval da sequence: um por bloco de 50 IDs (pooled-lo), menos
+        // se o bloco reservado por um teste anterior ainda tiver IDs livres
+        assertThat(statements.get()).isBetween(1, 3);
+        assertThat(repository.count()).isEqualTo(120);
+    }
+
+    @Test
+    void deveEncontrarPrimeiraImagemEnviadaPeloSha256() {
+        // Arrange
+        Set<StatusImagem> enviadas = Set.of(StatusImagem.UPLOADED, StatusImagem.ENRICHED);
+        repository.save(DadosImagem.builder().nomeArquivo("pendente.jpg").sha256("abc").status(StatusImagem.PENDING).build());
+        DadosImagem enriquecida = repository.save(DadosImagem.builder().nomeArquivo("enriquecida.jpg").sha256("abc")
+                .linkPublico("https://example.com/enriquecida.jpg").status(StatusImagem.ENRICHED).build());
+        repository.save(DadosImagem.builder().nomeArquivo("enviada.jpg").sha256("abc")
+                .linkPublico("https://example.com/enviada.jpg").status(StatusImagem.UPLOADED).build());
+
+        // Act
+        var found = repository.findFirstBySha256AndStatusInOrderByIdAsc("abc", enviadas);
+
+        // Assert
+        assertThat(found).isPresent();
+        assertThat(found.get().getId()).isEqualTo(enriquecida.getId());
+        assertThat(repository.findFirstBySha256AndStatusInOrderByIdAsc("outro", enviadas)).isEmpty();
+    }
+
+    @Test
+    void deveAtualizarConteudoEStatusDoLoteSemAlterarOutrasColunas() {
+        // Arrange
+        DadosImagem primeira = repository.save(DadosImagem.builder().nomeArquivo("a.jpg").conteudo("")
+                .notaQualidade(0.5).status(StatusImagem.UPLOADED).build());
+        DadosImagem segunda = repository.save(DadosImagem.builder().nomeArquivo("b.jpg").conteudo("")
+                .status(StatusImagem.UPLOADED).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        int atualizadas = repository.updateConteudoAll(
+                Map.of(primeira.getId(), "A enriquecida", segunda.getId(), "B enriquecida", -1L, "removida"),
+                StatusImagem.ENRICHED);
+        entityManager.clear();
+
+        // Assert
+        assertThat(atualizadas).isEqualTo(2);
+        assertThat(repository.findAllById(List.of(primeira.getId(), segunda.getId())))
+                .extracting(DadosImagem::getConteudo, DadosImagem::getStatus)
+                .containsExactlyInAnyOrder(tuple("A enriquecida", StatusImagem.ENRICHED), tuple("B enriquecida", StatusImagem.ENRICHED));
+        assertThat(repository.findById(primeira.getId()).get().getNotaQualidade()).isEqualTo(0.5);
+    }
+
+    @Test
+    void deveAtualizarConteudoEStatusDeUmaImagemComUmUnicoUpdate() {
+        // Arrange
+        DadosImagem imagem = repository.save(DadosImagem.builder().nomeArquivo("a.jpg").descricao("A").conteudo("")
+                .status(StatusImagem.UPLOADED).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        int atualizadas = repository.updateConteudo(imagem.getId(), "A enriquecida", StatusImagem.ENRICHED);
+        entityManager.clear();
+
+        // Assert
+        assertThat(atualizadas).isEqualTo(1);
+        DadosImagem found = repository.findById(imagem.getId()).get();
+        assertThat(found.getConteudo()).isEqualTo("A enriquecida");
+        assertThat(found.getStatus()).isEqualTo(StatusImagem.ENRICHED);
+        assertThat(found.getDescricao()).isEqualTo("A");
+    }
+
+    @Test
+    void naoDeveMarcarComoEnriquecidaImagemComUploadFalho() {
+        // Arrange
+        DadosImagem falhou = repository.save(DadosImagem.builder().nomeArquivo("a.jpg").conteudo("")
+                .status(StatusImagem.FAILED).build());
+        DadosImagem enviada = repository.save(DadosImagem.builder().nomeArquivo("b.jpg").conteudo("")
+                .status(StatusImagem.UPLOADED).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        int umaImagem = repository.updateConteudo(falhou.getId(), "A enriquecida", StatusImagem.ENRICHED);
+        int lote = repository.updateConteudoAll(
+                Map.of(falhou.getId(), "A enriquecida", enviada.getId(), "B enriquecida"), StatusImagem.ENRICHED);
+        entityManager.clear();
+
+        // Assert
+        assertThat(umaImagem).isZero();
+        assertThat(lote).isEqualTo(1);
+        assertThat(repository.findAllById(List.of(falhou.getId(), enviada.getId())))
+                .extracting(DadosImagem::getConteudo, DadosImagem::getStatus)
+                .containsExactlyInAnyOrder(tuple("", StatusImagem.FAILED), tuple("B enriquecida", StatusImagem.ENRICHED));
+    }
+
+    @Test
+    void deveListarSomenteIdsExistentes() {
+        // Arrange
+        DadosImagem imagem = repository.save(DadosImagem.builder().nomeArquivo("a.jpg").status(StatusImagem.UPLOADED).build());
+
+        // Act
+        List<Long> ids = repository.findExistingIds(Set.of(imagem.getId(), -1L));
+
+        // Assert
+        assertThat(ids).containsExactly(imagem.getId());
+    }
 }
@@ -0,0 +1,40 @@
+package com.enriquecimento.upload.repository;
+
+import com.enriquecimento.upload.entity.MensagemOutbox;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// O dialeto do PostgreSQL gera "for no key update skip locked", que o H2 não aceita; com o do H2 sai "for update"
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@ActiveProfiles("test")
+class MensagemOutboxRepositoryTest {
+
+    @Autowired
+    private MensagemOutboxRepository repository;
+
+    @Test
+    void deveTravarLoteMaisAntigoEApagarDepoisDePublicado() {
+        // Arrange
+        for (long imageId = 1; imageId <= 3; imageId++) {
+            repository.save(MensagemOutbox.builder().imageId(imageId).imageUrl("url").descricao("d").criadoEm(Instant.now()).build());
+        }
+
+        // Act
+        List<MensagemOutbox> lote = repository.findByOrderByIdAsc(PageRequest.of(0, 2));
+        repository.deleteAllInBatch(lote);
+
+        // Assert
+        assertThat(lote).extracting(MensagemOutbox::getImageId).containsExactly(1L, 2L);
+        assertThat(repository.findAll()).extracting(MensagemOutbox::getImageId).containsExactly(3L);
+    }
+}
@@ -1,20 +1,41 @@
 package com.enriquecimento.upload.service;
 
-import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.config.EnrichmentMessageConverter;
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
 import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.enriquecimento.upload.service.EnrichmentRetryService.Falha;
+import com.enriquecimento.upload.service.PipelineMetrics.Etapa;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -28,108 +49,309 @@ class AmqpServiceTest {
     private RabbitTemplate rabbitTemplate;
 
     @Mock
-    private GroqService groqService;
+    private EnrichmentService enrichmentService;
+
+    @Mock
+    private EnrichmentRetryService enrichmentRetryService;
+
+    @Mock
+    private Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @Mock
+    private NotificacaoService notificacaoService;
+
+    @Mock
+    private PipelineMetrics pipelineMetrics;
+
+    @Spy
+    private EnrichmentMessageConverter enrichmentMessageConverter = new EnrichmentMessageConverter(new ObjectMapper());
 
     @InjectMocks
     private AmqpService amqpService;
 
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(amqpService, "exchangeName", "image-processing-exchange");
+        ReflectionTestUtils.setField(amqpService, "routingKey", "image-processing");
+        ReflectionTestUtils.setField(amqpService, "confirmTimeoutMs", 5000L);
+    }
+
     @Test
-    void sendImageProcessingMessage_deveEnviarMensagemParaFila() {
+    void sendImageProcessingMessages_deveEnviarLoteNoMesmoCanalEAguardarConfirmacoes() {
         // Arrange
-        String imageId = "123";
-        String imageUrl = "https://example.com/image.jpg";
-        String description = "Imagem de teste";
+        RabbitOperations operations = mock(RabbitOperations.class);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        List<EnrichmentMessage> mensagens = List.of(
+            new EnrichmentMessage(1L, "https://example.com/1.jpg", "um", 10L),
+            new EnrichmentMessage(2L, "https://example.com/2.jpg", "dois", 20L));
 
         // Act
-        amqpService.sendImageProcessingMessage(imageId, imageUrl, description);
+        amqpService.sendImageProcessingMessages(mensagens);
 
         // Assert
-        ArgumentCaptor<Map<String, Object>> messageCaptor = ArgumentCaptor.forClass(Map.class);
-        verify(rabbitTemplate).convertAndSend(
-            eq("image-processing-exchange"), 
-            eq("image-processing"), 
-            messageCaptor.capture()
-        );
+        ArgumentCaptor<Message> messageCaptor = ArgumentCaptor.forClass(Message.class);
+        InOrder ordem = inOrder(operations);
+        ordem.verify(operations, times(2)).send(eq("image-processing-exchange"), eq("image-processing"), messageCaptor.capture());
+        ordem.verify(operations).waitForConfirmsOrDie(5000L);
+
+        Message primeira = messageCaptor.getAllValues().get(0);
+        assertThat(primeira.getMessageProperties().<Integer>getHeader(EnrichmentMessageConverter.SCHEMA_VERSION_HEADER))
+            .isEqualTo(EnrichmentMessage.SCHEMA_VERSION);
+        assertThat(enrichmentMessageConverter.fromMessage(primeira)).isEqualTo(mensagens.get(0));
+    }
+
+    @Test
+    void sendImageProcessingMessages_devePropagarFalhaDeConfirmacao() {
+        // Arrange
+        RabbitOperations operations = mock(RabbitOperations.class);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        doThrow(new AmqpTimeoutException("sem confirmação")).when(operations).waitForConfirmsOrDie(anyLong());
+
+        // Act & Assert
+        assertThatThrownBy(() -> amqpService.sendImageProcessingMessages(List.of(new EnrichmentMessage(1L, "url", "um", 10L))))
+            .isInstanceOf(AmqpTimeoutException.class);
+        verify(pipelineMetrics).registrar(Etapa.AMQP_PUBLICACAO, (Timer.Sample) null, PipelineMetrics.ERRO);
+    }
+
+    private Message mensagem(long imageId, String description) {
+        return mensagem(imageId, description, System.currentTimeMillis());
+    }
+
+    private Message mensagem(long imageId, String description, long timestamp) {
+        return enrichmentMessageConverter.toMessage(
+            new EnrichmentMessage(imageId, "https://example.com/" + imageId + ".jpg", description, timestamp),
+            new MessageProperties());
+    }
 
-        Map<String, Object> sentMessage = messageCaptor.getValue();
-        assertThat(sentMessage.get("imageId")).isEqualTo(imageId);
-        assertThat(sentMessage.get("imageUrl")).isEqualTo(imageUrl);
-        assertThat(sentMessage.get("description")).isEqualTo(description);
-        assertThat(sentMessage.get("timestamp")).isNotNull();
+    @SuppressWarnings("unchecked")
+    private List<Falha> falhasReenviadas() {
+        ArgumentCaptor<List<Falha>> falhasCaptor = ArgumentCaptor.forClass(List.class);
+        verify(enrichmentRetryService).reenviar(falhasCaptor.capture());
+        return falhasCaptor.getValue();
     }
 
     @Test
     void receiveImageProcessingMessage_deveProcessarMensagemEAtualizarBanco() {
         // Arrange
-        String imageId = "123";
-        String imageUrl = "https://example.com/image.jpg";
-        String description = "Imagem de teste";
         String enrichedDescription = "Imagem processada com IA: Imagem de teste [Enriquecido]";
 
-        Map<String, Object> message = Map.of(
-            "imageId", imageId,
-            "imageUrl", imageUrl,
-            "description", description,
-            "timestamp", System.currentTimeMillis()
-        );
+        when(dadosImagemRepository.findExistingIds(Set.of(123L))).thenReturn(List.of(123L));
+        when(enrichmentService.enrich("123", "Imagem de teste")).thenReturn(CompletableFuture.completedFuture(enrichedDescription));
 
-        DadosImagem dadosImagem = DadosImagem.builder()
-            .id(123L)
-            .nomeArquivo("test.jpg")
-            .descricao(description)
-            .build();
+        // Act
+        amqpService.receiveImageProcessingMessages(List.of(mensagem(123L, "Imagem de teste")));
+
+        // Assert
+        verify(enrichmentService).enrich("123", "Imagem de teste");
+        verify(dadosImagemRepository).updateConteudo(123L, enrichedDescription, StatusImagem.ENRICHED);
+        verify(dadosImagemRepository, never()).findAllById(any());
+        verify(dadosImagemRepository, never()).save(any());
+        verify(pipelineMetrics).registrar(eq(Etapa.FILA), any(Duration.class), eq("tentativa"), eq("0"));
+        assertThat(falhasReenviadas()).isEmpty();
+    }
+
+    @Test
+    void receiveImageProcessingMessages_deveGravarLoteInteiroSemCarregarEntidades() {
+        // Arrange
+        List<Message> messages = List.of(mensagem(1L, "um"), mensagem(2L, "dois"), mensagem(3L, "removida"));
+
+        when(dadosImagemRepository.findExistingIds(Set.of(1L, 2L, 3L))).thenReturn(List.of(1L, 2L));
+        when(enrichmentService.enrich("1", "um")).thenReturn(CompletableFuture.completedFuture("Um enriquecido"));
+        when(enrichmentService.enrich("2", "dois")).thenReturn(CompletableFuture.completedFuture("Dois enriquecido"));
+
+        // Act
+        amqpService.receiveImageProcessingMessages(messages);
+
+        // Assert
+        verify(dadosImagemRepository, times(1)).findExistingIds(any());
+        verify(dadosImagemRepository, never()).findAllById(any());
+        verify(dadosImagemRepository, never()).findById(any());
+        verify(dadosImagemRepository).updateConteudoAll(
+            Map.of(1L, "Um enriquecido", 2L, "Dois enriquecido"), StatusImagem.ENRICHED);
+        verify(enrichmentService, never()).enrich(eq("3"), any());
+        verify(resultadoImagemCache).invalidateAll(Set.of(1L, 2L));
+        verify(notificacaoService).publicarConclusao(Set.of(1L, 2L));
+        assertThat(falhasReenviadas()).isEmpty();
+    }
+
+    @Test
+    void receiveImageProcessingMessages_deveEnriquecerUmaVezAMensagemMaisRecenteDaMesmaImagem() {
+        // Arrange
+        // Entrega repetida do outbox seguida da mensagem mais nova da mesma imagem
+        List<Message> messages = List.of(mensagem(1L, "antiga", 1000L), mensagem(2L, "dois", 1000L), mensagem(1L, "nova", 2000L));
+
+        when(dadosImagemRepository.findExistingIds(Set.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+        when(enrichmentService.enrich("1", "nova")).thenReturn(CompletableFuture.completedFuture("Nova enriquecida"));
+        when(enrichmentService.enrich("2", "dois")).thenReturn(CompletableFuture.completedFuture("Dois enriquecido"));
+
+        // Act
+        amqpService.receiveImageProcessingMessages(messages);
+
+        // Assert
+        verify(enrichmentService, never()).enrich("1", "antiga");
+        verify(dadosImagemRepository).updateConteudoAll(
+            Map.of(1L, "Nova enriquecida", 2L, "Dois enriquecido"), StatusImagem.ENRICHED);
+        assertThat(falhasReenviadas()).isEmpty();
+    }
 
-        when(dadosImagemRepository.findById(123L)).thenReturn(Optional.of(dadosImagem));
-        when(groqService.improveDescription(description)).thenReturn(enrichedDescription);
-        when(dadosImagemRepository.save(any(DadosImagem.class))).thenReturn(dadosImagem);
+    @Test
+    void receiveImageProcessingMessages_naoDeveDeixarRepeticaoAtrasadaSobrescreverMensagemMaisNova() {
+        // Arrange
+        // A repetição de uma mensagem antiga chega depois da mais nova da mesma imagem
+        Message nova = mensagem(1L, "nova", 2000L);
+        when(dadosImagemRepository.findExistingIds(Set.of(1L))).thenReturn(List.of(1L));
+        when(enrichmentService.enrich("1", "nova")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("erro do Groq")));
 
         // Act
-        amqpService.receiveImageProcessingMessage(message);
+        amqpService.receiveImageProcessingMessages(List.of(nova, mensagem(1L, "antiga", 1000L)));
 
         // Assert
-        verify(groqService).improveDescription(description);
-        verify(dadosImagemRepository).save(dadosImagem);
-        assertThat(dadosImagem.getConteudo()).isEqualTo(enrichedDescription);
+        verify(enrichmentService, times(1)).enrich(any(), any());
+        assertThat(falhasReenviadas())
+            .singleElement()
+            .satisfies(falha -> assertThat(falha.mensagem()).isSameAs(nova));
     }
 
     @Test
     void receiveImageProcessingMessage_deveTratarErroQuandoImagemNaoEncontrada() {
         // Arrange
-        String imageId = "999";
-        Map<String, Object> message = Map.of(
-            "imageId", imageId,
-            "imageUrl", "https://example.com/image.jpg",
-            "description", "Imagem não encontrada",
-            "timestamp", System.currentTimeMillis()
-        );
+        when(dadosImagemRepository.findExistingIds(Set.of(999L))).thenReturn(List.of());
 
-        when(dadosImagemRepository.findById(999L)).thenReturn(Optional.empty());
+        // Act
+        amqpService.receiveImageProcessingMessages(List.of(mensagem(999L, "Imagem não encontrada")));
+
+        // Assert
+        verify(enrichmentService, never()).enrich(any(), any());
+        verify(dadosImagemRepository, never()).updateConteudo(any(), any(), any());
+        verify(dadosImagemRepository, never()).updateConteudoAll(any(), any());
+        assertThat(falhasReenviadas()).isEmpty();
+    }
+
+    @Test
+    void receiveImageProcessingMessages_deveRepetirSoAsImagensQueFalharamNoGroq() {
+        // Arrange
+        Message falhou = mensagem(2L, "dois");
+        when(dadosImagemRepository.findExistingIds(Set.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+        when(enrichmentService.enrich("1", "um")).thenReturn(CompletableFuture.completedFuture("Um enriquecido"));
+        when(enrichmentService.enrich("2", "dois")).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("timeout")));
 
         // Act
-        amqpService.receiveImageProcessingMessage(message);
+        amqpService.receiveImageProcessingMessages(List.of(mensagem(1L, "um"), falhou));
 
         // Assert
-        verify(groqService, never()).improveDescription(any());
-        verify(dadosImagemRepository, never()).save(any());
+        // Nenhum texto de erro é gravado no conteúdo da imagem que falhou
+        verify(dadosImagemRepository).updateConteudo(1L, "Um enriquecido", StatusImagem.ENRICHED);
+        verify(dadosImagemRepository, never()).updateConteudoAll(any(), any());
+        assertThat(falhasReenviadas())
+            .singleElement()
+            .satisfies(falha -> {
+                assertThat(falha.mensagem()).isSameAs(falhou);
+                assertThat(falha.motivo()).contains("timeout");
+                assertThat(falha.definitiva()).isFalse();
+            });
+    }
+
+    @Test
+    void receiveImageProcessingMessages_deveRepetirImagensQueNaoTerminaramNoPrazo() {
+        // Arrange
+        ReflectionTestUtils.setField(amqpService, "enrichmentTimeoutMs", 50L);
+        Message pendente = mensagem(2L, "dois");
+        when(dadosImagemRepository.findExistingIds(Set.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+        when(enrichmentService.enrich("1", "um")).thenReturn(CompletableFuture.completedFuture("Um enriquecido"));
+        when(enrichmentService.enrich("2", "dois")).thenReturn(new CompletableFuture<>());
+
+        // Act
+        amqpService.receiveImageProcessingMessages(List.of(mensagem(1L, "um"), pendente));
+
+        // Assert
+        verify(dadosImagemRepository).updateConteudo(1L, "Um enriquecido", StatusImagem.ENRICHED);
+        verify(notificacaoService).publicarConclusao(Set.of(1L));
+        assertThat(falhasReenviadas())
+            .singleElement()
+            .satisfies(falha -> {
+                assertThat(falha.mensagem()).isSameAs(pendente);
+                assertThat(falha.motivo()).contains("50 ms");
+                assertThat(falha.definitiva()).isFalse();
+            });
+    }
+
+    @Test
+    void init_deveDerivarPrazoDoLoteDoPrazoDoGroq() {
+        // Arrange
+        ReflectionTestUtils.setField(amqpService, "enrichmentTimeoutMs", 0L);
+        ReflectionTestUtils.setField(amqpService, "groqDeadlineMs", 30000L);
+
+        // Act
+        amqpService.init();
+
+        // Assert
+        assertThat(ReflectionTestUtils.getField(amqpService, "enrichmentTimeoutMs")).isEqualTo(120000L);
     }
 
     @Test
-    void receiveImageProcessingMessage_deveTratarErroQuandoExcecao() {
+    void init_deveRecusarPrazoDoLoteMenorQueOPrazoDoGroq() {
         // Arrange
-        Map<String, Object> message = Map.of(
-            "imageId", "123",
-            "imageUrl", "https://example.com/image.jpg",
-            "description", "Imagem de teste",
-            "timestamp", System.currentTimeMillis()
-        );
+        ReflectionTestUtils.setField(amqpService, "enrichmentTimeoutMs", 30000L);
+        ReflectionTestUtils.setField(amqpService, "groqDeadlineMs", 60000L);
 
-        when(dadosImagemRepository.findById(123L)).thenThrow(new RuntimeException("Database error"));
+        // Act & Assert
+        assertThatThrownBy(() -> amqpService.init())
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("groq.http.deadline-ms");
+    }
+
+    @Test
+    void receiveImageProcessingMessage_deveMandarLoteParaRepeticaoQuandoBancoFalha() {
+        // Arrange
+        when(dadosImagemRepository.findExistingIds(Set.of(123L))).thenThrow(new RuntimeException("Database error"));
 
         // Act
-        amqpService.receiveImageProcessingMessage(message);
+        amqpService.receiveImageProcessingMessages(List.of(mensagem(123L, "Imagem de teste")));
 
         // Assert
-        verify(groqService, never()).improveDescription(any());
+        verify(enrichmentService, never()).enrich(any(), any());
         verify(dadosImagemRepository, never()).save(any());
+        assertThat(falhasReenviadas())
+            .singleElement()
+            .satisfies(falha -> {
+                assertThat(falha.motivo()).contains("Database error");
+                assertThat(falha.definitiva()).isFalse();
+            });
+    }
+
+    @Test
+    void receiveImageProcessingMessages_deveEstacionarMensagemIlegivel() {
+        // Arrange
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(EnrichmentMessageConverter.SCHEMA_VERSION_HEADER, EnrichmentMessage.SCHEMA_VERSION);
+        Message ilegivel = new Message(new byte[]{1, 2, 3}, properties);
+
+        // Act
+        amqpService.receiveImageProcessingMessages(List.of(ilegivel));
+
+        // Assert
+        verifyNoInteractions(enrichmentService);
+        verify(dadosImagemRepository, never()).findExistingIds(any());
+        assertThat(falhasReenviadas())
+            .singleElement()
+            .satisfies(falha -> assertThat(falha.definitiva()).isTrue());
+    }
+
+    @Test
+    void receiveImageProcessingMessages_devePropagarFalhaAoPublicarRepeticoes() {
+        // Arrange
+        when(dadosImagemRepository.findExistingIds(Set.of(123L))).thenThrow(new RuntimeException("Database error"));
+        doThrow(new AmqpTimeoutException("sem confirmação")).when(enrichmentRetryService).reenviar(any());
+
+        // Act & Assert
+        // A exceção chega ao container, que devolve o lote para a fila
+        assertThatThrownBy(() -> amqpService.receiveImageProcessingMessages(List.of(mensagem(123L, "Imagem de teste"))))
+            .isInstanceOf(AmqpTimeoutException.class);
     }
 }
@@ -0,0 +1,164 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncUploadServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @Mock
+    private CloudinaryService cloudinaryService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @TempDir
+    Path stagingDir;
+
+    private UploadStagingService uploadStagingService;
+
+    @BeforeEach
+    void setUp() {
+        uploadStagingService = new UploadStagingService();
+        ReflectionTestUtils.setField(uploadStagingService, "stagingDir", stagingDir.toString());
+        ReflectionTestUtils.setField(uploadStagingService, "maxBytes", 10L);
+    }
+
+    private AsyncUploadService service(TaskExecutor executor) {
+        return new AsyncUploadService(dadosImagemRepository, uploadStagingService, cloudinaryService,
+                new ImagePreprocessingService(Runnable::run, new PipelineMetrics(new SimpleMeterRegistry())), outboxService,
+                new DeduplicationService(dadosImagemRepository), executor, resultadoImagemCache);
+    }
+
+    @Test
+    void enqueue_deveRegistrarPendenteEProcessarUploadEmSegundoPlano() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1, 2, 3});
+        DadosImagem pendente = DadosImagem.builder().id(1L).status(StatusImagem.PENDING).build();
+
+        when(dadosImagemRepository.save(any(DadosImagem.class))).thenReturn(pendente);
+        when(dadosImagemRepository.findById(1L)).thenReturn(Optional.of(pendente));
+        when(cloudinaryService.upload(eq("img.png"), any(InputStream.class), eq(3L))).thenReturn(new ImagemCloudinary("img", "url"));
+
+        // Act
+        DadosImagem resultado = service(Runnable::run).enqueue(arquivo, "img.png", "uma imagem");
+
+        // Assert
+        assertThat(resultado.getId()).isEqualTo(1L);
+        assertThat(pendente.getStatus()).isEqualTo(StatusImagem.UPLOADED);
+        assertThat(pendente.getLinkPublico()).isEqualTo("url");
+        assertThat(pendente.getIdCloudinary()).isEqualTo("img");
+        ArgumentCaptor<DadosImagem> registrada = ArgumentCaptor.forClass(DadosImagem.class);
+        verify(dadosImagemRepository).save(registrada.capture());
+        // SHA-256 de {1, 2, 3}, calculado durante a cópia para o staging
+        assertThat(registrada.getValue().getSha256())
+                .isEqualTo("039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81");
+        // Status final e mensagem de enriquecimento gravados juntos no outbox
+        verify(outboxService).save(pendente, true);
+        assertThat(uploadStagingService.getBytesReservados()).isZero();
+        try (var arquivos = Files.list(stagingDir)) {
+            assertThat(arquivos).isEmpty();
+        }
+    }
+
+    @Test
+    void enqueue_deveMarcarFalhaQuandoUploadFalha() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1});
+        DadosImagem pendente = DadosImagem.builder().id(2L).status(StatusImagem.PENDING).build();
+
+        when(dadosImagemRepository.save(any(DadosImagem.class))).thenReturn(pendente);
+        when(dadosImagemRepository.findById(2L)).thenReturn(Optional.of(pendente));
+        when(cloudinaryService.upload(any(), any(InputStream.class), anyLong())).thenReturn(null);
+
+        // Act
+        service(Runnable::run).enqueue(arquivo, "img.png", "uma imagem");
+
+        // Assert
+        assertThat(pendente.getStatus()).isEqualTo(StatusImagem.FAILED);
+        verify(outboxService, never()).save(any(), anyBoolean());
+        // Quem consultou enquanto estava PENDING não continua vendo o status antigo
+        verify(resultadoImagemCache).invalidate(2L);
+    }
+
+    @Test
+    void enqueue_deveDesfazerRegistroQuandoFilaCheia() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1});
+        when(dadosImagemRepository.save(any(DadosImagem.class))).thenReturn(DadosImagem.builder().id(3L).build());
+        TaskExecutor cheio = task -> {
+            throw new TaskRejectedException("cheia");
+        };
+
+        // Act & Assert
+        assertThatThrownBy(() -> service(cheio).enqueue(arquivo, "img.png", "uma imagem"))
+                .isInstanceOf(TaskRejectedException.class);
+        verify(dadosImagemRepository).deleteById(3L);
+        assertThat(uploadStagingService.getBytesReservados()).isZero();
+    }
+
+    @Test
+    void enqueue_deveRejeitarQuandoStagingCheio() {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[11]);
+
+        // Act & Assert
+        assertThatThrownBy(() -> service(Runnable::run).enqueue(arquivo, "img.png", "uma imagem"))
+                .isInstanceOf(TaskRejectedException.class);
+        verifyNoInteractions(dadosImagemRepository, cloudinaryService);
+    }
+
+    @Test
+    void enqueue_deveReaproveitarImagemDuplicadaSemAgendarUpload() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1});
+        DadosImagem original = DadosImagem.builder().id(4L).linkPublico("url").idCloudinary("img")
+                .conteudo("descrição enriquecida").status(StatusImagem.ENRICHED).build();
+        when(dadosImagemRepository.findFirstBySha256AndStatusInOrderByIdAsc(anyString(), anyCollection()))
+                .thenReturn(Optional.of(original));
+        when(outboxService.save(any(DadosImagem.class), eq(false))).thenAnswer(invocation -> invocation.getArgument(0));
+        TaskExecutor executor = mock(TaskExecutor.class);
+
+        // Act
+        DadosImagem resultado = service(executor).enqueue(arquivo, "copia.png", "outra descrição");
+
+        // Assert
+        assertThat(resultado.getStatus()).isEqualTo(StatusImagem.ENRICHED);
+        assertThat(resultado.getLinkPublico()).isEqualTo("url");
+        assertThat(resultado.getConteudo()).isEqualTo("descrição enriquecida");
+        verifyNoInteractions(executor, cloudinaryService);
+        assertThat(uploadStagingService.getBytesReservados()).isZero();
+    }
+}
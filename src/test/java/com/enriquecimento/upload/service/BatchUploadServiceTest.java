@@ -0,0 +1,133 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.dto.ResultadoUpload;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchUploadServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @Mock
+    private CloudinaryService cloudinaryService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    private BatchUploadService batchUploadService;
+
+    @BeforeEach
+    void setUp() {
+        batchUploadService = new BatchUploadService(dadosImagemRepository, cloudinaryService,
+            new ImagePreprocessingService(Runnable::run, new PipelineMetrics(new SimpleMeterRegistry())), outboxService,
+            new DeduplicationService(dadosImagemRepository), Runnable::run);
+        ReflectionTestUtils.setField(batchUploadService, "maxFiles", 3);
+    }
+
+    @Test
+    void saveFiles_deveInserirEmLoteEPublicarSomenteOsArquivosEnviados() {
+        // Arrange
+        List<MultipartFile> arquivos = List.of(
+            new MockMultipartFile("arquivos", "a.png", "image/png", new byte[]{1}),
+            new MockMultipartFile("arquivos", "b.txt", "text/plain", new byte[]{2}),
+            new MockMultipartFile("arquivos", "c.png", "image/png", new byte[]{3}));
+
+        when(cloudinaryService.upload(eq("a.png"), any(InputStream.class), anyLong())).thenReturn(new ImagemCloudinary("a", "url-a"));
+        when(cloudinaryService.upload(eq("c.png"), any(InputStream.class), anyLong())).thenReturn(null);
+        AtomicLong ids = new AtomicLong();
+        when(outboxService.insertAll(anyList(), any())).thenAnswer(invocation -> {
+            List<DadosImagem> imagens = invocation.getArgument(0);
+            imagens.forEach(imagem -> imagem.setId(ids.incrementAndGet()));
+            return imagens;
+        });
+
+        // Act
+        List<ResultadoUpload> resultados = batchUploadService.saveFiles(arquivos, List.of("A", "B", "C"));
+
+        // Assert
+        assertThat(resultados).extracting(ResultadoUpload::sucesso).containsExactly(true, false, false);
+        assertThat(resultados.get(0).id()).isEqualTo(1L);
+        assertThat(resultados.get(0).linkPublico()).isEqualTo("url-a");
+        assertThat(resultados.get(1).erro()).contains("imagem válida");
+        assertThat(resultados.get(2).erro()).contains("Cloudinary");
+
+        ArgumentCaptor<List<DadosImagem>> inseridas = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Predicate<DadosImagem>> enriquecer = ArgumentCaptor.forClass(Predicate.class);
+        verify(outboxService).insertAll(inseridas.capture(), enriquecer.capture());
+        assertThat(inseridas.getValue()).extracting(DadosImagem::getDescricao).containsExactly("A");
+        assertThat(inseridas.getValue().get(0).getSha256()).hasSize(64);
+        assertThat(inseridas.getValue()).allMatch(enriquecer.getValue());
+        verify(cloudinaryService, never()).upload(eq("b.txt"), any(), anyLong());
+    }
+
+    @Test
+    void saveFiles_deveEnviarUmaVezConteudoRepetidoEReaproveitarJaEnriquecido() {
+        // Arrange
+        List<MultipartFile> arquivos = List.of(
+            new MockMultipartFile("arquivos", "a.png", "image/png", new byte[]{1}),
+            new MockMultipartFile("arquivos", "a-copia.png", "image/png", new byte[]{1}),
+            new MockMultipartFile("arquivos", "antiga.png", "image/png", new byte[]{9}));
+
+        DadosImagem original = DadosImagem.builder().id(7L).linkPublico("url-antiga").idCloudinary("antiga")
+            .conteudo("já enriquecida").status(StatusImagem.UPLOADED).build();
+        when(dadosImagemRepository.findFirstBySha256AndStatusInOrderByIdAsc(anyString(), anyCollection()))
+            .thenAnswer(invocation -> invocation.getArgument(0).equals(sha256(new byte[]{9})) ? Optional.of(original) : Optional.empty());
+        when(cloudinaryService.upload(eq("a.png"), any(InputStream.class), anyLong())).thenReturn(new ImagemCloudinary("a", "url-a"));
+        when(outboxService.insertAll(anyList(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<ResultadoUpload> resultados = batchUploadService.saveFiles(arquivos, null);
+
+        // Assert
+        assertThat(resultados).extracting(ResultadoUpload::linkPublico).containsExactly("url-a", "url-a", "url-antiga");
+        verify(cloudinaryService, times(1)).upload(any(), any(InputStream.class), anyLong());
+
+        ArgumentCaptor<List<DadosImagem>> inseridas = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Predicate<DadosImagem>> enriquecer = ArgumentCaptor.forClass(Predicate.class);
+        verify(outboxService).insertAll(inseridas.capture(), enriquecer.capture());
+        assertThat(inseridas.getValue()).filteredOn(enriquecer.getValue())
+            .extracting(DadosImagem::getNomeArquivo).containsExactly("a.png", "a-copia.png");
+    }
+
+    @Test
+    void saveFiles_deveRejeitarLoteAcimaDoLimite() {
+        // Arrange
+        MultipartFile arquivo = new MockMultipartFile("arquivos", "a.png", "image/png", new byte[]{1});
+
+        // Act & Assert
+        assertThatThrownBy(() -> batchUploadService.saveFiles(List.of(arquivo, arquivo, arquivo, arquivo), null))
+            .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(cloudinaryService, dadosImagemRepository);
+    }
+
+    private static String sha256(byte[] conteudo) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(conteudo));
+    }
+}
@@ -0,0 +1,87 @@
+package com.enriquecimento.upload.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    void executar_naoDevePassarDoLimiteDeChamadasSimultaneas() throws Exception {
+        // Arrange
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("cloudinary", 3, Duration.ofSeconds(5));
+        AtomicInteger emAndamento = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+
+        // Act
+        List<Future<Integer>> chamadas = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            chamadas.add(executor.submit(() -> limiter.executar(() -> {
+                maximo.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                emAndamento.decrementAndGet();
+                return 1;
+            })));
+        }
+        int concluidas = 0;
+        for (Future<Integer> chamada : chamadas) {
+            concluidas += chamada.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        assertThat(concluidas).isEqualTo(12);
+        assertThat(maximo.get()).isEqualTo(3);
+        assertThat(limiter.getEmUso()).isZero();
+    }
+
+    @Test
+    void executar_deveDesistirSemChamarQuandoNaoAbreVagaNaEsperaMaxima() throws Exception {
+        // Arrange
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("cloudinary", 1, Duration.ofMillis(50));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+        CountDownLatch ocupada = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Thread outra = new Thread(() -> {
+            try {
+                limiter.executar(() -> {
+                    ocupada.countDown();
+                    return liberar.await(5, TimeUnit.SECONDS);
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        outra.start();
+        ocupada.await(5, TimeUnit.SECONDS);
+        AtomicBoolean chamou = new AtomicBoolean();
+
+        // Act & Assert
+        assertThatThrownBy(() -> limiter.executar(() -> chamou.getAndSet(true)))
+            .isInstanceOf(TimeoutException.class)
+            .hasMessageContaining("cloudinary");
+        assertThat(chamou).isFalse();
+        assertThat(registry.get("downstream.concurrency.active").tag("servico", "cloudinary").gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get("downstream.concurrency.timeouts").functionCounter().count()).isEqualTo(1.0);
+
+        liberar.countDown();
+        outra.join();
+        assertThat(limiter.getEmUso()).isZero();
+    }
+}
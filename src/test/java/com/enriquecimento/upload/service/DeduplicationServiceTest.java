@@ -0,0 +1,88 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.Rendicao;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeduplicationServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @InjectMocks
+    private DeduplicationService deduplicationService;
+
+    @Test
+    void sha256_deveCalcularHashDoConteudo() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1, 2, 3});
+
+        // Act & Assert
+        assertThat(deduplicationService.sha256(arquivo))
+            .isEqualTo("039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81");
+    }
+
+    @Test
+    void findDuplicate_deveContabilizarTaxaDeAcerto() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        deduplicationService.bindTo(registry);
+        when(dadosImagemRepository.findFirstBySha256AndStatusInOrderByIdAsc(eq("abc"), anyCollection()))
+            .thenReturn(Optional.of(DadosImagem.builder().id(1L).build()));
+        when(dadosImagemRepository.findFirstBySha256AndStatusInOrderByIdAsc(eq("def"), anyCollection()))
+            .thenReturn(Optional.empty());
+
+        // Act
+        deduplicationService.findDuplicate("abc");
+        deduplicationService.findDuplicate("abc");
+        deduplicationService.findDuplicate("def");
+        deduplicationService.recordHit();
+
+        // Assert
+        assertThat(registry.get("upload.dedup").tag("resultado", "hit").functionCounter().count()).isEqualTo(3);
+        assertThat(registry.get("upload.dedup").tag("resultado", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("upload.dedup.hit.ratio").gauge().value()).isEqualTo(0.75);
+    }
+
+    @Test
+    void reutilizar_deveCopiarLinkEnriquecimentoEQualidade() {
+        // Arrange
+        DadosImagem original = DadosImagem.builder().id(1L).nomeArquivo("a.png").descricao("A")
+            .linkPublico("url").idCloudinary("a").sha256("abc").conteudo("enriquecida")
+            .notaQualidade(0.9).analiseQualidade("{}").status(StatusImagem.UPLOADED)
+            .rendicoes(new ArrayList<>(List.of(new Rendicao("padrao", 300, 400, "url")))).build();
+
+        // Act
+        DadosImagem copia = deduplicationService.reutilizar(original, "b.png", "B");
+
+        // Assert
+        assertThat(copia.getId()).isNull();
+        assertThat(copia.getNomeArquivo()).isEqualTo("b.png");
+        assertThat(copia.getDescricao()).isEqualTo("B");
+        assertThat(copia.getLinkPublico()).isEqualTo("url");
+        assertThat(copia.getRendicoes()).extracting(Rendicao::getNome).containsExactly("padrao");
+        assertThat(copia.getRendicoes()).isNotSameAs(original.getRendicoes());
+        assertThat(copia.getConteudo()).isEqualTo("enriquecida");
+        assertThat(copia.getNotaQualidade()).isEqualTo(0.9);
+        assertThat(copia.getStatus()).isEqualTo(StatusImagem.ENRICHED);
+        assertThat(deduplicationService.precisaEnriquecer(copia)).isFalse();
+    }
+}
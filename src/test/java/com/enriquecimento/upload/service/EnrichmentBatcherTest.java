@@ -0,0 +1,128 @@
+package com.enriquecimento.upload.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EnrichmentBatcherTest {
+
+    @Mock
+    private GroqService groqService;
+
+    @Mock
+    private TaskScheduler scheduler;
+
+    private EnrichmentBatcher batcher(TaskScheduler scheduler, int batchSize, long maxWaitMs) {
+        EnrichmentBatcher batcher = new EnrichmentBatcher(groqService, scheduler);
+        ReflectionTestUtils.setField(batcher, "batchSize", batchSize);
+        ReflectionTestUtils.setField(batcher, "maxWaitMs", maxWaitMs);
+        return batcher;
+    }
+
+    @Test
+    void submit_deveEnviarLoteCheioEmUmaCompletion() throws Exception {
+        // Arrange
+        EnrichmentBatcher batcher = batcher(scheduler, 2, 60_000);
+        when(groqService.completeBatch(Map.of("1", "foto a", "2", "foto b")))
+            .thenReturn(CompletableFuture.completedFuture(Map.of("1", "Foto A melhorada", "2", "Foto B melhorada")));
+
+        // Act
+        CompletableFuture<String> primeira = batcher.submit("1", "foto a");
+        CompletableFuture<String> segunda = batcher.submit("2", "foto b");
+
+        // Assert
+        assertThat(primeira.get()).isEqualTo("Foto A melhorada");
+        assertThat(segunda.get()).isEqualTo("Foto B melhorada");
+        verify(groqService, never()).complete(anyString());
+    }
+
+    @Test
+    void submit_deveUsarChamadasIndividuaisQuandoRespostaDoLoteInvalida() throws Exception {
+        // Arrange
+        EnrichmentBatcher batcher = batcher(scheduler, 2, 60_000);
+        when(groqService.completeBatch(anyMap())).thenReturn(CompletableFuture.failedFuture(
+            new GroqService.RespostaLoteInvalidaException("JSON inválido", null)));
+        when(groqService.buildPrompt(anyString())).thenAnswer(invocation -> "prompt " + invocation.getArgument(0));
+        when(groqService.complete("prompt foto a")).thenReturn(CompletableFuture.completedFuture("Foto A"));
+        when(groqService.complete("prompt foto b")).thenReturn(CompletableFuture.completedFuture("Foto B"));
+
+        // Act
+        CompletableFuture<String> primeira = batcher.submit("1", "foto a");
+        CompletableFuture<String> segunda = batcher.submit("2", "foto b");
+
+        // Assert
+        assertThat(primeira.get()).isEqualTo("Foto A");
+        assertThat(segunda.get()).isEqualTo("Foto B");
+    }
+
+    @Test
+    void submit_deveFalharTodoOLoteSemChamadasIndividuaisQuandoGroqLimita() {
+        // Arrange
+        // 429 depois de esgotadas as repetições do limitador
+        EnrichmentBatcher batcher = batcher(scheduler, 2, 60_000);
+        when(groqService.completeBatch(anyMap())).thenReturn(CompletableFuture.failedFuture(
+            new IllegalStateException("Resposta inesperada da API Groq (429): rate limit")));
+
+        // Act
+        CompletableFuture<String> primeira = batcher.submit("1", "foto a");
+        CompletableFuture<String> segunda = batcher.submit("2", "foto b");
+
+        // Assert
+        assertThatThrownBy(primeira::get).hasMessageContaining("429");
+        assertThatThrownBy(segunda::get).hasMessageContaining("429");
+        verify(groqService, never()).complete(anyString());
+    }
+
+    @Test
+    void submit_deveCompletarIndividualmenteIdsAusentesNaResposta() throws Exception {
+        // Arrange
+        EnrichmentBatcher batcher = batcher(scheduler, 2, 60_000);
+        when(groqService.completeBatch(anyMap())).thenReturn(CompletableFuture.completedFuture(Map.of("1", "Foto A melhorada")));
+        when(groqService.buildPrompt("foto b")).thenReturn("prompt foto b");
+        when(groqService.complete("prompt foto b")).thenReturn(CompletableFuture.completedFuture("Foto B"));
+
+        // Act
+        CompletableFuture<String> primeira = batcher.submit("1", "foto a");
+        CompletableFuture<String> segunda = batcher.submit("2", "foto b");
+
+        // Assert
+        assertThat(primeira.get()).isEqualTo("Foto A melhorada");
+        assertThat(segunda.get()).isEqualTo("Foto B");
+        verify(groqService, times(1)).complete(anyString());
+    }
+
+    @Test
+    void submit_deveEnviarLoteIncompletoAposTempoMaximo() throws Exception {
+        // Arrange
+        ThreadPoolTaskScheduler real = new ThreadPoolTaskScheduler();
+        real.initialize();
+        try {
+            EnrichmentBatcher batcher = batcher(real, 10, 20);
+            when(groqService.buildPrompt("foto a")).thenReturn("prompt foto a");
+            when(groqService.complete("prompt foto a")).thenReturn(CompletableFuture.completedFuture("Foto A"));
+
+            // Act
+            CompletableFuture<String> resultado = batcher.submit("1", "foto a");
+
+            // Assert
+            assertThat(resultado.get(5, TimeUnit.SECONDS)).isEqualTo("Foto A");
+            verify(groqService, never()).completeBatch(anyMap());
+        } finally {
+            real.shutdown();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.service.EnrichmentRetryService.Falha;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EnrichmentRetryServiceTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @InjectMocks
+    private EnrichmentRetryService enrichmentRetryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(enrichmentRetryService, "exchangeName", "image-processing-exchange");
+        ReflectionTestUtils.setField(enrichmentRetryService, "routingKey", "image-processing");
+        ReflectionTestUtils.setField(enrichmentRetryService, "retryExchangeName", "image-processing-retry");
+        ReflectionTestUtils.setField(enrichmentRetryService, "deadLetterExchangeName", "image-processing-dlx");
+        ReflectionTestUtils.setField(enrichmentRetryService, "parkingLotQueueName", "image-processing-parking-lot");
+    }
+
+    private RabbitOperations operacoes() {
+        RabbitOperations operations = mock(RabbitOperations.class);
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        return operations;
+    }
+
+    private Channel canal() {
+        Channel channel = mock(Channel.class);
+        when(rabbitTemplate.execute(any())).thenAnswer(invocation -> {
+            ChannelCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(channel);
+        });
+        return channel;
+    }
+
+    private Message mensagem(Integer tentativas) {
+        MessageProperties properties = new MessageProperties();
+        if (tentativas != null) {
+            properties.setHeader(EnrichmentRetryService.RETRY_COUNT_HEADER, tentativas);
+        }
+        return new Message(new byte[]{1}, properties);
+    }
+
+    private GetResponse estacionada(long tag) {
+        AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
+            .contentType("application/x-enrichment-message")
+            .headers(Map.of(EnrichmentRetryService.RETRY_COUNT_HEADER, 3,
+                EnrichmentRetryService.PARKING_REASON_HEADER, "timeout", "x-schema-version", 1))
+            .build();
+        return new GetResponse(new Envelope(tag, false, "image-processing-dlx", "parking-lot"), props, new byte[]{1}, 0);
+    }
+
+    @Test
+    void reenviar_deveMandarParaProximoNivelEIncrementarContagem() {
+        // Arrange
+        RabbitOperations operations = operacoes();
+        Message primeira = mensagem(null);
+        Message segunda = mensagem(1);
+
+        // Act
+        enrichmentRetryService.reenviar(List.of(new Falha(primeira, "timeout", false), new Falha(segunda, "timeout", false)));
+
+        // Assert
+        InOrder ordem = inOrder(operations);
+        ordem.verify(operations).send("image-processing-retry", "retry-0", primeira);
+        ordem.verify(operations).send("image-processing-retry", "retry-1", segunda);
+        ordem.verify(operations).waitForConfirmsOrDie(5000L);
+        assertThat(primeira.getMessageProperties().<Integer>getHeader(EnrichmentRetryService.RETRY_COUNT_HEADER)).isEqualTo(1);
+        assertThat(segunda.getMessageProperties().<Integer>getHeader(EnrichmentRetryService.RETRY_COUNT_HEADER)).isEqualTo(2);
+    }
+
+    @Test
+    void reenviar_deveEstacionarQuandoNiveisAcabamOuFalhaEDefinitiva() {
+        // Arrange
+        RabbitOperations operations = operacoes();
+        Message esgotada = mensagem(3);
+        Message ilegivel = mensagem(null);
+
+        // Act
+        enrichmentRetryService.reenviar(List.of(new Falha(esgotada, "timeout", false), new Falha(ilegivel, "Mensagem inválida", true)));
+
+        // Assert
+        verify(operations).send("image-processing-dlx", "parking-lot", esgotada);
+        verify(operations).send("image-processing-dlx", "parking-lot", ilegivel);
+        verify(operations, never()).send(eq("image-processing-retry"), any(), any(Message.class));
+        assertThat(esgotada.getMessageProperties().<String>getHeader(EnrichmentRetryService.PARKING_REASON_HEADER)).isEqualTo("timeout");
+        assertThat(esgotada.getMessageProperties().<Integer>getHeader(EnrichmentRetryService.RETRY_COUNT_HEADER)).isEqualTo(3);
+    }
+
+    @Test
+    void reenviar_naoDevePublicarListaVazia() {
+        // Act
+        enrichmentRetryService.reenviar(List.of());
+
+        // Assert
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void replayParkingLot_deveRepublicarSemContagemEConfirmarNoFim() throws Exception {
+        // Arrange
+        Channel channel = canal();
+        when(channel.basicGet("image-processing-parking-lot", false))
+            .thenReturn(estacionada(7L), estacionada(8L), null);
+
+        // Act
+        int reenviadas = enrichmentRetryService.replayParkingLot(10);
+
+        // Assert
+        assertThat(reenviadas).isEqualTo(2);
+        ArgumentCaptor<AMQP.BasicProperties> propsCaptor = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        InOrder ordem = inOrder(channel);
+        ordem.verify(channel, times(2)).basicPublish(eq("image-processing-exchange"), eq("image-processing"), propsCaptor.capture(), any());
+        ordem.verify(channel).waitForConfirmsOrDie(5000L);
+        ordem.verify(channel).basicAck(8L, true);
+
+        AMQP.BasicProperties republicada = propsCaptor.getValue();
+        assertThat(republicada.getContentType()).isEqualTo("application/x-enrichment-message");
+        assertThat(republicada.getHeaders())
+            .containsEntry("x-schema-version", 1)
+            .doesNotContainKeys(EnrichmentRetryService.RETRY_COUNT_HEADER, EnrichmentRetryService.PARKING_REASON_HEADER);
+    }
+
+    @Test
+    void replayParkingLot_devePararNoMaximo() throws Exception {
+        // Arrange
+        Channel channel = canal();
+        when(channel.basicGet("image-processing-parking-lot", false)).thenReturn(estacionada(1L), estacionada(2L));
+
+        // Act
+        int reenviadas = enrichmentRetryService.replayParkingLot(1);
+
+        // Assert
+        assertThat(reenviadas).isEqualTo(1);
+        verify(channel, times(1)).basicGet(any(), anyBoolean());
+        verify(channel).basicAck(1L, true);
+    }
+
+    @Test
+    void replayParkingLot_deveDevolverMensagensQuandoBrokerNaoConfirma() throws Exception {
+        // Arrange
+        Channel channel = canal();
+        when(channel.basicGet("image-processing-parking-lot", false)).thenReturn(estacionada(4L), (GetResponse) null);
+        doThrow(new TimeoutException("sem confirmação")).when(channel).waitForConfirmsOrDie(anyLong());
+
+        // Act & Assert
+        assertThatThrownBy(() -> enrichmentRetryService.replayParkingLot(10))
+            .isInstanceOf(TimeoutException.class);
+        verify(channel).basicNack(4L, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+}
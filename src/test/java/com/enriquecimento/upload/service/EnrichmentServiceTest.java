@@ -0,0 +1,171 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.entity.EnriquecimentoCache;
+import com.enriquecimento.upload.repository.EnriquecimentoCacheRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EnrichmentServiceTest {
+
+    @Mock
+    private GroqService groqService;
+
+    @Mock
+    private EnrichmentBatcher enrichmentBatcher;
+
+    @Mock
+    private EnriquecimentoCacheRepository enriquecimentoCacheRepository;
+
+    private AsyncCache<String, String> cache;
+
+    private EnrichmentService enrichmentService;
+
+    @BeforeEach
+    void setUp() {
+        cache = Caffeine.newBuilder().maximumSize(100).recordStats().buildAsync();
+        enrichmentService = new EnrichmentService(groqService, enrichmentBatcher, enriquecimentoCacheRepository, cache);
+        lenient().when(groqService.getModel()).thenReturn("modelo-a");
+        lenient().when(groqService.buildPrompt(anyString())).thenAnswer(invocation -> "Melhore esse texto '" + invocation.getArgument(0) + "'");
+    }
+
+    @Test
+    void enrich_deveChamarGroqUmaVezParaDescricoesEquivalentes() {
+        // Arrange
+        when(enrichmentBatcher.submit("1", "Foto do  produto ")).thenReturn(CompletableFuture.completedFuture("Foto profissional do produto"));
+
+        // Act
+        String primeira = enrichmentService.enrich("1", "Foto do  produto ").join();
+        String segunda = enrichmentService.enrich("2", "foto do produto").join();
+
+        // Assert
+        assertThat(primeira).isEqualTo("Foto profissional do produto");
+        assertThat(segunda).isEqualTo(primeira);
+        verify(enrichmentBatcher, times(1)).submit(anyString(), anyString());
+        ArgumentCaptor<EnriquecimentoCache> gravado = ArgumentCaptor.forClass(EnriquecimentoCache.class);
+        verify(enriquecimentoCacheRepository).save(gravado.capture());
+        assertThat(gravado.getValue().getModelo()).isEqualTo("modelo-a");
+        assertThat(gravado.getValue().getChave()).hasSize(64);
+        assertThat(enrichmentService.stats().memoriaAcertos()).isEqualTo(1);
+        assertThat(enrichmentService.stats().persistenteFalhas()).isEqualTo(1);
+    }
+
+    @Test
+    void enrich_deveUsarNivelPersistenteSemChamarGroq() {
+        // Arrange
+        when(enriquecimentoCacheRepository.findById(anyString()))
+            .thenReturn(Optional.of(EnriquecimentoCache.builder().conteudo("do banco").build()));
+
+        // Act
+        String resultado = enrichmentService.enrich("2", "foto do produto").join();
+
+        // Assert
+        assertThat(resultado).isEqualTo("do banco");
+        verify(enrichmentBatcher, never()).submit(anyString(), anyString());
+        assertThat(enrichmentService.stats().persistenteAcertos()).isEqualTo(1);
+    }
+
+    @Test
+    void enrich_deveFalharSemGuardarFalhaNoCache() {
+        // Arrange
+        when(enrichmentBatcher.submit(anyString(), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("timeout")));
+
+        // Act
+        CompletableFuture<String> resultado = enrichmentService.enrich("2", "foto do produto");
+
+        // Assert
+        assertThatThrownBy(resultado::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(cache.synchronous().estimatedSize()).isZero();
+        verify(enriquecimentoCacheRepository, never()).save(any());
+    }
+
+    @Test
+    void enrich_deveSepararEntradasPorModelo() {
+        // Arrange
+        when(enrichmentBatcher.submit(anyString(), anyString()))
+            .thenReturn(CompletableFuture.completedFuture("resposta a"), CompletableFuture.completedFuture("resposta b"));
+
+        // Act
+        enrichmentService.enrich("2", "foto do produto").join();
+        when(groqService.getModel()).thenReturn("modelo-b");
+        String outroModelo = enrichmentService.enrich("2", "foto do produto").join();
+
+        // Assert
+        assertThat(outroModelo).isEqualTo("resposta b");
+        verify(enrichmentBatcher, times(2)).submit(anyString(), anyString());
+    }
+
+    @Test
+    void invalidate_deveLimparMemoriaERemoverEntradasDoModelo() {
+        // Arrange
+        cache.put("chave", CompletableFuture.completedFuture("valor"));
+        when(enriquecimentoCacheRepository.deleteByModelo("modelo-a")).thenReturn(3);
+
+        // Act
+        int removidos = enrichmentService.invalidate("modelo-a");
+
+        // Assert
+        assertThat(removidos).isEqualTo(3);
+        assertThat(cache.synchronous().estimatedSize()).isZero();
+        verify(enriquecimentoCacheRepository, never()).deleteAllEntries();
+    }
+
+    @Test
+    void enrichStreaming_deveRepassarPedacosEGuardarResultadoNosDoisNiveis() {
+        // Arrange
+        when(enriquecimentoCacheRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(groqService.stream(eq("Melhore esse texto 'Foto do produto'"), any())).thenAnswer(invocation -> {
+            Consumer<String> aoReceber = invocation.getArgument(1);
+            aoReceber.accept("Foto ");
+            aoReceber.accept("profissional");
+            return CompletableFuture.completedFuture("Foto profissional");
+        });
+        List<String> recebidos = new ArrayList<>();
+
+        // Act
+        String resultado = enrichmentService.enrichStreaming("Foto do produto", recebidos::add).join();
+        String depois = enrichmentService.enrich("2", "foto do produto").join();
+
+        // Assert
+        assertThat(resultado).isEqualTo("Foto profissional");
+        assertThat(recebidos).containsExactly("Foto ", "profissional");
+        // O consumidor da fila encontra o resultado em memória, sem nova chamada ao Groq
+        assertThat(depois).isEqualTo("Foto profissional");
+        verifyNoInteractions(enrichmentBatcher);
+        verify(enriquecimentoCacheRepository).save(any(EnriquecimentoCache.class));
+    }
+
+    @Test
+    void enrichStreaming_deveEntregarRespostaEmCacheDeUmaVez() {
+        // Arrange
+        when(enriquecimentoCacheRepository.findById(anyString()))
+            .thenReturn(Optional.of(EnriquecimentoCache.builder().conteudo("do banco").build()));
+        List<String> recebidos = new ArrayList<>();
+
+        // Act
+        String resultado = enrichmentService.enrichStreaming("foto do produto", recebidos::add).join();
+
+        // Assert
+        assertThat(resultado).isEqualTo("do banco");
+        assertThat(recebidos).containsExactly("do banco");
+        verify(groqService, never()).stream(anyString(), any());
+    }
+}
@@ -0,0 +1,93 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EnrichmentStreamServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @Mock
+    private EnrichmentService enrichmentService;
+
+    @Mock
+    private Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @Mock
+    private NotificacaoService notificacaoService;
+
+    @InjectMocks
+    private EnrichmentStreamService enrichmentStreamService;
+
+    @Test
+    void enriquecer_deveRepassarPedacosEGravarResultadoNoFim() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(1L).descricao("foto").conteudo("").status(StatusImagem.UPLOADED).build();
+        when(dadosImagemRepository.findById(1L)).thenReturn(Optional.of(imagem));
+        when(enrichmentService.enrichStreaming(eq("foto"), any())).thenAnswer(invocation -> {
+            Consumer<String> aoReceber = invocation.getArgument(1);
+            aoReceber.accept("Foto ");
+            aoReceber.accept("bonita");
+            return CompletableFuture.completedFuture("Foto bonita");
+        });
+        List<String> recebidos = new ArrayList<>();
+
+        // Act
+        String conteudo = enrichmentStreamService.enriquecer(1L, recebidos::add).orElseThrow().join();
+
+        // Assert
+        assertThat(conteudo).isEqualTo("Foto bonita");
+        assertThat(recebidos).containsExactly("Foto ", "bonita");
+        verify(dadosImagemRepository).updateConteudo(1L, "Foto bonita", StatusImagem.ENRICHED);
+        verify(resultadoImagemCache).invalidate(1L);
+        verify(notificacaoService).publicarConclusao(List.of(1L));
+    }
+
+    @Test
+    void enriquecer_deveEntregarConteudoGravadoSemChamarGroq() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(1L).conteudo("pronta").status(StatusImagem.ENRICHED).build();
+        when(dadosImagemRepository.findById(1L)).thenReturn(Optional.of(imagem));
+        List<String> recebidos = new ArrayList<>();
+
+        // Act
+        String conteudo = enrichmentStreamService.enriquecer(1L, recebidos::add).orElseThrow().join();
+
+        // Assert
+        assertThat(conteudo).isEqualTo("pronta");
+        assertThat(recebidos).containsExactly("pronta");
+        verifyNoInteractions(enrichmentService, notificacaoService);
+        verify(dadosImagemRepository, never()).updateConteudo(any(), any(), any());
+    }
+
+    @Test
+    void enriquecer_deveRetornarVazioQuandoImagemNaoExiste() {
+        // Arrange
+        when(dadosImagemRepository.findById(9L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThat(enrichmentStreamService.enriquecer(9L, pedaco -> { })).isEmpty();
+        verifyNoInteractions(enrichmentService);
+    }
+}
@@ -0,0 +1,166 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ImagemCloudinary;
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.StatusImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileUploadServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private CloudinaryService cloudinaryService;
+
+    // Desligado por padrão: o conteúdo segue sem alteração
+    @Spy
+    private ImagePreprocessingService imagePreprocessingService =
+            new ImagePreprocessingService(Runnable::run, new PipelineMetrics(new SimpleMeterRegistry()));
+
+    @Mock
+    private DeduplicationService deduplicationService;
+
+    @Spy
+    private Cache<Long, ResultadoImagem> resultadoImagemCache = Caffeine.newBuilder().build();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private FileUploadService fileUploadService;
+
+    @Test
+    void saveFile_deveEnviarImagemSalvarEPublicarMensagem() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1, 2, 3});
+
+        when(cloudinaryService.upload(eq("img.png"), any(InputStream.class), eq(3L))).thenReturn(new ImagemCloudinary("img", "<img src='https://res.cloudinary.com/img'/>"));
+        when(outboxService.save(any(DadosImagem.class), eq(true))).thenAnswer(invocation -> {
+            DadosImagem imagem = invocation.getArgument(0);
+            imagem.setId(1L);
+            return imagem;
+        });
+
+        // Act
+        DadosImagem salvo = fileUploadService.saveFile(arquivo, "img.png", "uma imagem");
+
+        // Assert
+        // Imagem e mensagem de enriquecimento gravadas juntas no outbox, sem ida ao broker na requisição
+        verify(outboxService).save(salvo, true);
+        assertThat(salvo.getLinkPublico()).contains("res.cloudinary.com");
+        assertThat(salvo.getStatus()).isEqualTo(StatusImagem.UPLOADED);
+        assertThat(salvo.getIdCloudinary()).isEqualTo("img");
+    }
+
+    @Test
+    void saveFile_naoDeveEnfileirarEnriquecimentoQuandoUploadFalha() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1, 2, 3});
+
+        when(cloudinaryService.upload(eq("img.png"), any(InputStream.class), eq(3L))).thenReturn(null);
+        when(outboxService.save(any(DadosImagem.class), eq(false))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        DadosImagem salvo = fileUploadService.saveFile(arquivo, "img.png", "uma imagem");
+
+        // Assert
+        // Sem mensagem de enriquecimento: o listener gravaria ENRICHED por cima do FAILED
+        verify(outboxService).save(salvo, false);
+        verify(outboxService, never()).save(any(), eq(true));
+        assertThat(salvo.getStatus()).isEqualTo(StatusImagem.FAILED);
+        assertThat(salvo.getLinkPublico()).isNull();
+    }
+
+    @Test
+    void saveFile_deveReaproveitarImagemDuplicadaSemUploadNemGroq() throws Exception {
+        // Arrange
+        MockMultipartFile arquivo = new MockMultipartFile("arquivo", "img.png", "image/png", new byte[]{1, 2, 3});
+        DadosImagem original = DadosImagem.builder().id(1L).linkPublico("url").conteudo("já enriquecida")
+            .status(StatusImagem.UPLOADED).build();
+        DadosImagem copia = DadosImagem.builder().nomeArquivo("copia.png").linkPublico("url").conteudo("já enriquecida")
+            .status(StatusImagem.UPLOADED).build();
+
+        when(deduplicationService.sha256(arquivo)).thenReturn("abc");
+        when(deduplicationService.findDuplicate("abc")).thenReturn(Optional.of(original));
+        when(deduplicationService.reutilizar(original, "copia.png", "outra")).thenReturn(copia);
+        when(outboxService.save(copia, false)).thenReturn(copia);
+
+        // Act
+        DadosImagem salvo = fileUploadService.saveFile(arquivo, "copia.png", "outra");
+
+        // Assert
+        assertThat(salvo.getLinkPublico()).isEqualTo("url");
+        verifyNoInteractions(cloudinaryService, dadosImagemRepository);
+    }
+
+    @Test
+    void getFile_deveLerDoBancoSomenteNaPrimeiraConsulta() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(1L).conteudo("").status(StatusImagem.UPLOADED).build();
+        when(dadosImagemRepository.findById(1L)).thenReturn(Optional.of(imagem));
+
+        // Act
+        ResultadoImagem primeira = fileUploadService.getFile(1L).orElseThrow();
+        ResultadoImagem segunda = fileUploadService.getFile(1L).orElseThrow();
+
+        // Assert
+        verify(dadosImagemRepository, times(1)).findById(1L);
+        assertThat(segunda.imagem()).isSameAs(imagem);
+        assertThat(segunda.etag()).isEqualTo(primeira.etag()).hasSize(64);
+    }
+
+    @Test
+    void getFile_deveMudarEtagDepoisDaInvalidacao() {
+        // Arrange
+        when(dadosImagemRepository.findById(1L))
+            .thenReturn(Optional.of(DadosImagem.builder().id(1L).conteudo("").status(StatusImagem.UPLOADED).build()))
+            .thenReturn(Optional.of(DadosImagem.builder().id(1L).conteudo("enriquecida").status(StatusImagem.ENRICHED).build()));
+        String antes = fileUploadService.getFile(1L).orElseThrow().etag();
+
+        // Act
+        resultadoImagemCache.invalidate(1L);
+        ResultadoImagem depois = fileUploadService.getFile(1L).orElseThrow();
+
+        // Assert
+        assertThat(depois.imagem().getConteudo()).isEqualTo("enriquecida");
+        assertThat(depois.etag()).isNotEqualTo(antes);
+    }
+
+    @Test
+    void getFile_naoDeveGuardarImagemInexistente() {
+        // Arrange
+        when(dadosImagemRepository.findById(9L)).thenReturn(Optional.empty());
+
+        // Act
+        fileUploadService.getFile(9L);
+        fileUploadService.getFile(9L);
+
+        // Assert
+        verify(dadosImagemRepository, times(2)).findById(9L);
+        assertThat(resultadoImagemCache.asMap()).isEmpty();
+    }
+}
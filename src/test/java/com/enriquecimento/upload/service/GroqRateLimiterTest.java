@@ -0,0 +1,113 @@
+package com.enriquecimento.upload.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.http.HttpHeaders;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroqRateLimiterTest {
+
+    @Mock
+    private TaskScheduler scheduler;
+
+    private final AtomicLong agora = new AtomicLong(1_000_000);
+
+    private GroqRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new GroqRateLimiter(scheduler);
+        ReflectionTestUtils.setField(limiter, "requestsPerMinute", 2L);
+        ReflectionTestUtils.setField(limiter, "tokensPerMinute", 1000L);
+        ReflectionTestUtils.setField(limiter, "relogio", (LongSupplier) agora::get);
+        limiter.init();
+    }
+
+    private static HttpHeaders headers(Map<String, String> valores) {
+        return HttpHeaders.of(valores.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, e -> List.of(e.getValue()))), (nome, valor) -> true);
+    }
+
+    private long esperaAgendada() {
+        ArgumentCaptor<Instant> quando = ArgumentCaptor.forClass(Instant.class);
+        verify(scheduler).schedule(any(Runnable.class), quando.capture());
+        return quando.getValue().toEpochMilli() - agora.get();
+    }
+
+    @Test
+    void acquire_deveLiberarDentroDoOrcamentoEAdiarQuandoEsgotado() {
+        // Act
+        CompletableFuture<Void> primeira = limiter.acquire(100);
+        CompletableFuture<Void> segunda = limiter.acquire(100);
+        CompletableFuture<Void> terceira = limiter.acquire(100);
+
+        // Assert
+        assertThat(primeira).isDone();
+        assertThat(segunda).isDone();
+        assertThat(terceira).isNotDone();
+        // 2 requisições por minuto: uma nova a cada 30 s
+        assertThat(esperaAgendada()).isEqualTo(30_000);
+    }
+
+    @Test
+    void acquire_deveRespeitarOrcamentoDeTokens() {
+        // Act
+        limiter.acquire(900);
+        CompletableFuture<Void> segunda = limiter.acquire(400);
+
+        // Assert
+        assertThat(segunda).isNotDone();
+        // Faltam 300 tokens, repostos a 1000/min
+        assertThat(esperaAgendada()).isEqualTo(18_000);
+    }
+
+    @Test
+    void registrarResposta_devePausarAteRetryAfterQuandoRecebe429() {
+        // Act
+        limiter.registrarResposta(429, headers(Map.of("retry-after", "7")));
+        CompletableFuture<Void> liberado = limiter.acquire(1);
+
+        // Assert
+        assertThat(liberado).isNotDone();
+        assertThat(esperaAgendada()).isEqualTo(7_000);
+    }
+
+    @Test
+    void registrarResposta_deveSeguirRestanteEResetInformadosPeloServidor() {
+        // Act
+        limiter.registrarResposta(200, headers(Map.of(
+            "x-ratelimit-remaining-requests", "0",
+            "x-ratelimit-reset-requests", "2.5s")));
+        CompletableFuture<Void> liberado = limiter.acquire(1);
+
+        // Assert
+        assertThat(liberado).isNotDone();
+        assertThat(esperaAgendada()).isEqualTo(30_000);
+    }
+
+    @Test
+    void duracao_deveConverterFormatosDaApi() {
+        assertThat(GroqRateLimiter.duracao("2m59.56s")).isEqualTo(179_560);
+        assertThat(GroqRateLimiter.duracao("7.66s")).isEqualTo(7_660);
+        assertThat(GroqRateLimiter.duracao("120ms")).isEqualTo(120);
+        assertThat(GroqRateLimiter.duracao("1h")).isEqualTo(3_600_000);
+    }
+}
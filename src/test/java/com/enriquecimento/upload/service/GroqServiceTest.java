@@ -1,102 +1,312 @@
 package com.enriquecimento.upload.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.when;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-@ExtendWith(MockitoExtension.class)
 class GroqServiceTest {
 
-    @Mock
-    private RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer servidor;
 
-    @InjectMocks
     private GroqService groqService;
 
-    @Test
-    void improveDescription_deveRetornarDescricaoMelhorada() {
-        // Arrange
-        String originalDescription = "Imagem de um senhor segurando um bebê";
-        String expectedResponse = "Fotografia emocionante de um avô carinhoso segurando um bebê com ternura";
-        
-        Map<String, Object> mockResponse = Map.of(
+    // Resposta que o stub do Groq devolve na próxima chamada
+    private final AtomicReference<Resposta> resposta = new AtomicReference<>();
+
+    private final AtomicReference<String> ultimoCorpo = new AtomicReference<>();
+
+    // Respostas extras, consumidas antes de "resposta" (ex.: um 429 seguido de sucesso)
+    private final Queue<Resposta> respostasAntes = new ConcurrentLinkedQueue<>();
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // Quando definido, o stub responde em stream: um evento SSE por pedaço, com intervalo entre eles
+    private final AtomicReference<List<String>> pedacos = new AtomicReference<>();
+
+    // Eventos enviados depois dos pedaços
+    private final AtomicReference<String> fimStream = new AtomicReference<>(
+        "data: {\"choices\":[],\"x_groq\":{\"usage\":{\"total_tokens\":12}}}\n\ndata: [DONE]\n\n");
+
+    private static final long INTERVALO_STREAM_MS = 150;
+
+    record Resposta(int status, String corpo, long atrasoMs, Map<String, String> cabecalhos) {
+
+        Resposta(int status, String corpo, long atrasoMs) {
+            this(status, corpo, atrasoMs, Map.of());
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        servidor.createContext("/chat/completions", this::responder);
+        servidor.start();
+
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        GroqRateLimiter limiter = new GroqRateLimiter(scheduler);
+        ReflectionTestUtils.setField(limiter, "defaultBackoffMs", 10L);
+        limiter.init();
+
+        groqService = new GroqService(HttpClient.newHttpClient(), objectMapper, limiter, new PipelineMetrics(registry));
+        ReflectionTestUtils.setField(groqService, "groqApiKey", "chave");
+        ReflectionTestUtils.setField(groqService, "groqApiUrl", "http://localhost:" + servidor.getAddress().getPort() + "/chat/completions");
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.stop(0);
+        scheduler.shutdown();
+    }
+
+    private void responder(HttpExchange exchange) throws IOException {
+        ultimoCorpo.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if (pedacos.get() != null) {
+            this.responderStream(exchange, pedacos.get());
+            return;
+        }
+        Resposta atual = respostasAntes.poll();
+        if (atual == null) {
+            atual = resposta.get();
+        }
+        atual.cabecalhos().forEach((nome, valor) -> exchange.getResponseHeaders().add(nome, valor));
+        try {
+            Thread.sleep(atual.atrasoMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] corpo = atual.corpo().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(atual.status(), corpo.length);
+        try (OutputStream saida = exchange.getResponseBody()) {
+            saida.write(corpo);
+        } catch (IOException e) {
+            // O cliente pode ter abortado a chamada por prazo
+        }
+    }
+
+    private void responderStream(HttpExchange exchange, List<String> partes) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream saida = exchange.getResponseBody()) {
+            for (String parte : partes) {
+                String evento = objectMapper.writeValueAsString(Map.of("choices", List.of(Map.of("delta", Map.of("content", parte)))));
+                saida.write(("data: " + evento + "\n\n").getBytes(StandardCharsets.UTF_8));
+                saida.flush();
+                Thread.sleep(INTERVALO_STREAM_MS);
+            }
+            saida.write(fimStream.get().getBytes(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String completion(String content) throws IOException {
+        return objectMapper.writeValueAsString(Map.of(
             "choices", List.of(
                 Map.of(
                     "message", Map.of(
-                        "content", expectedResponse
+                        "content", content
                     )
                 )
             )
-        );
-        
-        ResponseEntity<Map> responseEntity = new ResponseEntity<>(mockResponse, HttpStatus.OK);
-        
-        when(restTemplate.exchange(
-            anyString(), 
-            eq(HttpMethod.POST), 
-            any(HttpEntity.class), 
-            eq(Map.class)
-        )).thenReturn(responseEntity);
+        ));
+    }
+
+    @Test
+    void improveDescription_deveRetornarDescricaoMelhorada() throws Exception {
+        // Arrange
+        String originalDescription = "Imagem de um senhor segurando um bebê";
+        String expectedResponse = "Fotografia emocionante de um avô carinhoso segurando um bebê com ternura";
+        resposta.set(new Resposta(200, completion(expectedResponse), 0));
 
         // Act
-        String result = groqService.improveDescription(originalDescription);
+        String result = groqService.improveDescription(originalDescription).get();
 
         // Assert
         assertThat(result).isEqualTo(expectedResponse);
+        assertThat(ultimoCorpo.get()).contains("openai/gpt-oss-20b").contains(originalDescription);
     }
 
     @Test
-    void improveDescription_deveRetornarErroQuandoRespostaInesperada() {
+    void improveDescription_deveFalharQuandoRespostaInesperada() {
         // Arrange
         String originalDescription = "Imagem de um senhor segurando um bebê";
-        Map<String, Object> mockResponse = Map.of("error", "API error");
-        
-        ResponseEntity<Map> responseEntity = new ResponseEntity<>(mockResponse, HttpStatus.OK);
-        
-        when(restTemplate.exchange(
-            anyString(), 
-            eq(HttpMethod.POST), 
-            any(HttpEntity.class), 
-            eq(Map.class)
-        )).thenReturn(responseEntity);
+        resposta.set(new Resposta(200, "{\"error\": \"API error\"}", 0));
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.improveDescription(originalDescription).get())
+            .isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void improveDescription_deveFalharQuandoApiRetornaErro() {
+        // Arrange
+        String originalDescription = "Imagem de um senhor segurando um bebê";
+        resposta.set(new Resposta(500, "Network error", 0));
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.improveDescription(originalDescription).get())
+            .isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void complete_deveAguardarERepetirQuandoRecebe429() throws Exception {
+        // Arrange
+        respostasAntes.add(new Resposta(429, "rate limit", 0, Map.of("retry-after", "0.05")));
+        resposta.set(new Resposta(200, completion("depois do limite"), 0));
 
         // Act
-        String result = groqService.improveDescription(originalDescription);
+        String result = groqService.complete("prompt").get(5, TimeUnit.SECONDS);
 
         // Assert
-        assertThat(result).contains("Erro ao processar com IA");
+        assertThat(result).isEqualTo("depois do limite");
+        assertThat(respostasAntes).isEmpty();
+        assertThat(registry.get("groq.request").tags("modo", "individual", "resultado", "limitado").timer().count()).isEqualTo(1);
+        assertThat(registry.get("groq.request").tags("modo", "individual", "resultado", "sucesso").timer().count()).isEqualTo(1);
     }
 
     @Test
-    void improveDescription_deveRetornarErroQuandoExcecao() {
+    void complete_deveRegistrarTokensConsumidos() throws Exception {
         // Arrange
-        String originalDescription = "Imagem de um senhor segurando um bebê";
-        
-        when(restTemplate.exchange(
-            anyString(), 
-            eq(HttpMethod.POST), 
-            any(HttpEntity.class), 
-            eq(Map.class)
-        )).thenThrow(new RuntimeException("Network error"));
+        resposta.set(new Resposta(200, objectMapper.writeValueAsString(Map.of(
+            "choices", List.of(Map.of("message", Map.of("content", "texto"))),
+            "usage", Map.of("prompt_tokens", 30, "completion_tokens", 12, "total_tokens", 42))), 0));
+
+        // Act
+        groqService.complete("prompt").get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(registry.get("groq.tokens").tag("tipo", "prompt").summary().totalAmount()).isEqualTo(30);
+        assertThat(registry.get("groq.tokens").tag("tipo", "completion").summary().totalAmount()).isEqualTo(12);
+    }
+
+    @Test
+    void complete_deveFalharQuandoPrazoTotalEstoura() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(groqService, "deadlineMs", 100L);
+        resposta.set(new Resposta(200, completion("tarde demais"), 2000));
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.complete("prompt").get())
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(registry.get("groq.request").tag("resultado", "timeout").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completeBatch_devePedirJsonESepararRespostaPorId() throws Exception {
+        // Arrange
+        resposta.set(new Resposta(200, completion("{\"1\": \"Foto A\", \"2\": \"Foto B\", \"3\": \"extra\"}"), 0));
+
+        // Act
+        Map<String, String> melhoradas = groqService.completeBatch(Map.of("1", "foto a", "2", "foto b")).get();
+
+        // Assert
+        assertThat(melhoradas).containsExactlyInAnyOrderEntriesOf(Map.of("1", "Foto A", "2", "Foto B"));
+        assertThat(ultimoCorpo.get()).contains("json_object");
+    }
+
+    @Test
+    void completeBatch_deveFalharQuandoRespostaNaoEJson() throws Exception {
+        // Arrange
+        resposta.set(new Resposta(200, completion("1: Foto A"), 0));
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.completeBatch(Map.of("1", "foto a")).get())
+            .hasCauseInstanceOf(GroqService.RespostaLoteInvalidaException.class);
+    }
+
+    @Test
+    void stream_deveEntregarPedacosAntesDoFimDaResposta() throws Exception {
+        // Arrange
+        pedacos.set(List.of("Fotografia ", "emocionante ", "de um avô"));
+        List<String> recebidos = new CopyOnWriteArrayList<>();
+        AtomicLong primeiroPedacoEm = new AtomicLong();
+        long inicio = System.nanoTime();
 
         // Act
-        String result = groqService.improveDescription(originalDescription);
+        String texto = groqService.stream("prompt", pedaco -> {
+            primeiroPedacoEm.compareAndSet(0, System.nanoTime());
+            recebidos.add(pedaco);
+        }).get(5, TimeUnit.SECONDS);
+        long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        long primeiroMs = TimeUnit.NANOSECONDS.toMillis(primeiroPedacoEm.get() - inicio);
 
         // Assert
-        assertThat(result).contains("Erro ao processar com IA");
+        assertThat(texto).isEqualTo("Fotografia emocionante de um avô");
+        assertThat(recebidos).containsExactly("Fotografia ", "emocionante ", "de um avô");
+        assertThat(ultimoCorpo.get()).contains("\"stream\":true");
+        // O primeiro pedaço chega antes dos intervalos seguintes do stub
+        assertThat(primeiroMs).isLessThan(totalMs - INTERVALO_STREAM_MS);
+    }
+
+    @Test
+    void stream_deveFalharQuandoConexaoTerminaSemDone() {
+        // Arrange
+        pedacos.set(List.of("Fotografia ", "emocionante"));
+        fimStream.set("");
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.stream("prompt", pedaco -> {}).get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("[DONE]");
+    }
+
+    @Test
+    void stream_deveFalharEPararDeEntregarQuandoEventoNaoEJson() {
+        // Arrange
+        pedacos.set(List.of("Fotografia "));
+        fimStream.set("data: {\"choices\": [\n\ndata: {\"choices\":[{\"delta\":{\"content\":\"depois\"}}]}\n\ndata: [DONE]\n\n");
+        List<String> recebidos = new CopyOnWriteArrayList<>();
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.stream("prompt", recebidos::add).get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("JSON");
+        assertThat(recebidos).containsExactly("Fotografia ");
+    }
+
+    @Test
+    void stream_deveFalharSemEntregarPedacosQuandoApiRetornaErro() {
+        // Arrange
+        resposta.set(new Resposta(500, "{\"error\": \"indisponível\"}", 0));
+        List<String> recebidos = new CopyOnWriteArrayList<>();
+
+        // Act & Assert
+        assertThatThrownBy(() -> groqService.stream("prompt", recebidos::add).get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(recebidos).isEmpty();
     }
 }
@@ -0,0 +1,233 @@
+package com.enriquecimento.upload.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImagePreprocessingServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ImagePreprocessingService imagePreprocessingService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        imagePreprocessingService = service(Runnable::run);
+    }
+
+    private ImagePreprocessingService service(TaskExecutor executor) {
+        ImagePreprocessingService service = new ImagePreprocessingService(executor, new PipelineMetrics(meterRegistry));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxWidth", 300);
+        ReflectionTestUtils.setField(service, "maxHeight", 400);
+        ReflectionTestUtils.setField(service, "jpegQuality", 0.85f);
+        return service;
+    }
+
+    @Test
+    void preparar_deveReduzirERecomprimirImagemGrande() throws Exception {
+        // Arrange
+        byte[] original = jpeg(ruido(1200, 800, BufferedImage.TYPE_INT_RGB));
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService
+                .preparar(new ByteArrayResource(original), original.length);
+
+        // Assert
+        BufferedImage enviada = ler(preparada);
+        assertThat(enviada.getWidth()).isEqualTo(300);
+        assertThat(enviada.getHeight()).isEqualTo(200);
+        assertThat(preparada.tamanho()).isLessThan(original.length);
+        assertThat(meterRegistry.get("upload.preprocessing").tag("resultado", "sucesso").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("upload.preprocessing.bytes.saved").summary().totalAmount())
+                .isEqualTo(original.length - preparada.tamanho());
+    }
+
+    @Test
+    void preparar_deveLerDiretoDoArquivoDeStaging(@TempDir Path diretorio) throws Exception {
+        // Arrange
+        // Mesma origem do upload assíncrono: o arquivo gravado no staging
+        byte[] original = comOrientacao(jpeg(ruido(800, 400, BufferedImage.TYPE_INT_RGB)), 6);
+        Path arquivo = Files.write(diretorio.resolve("staged.jpg"), original);
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService
+                .preparar(new FileSystemResource(arquivo), original.length);
+
+        // Assert
+        BufferedImage enviada = ler(preparada);
+        assertThat(enviada.getWidth()).isEqualTo(200);
+        assertThat(enviada.getHeight()).isEqualTo(400);
+        assertThat(meterRegistry.get("upload.preprocessing").tag("resultado", "sucesso").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void preparar_deveAplicarOrientacaoExifEDescartarMetadados() throws Exception {
+        // Arrange
+        // Armazenada deitada (800x400) com orientação 6: exibida em pé, girada 90° no sentido horário
+        byte[] original = comOrientacao(jpeg(ruido(800, 400, BufferedImage.TYPE_INT_RGB)), 6);
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService
+                .preparar(new ByteArrayResource(original), original.length);
+
+        // Assert
+        BufferedImage enviada = ler(preparada);
+        assertThat(enviada.getWidth()).isEqualTo(200);
+        assertThat(enviada.getHeight()).isEqualTo(400);
+        // O quadrado vermelho do canto superior esquerdo vai para o canto superior direito
+        Color canto = new Color(enviada.getRGB(enviada.getWidth() - 10, 10));
+        assertThat(canto.getRed()).isGreaterThan(200);
+        assertThat(canto.getGreen()).isLessThan(60);
+        byte[] bytes = preparada.conteudo().getInputStream().readAllBytes();
+        assertThat(new String(bytes, StandardCharsets.ISO_8859_1)).doesNotContain("Exif");
+    }
+
+    @Test
+    void preparar_deveManterPngComTransparencia() throws Exception {
+        // Arrange
+        BufferedImage imagem = new BufferedImage(900, 900, BufferedImage.TYPE_INT_ARGB);
+        byte[] original = png(imagem);
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService
+                .preparar(new ByteArrayResource(original), original.length);
+
+        // Assert
+        BufferedImage enviada = ler(preparada);
+        assertThat(enviada.getWidth()).isEqualTo(300);
+        assertThat(enviada.getColorModel().hasAlpha()).isTrue();
+    }
+
+    @Test
+    void preparar_deveEnviarOriginalQuandoConteudoNaoEImagem() {
+        // Arrange
+        ByteArrayResource original = new ByteArrayResource(new byte[]{1, 2, 3});
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService.preparar(original, 3);
+
+        // Assert
+        assertThat(preparada.conteudo()).isSameAs(original);
+        assertThat(preparada.tamanho()).isEqualTo(3);
+        assertThat(meterRegistry.get("upload.preprocessing").tag("resultado", "ignorada").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void preparar_deveEnviarOriginalQuandoResultadoNaoFicaMenor() throws Exception {
+        // Arrange
+        // Imagem lisa já pequena: a recompressão não tem o que ganhar
+        BufferedImage imagem = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        byte[] original = jpeg(imagem);
+        ByteArrayResource recurso = new ByteArrayResource(original);
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService.preparar(recurso, original.length);
+
+        // Assert
+        assertThat(preparada.conteudo()).isSameAs(recurso);
+        assertThat(meterRegistry.find("upload.preprocessing.bytes.saved").summary()).isNull();
+    }
+
+    @Test
+    void preparar_deveEnviarOriginalQuandoPoolEstaCheio() throws Exception {
+        // Arrange
+        byte[] original = jpeg(ruido(1200, 800, BufferedImage.TYPE_INT_RGB));
+        ByteArrayResource recurso = new ByteArrayResource(original);
+        ImagePreprocessingService cheio = service(tarefa -> {
+            throw new TaskRejectedException("fila cheia");
+        });
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = cheio.preparar(recurso, original.length);
+
+        // Assert
+        assertThat(preparada.conteudo()).isSameAs(recurso);
+        assertThat(meterRegistry.get("upload.preprocessing").tag("resultado", "rejeitada").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void preparar_naoDeveAlterarQuandoDesligado() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(imagePreprocessingService, "enabled", false);
+        byte[] original = jpeg(ruido(1200, 800, BufferedImage.TYPE_INT_RGB));
+        ByteArrayResource recurso = new ByteArrayResource(original);
+
+        // Act
+        ImagePreprocessingService.ImagemPreparada preparada = imagePreprocessingService.preparar(recurso, original.length);
+
+        // Assert
+        assertThat(preparada.conteudo()).isSameAs(recurso);
+        assertThat(meterRegistry.find("upload.preprocessing").timer()).isNull();
+    }
+
+    // Ruído comprime mal, como uma foto: o original fica bem maior que a versão reduzida
+    private static BufferedImage ruido(int largura, int altura, int tipo) {
+        BufferedImage imagem = new BufferedImage(largura, altura, tipo);
+        Random random = new Random(42);
+        for (int y = 0; y < altura; y++) {
+            for (int x = 0; x < largura; x++) {
+                imagem.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        Graphics2D g = imagem.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, largura / 4, altura / 4);
+        g.dispose();
+        return imagem;
+    }
+
+    private static byte[] jpeg(BufferedImage imagem) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, "jpeg", saida);
+        return saida.toByteArray();
+    }
+
+    private static byte[] png(BufferedImage imagem) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        ImageIO.write(imagem, "png", saida);
+        return saida.toByteArray();
+    }
+
+    private static BufferedImage ler(ImagePreprocessingService.ImagemPreparada preparada) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(preparada.conteudo().getInputStream().readAllBytes()));
+    }
+
+    // Insere um APP1 EXIF mínimo (IFD0 só com a orientação) logo depois do APP0 do JFIF
+    private static byte[] comOrientacao(byte[] jpeg, int orientacao) {
+        ByteBuffer exif = ByteBuffer.allocate(6 + 8 + 2 + 12 + 4);
+        exif.put("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        exif.put(new byte[]{'M', 'M', 0, 42}).putInt(8);
+        exif.putShort((short) 1);
+        exif.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientacao).putShort((short) 0);
+        exif.putInt(0);
+
+        int fimApp0 = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        ByteBuffer resultado = ByteBuffer.allocate(jpeg.length + 4 + exif.capacity());
+        resultado.put(jpeg, 0, fimApp0);
+        resultado.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + exif.capacity())).put(exif.array());
+        resultado.put(jpeg, fimApp0, jpeg.length - fimApp0);
+        return resultado.array();
+    }
+}
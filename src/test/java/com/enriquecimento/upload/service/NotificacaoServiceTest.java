@@ -0,0 +1,103 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificacaoServiceTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @InjectMocks
+    private NotificacaoService notificacaoService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(notificacaoService, "eventsExchangeName", "image-processing-events");
+    }
+
+    @Test
+    void receberConclusao_deveAcordarAssinaturasEInvalidarCache() {
+        // Arrange
+        CompletableFuture<Long> primeira = notificacaoService.aguardar(1L);
+        CompletableFuture<Long> segunda = notificacaoService.aguardar(1L);
+        CompletableFuture<Long> outra = notificacaoService.aguardar(2L);
+
+        // Act
+        // O JSON da fanout pode chegar com os IDs como Integer
+        notificacaoService.receberConclusao(List.of(1, 3));
+
+        // Assert
+        assertThat(primeira).isCompletedWithValue(1L);
+        assertThat(segunda).isCompletedWithValue(1L);
+        assertThat(outra).isNotDone();
+        assertThat(notificacaoService.getAguardando()).isEqualTo(1);
+        verify(resultadoImagemCache).invalidateAll(List.of(1L, 3L));
+    }
+
+    @Test
+    void cancelar_deveRemoverAssinatura() {
+        // Arrange
+        CompletableFuture<Long> assinatura = notificacaoService.aguardar(1L);
+
+        // Act
+        notificacaoService.cancelar(1L, assinatura);
+        notificacaoService.receberConclusao(List.of(1L));
+
+        // Assert
+        assertThat(assinatura).isNotDone();
+        assertThat(notificacaoService.getAguardando()).isZero();
+    }
+
+    @Test
+    void publicarConclusao_deveEnviarParaFanoutSemAcordarLocalmente() {
+        // Arrange
+        CompletableFuture<Long> assinatura = notificacaoService.aguardar(1L);
+
+        // Act
+        notificacaoService.publicarConclusao(Set.of(1L));
+
+        // Assert
+        // A própria instância recebe o evento pela sua fila, como as demais
+        verify(rabbitTemplate).convertAndSend("image-processing-events", "", List.of(1L));
+        assertThat(assinatura).isNotDone();
+    }
+
+    @Test
+    void publicarConclusao_deveAcordarLocalmenteQuandoBrokerFalha() {
+        // Arrange
+        CompletableFuture<Long> assinatura = notificacaoService.aguardar(1L);
+        doThrow(new AmqpConnectException(new ConnectException("broker fora"))).when(rabbitTemplate)
+            .convertAndSend(anyString(), eq(""), any(Object.class));
+
+        // Act
+        notificacaoService.publicarConclusao(List.of(1L));
+
+        // Assert
+        assertThat(assinatura).isCompletedWithValue(1L);
+    }
+}
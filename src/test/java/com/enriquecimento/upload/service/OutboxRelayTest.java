@@ -0,0 +1,123 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.EnrichmentMessage;
+import com.enriquecimento.upload.entity.MensagemOutbox;
+import com.enriquecimento.upload.repository.MensagemOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private MensagemOutboxRepository mensagemOutboxRepository;
+
+    @Mock
+    private AmqpService amqpService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TaskScheduler outboxRelayScheduler;
+
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        outboxRelay = new OutboxRelay(mensagemOutboxRepository, amqpService, new TransactionTemplate(transactionManager), outboxRelayScheduler);
+        ReflectionTestUtils.setField(outboxRelay, "batchSize", 2);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    private MensagemOutbox mensagem(long id) {
+        return MensagemOutbox.builder().id(id).imageId(id * 10).imageUrl("url-" + id).descricao("d" + id)
+                .criadoEm(Instant.ofEpochMilli(id)).build();
+    }
+
+    @Test
+    void drenar_devePublicarLotesAteEsvaziarEApagarOsConfirmados() {
+        // Arrange
+        List<MensagemOutbox> primeiro = List.of(mensagem(1), mensagem(2));
+        List<MensagemOutbox> segundo = List.of(mensagem(3));
+        when(mensagemOutboxRepository.findByOrderByIdAsc(any(Pageable.class))).thenReturn(primeiro, segundo);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        outboxRelay.bindTo(registry);
+
+        // Act
+        outboxRelay.drenar();
+
+        // Assert
+        verify(amqpService).sendImageProcessingMessages(List.of(
+                new EnrichmentMessage(10L, "url-1", "d1", 1L), new EnrichmentMessage(20L, "url-2", "d2", 2L)));
+        verify(amqpService).sendImageProcessingMessages(List.of(new EnrichmentMessage(30L, "url-3", "d3", 3L)));
+        verify(mensagemOutboxRepository).deleteAllInBatch(primeiro);
+        verify(mensagemOutboxRepository).deleteAllInBatch(segundo);
+        verify(transactionManager, times(2)).commit(any());
+        assertThat(registry.get("outbox.relay.published").functionCounter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void drenar_deveSepararMensagensDeQualidadeDasDeEnriquecimento() {
+        // Arrange
+        MensagemOutbox qualidade = MensagemOutbox.builder().id(2L).tipo(MensagemOutbox.Tipo.QUALIDADE).imageId(20L)
+                .publicId("img-20").criadoEm(Instant.ofEpochMilli(2)).build();
+        List<MensagemOutbox> lote = List.of(mensagem(1), qualidade);
+        when(mensagemOutboxRepository.findByOrderByIdAsc(any(Pageable.class))).thenReturn(lote, List.of());
+
+        // Act
+        outboxRelay.drenar();
+
+        // Assert
+        verify(amqpService).sendImageProcessingMessages(List.of(new EnrichmentMessage(10L, "url-1", "d1", 1L)));
+        verify(amqpService).sendQualityAnalysisMessages(List.of(Map.of("imageId", "20", "publicId", "img-20")));
+        verify(mensagemOutboxRepository).deleteAllInBatch(lote);
+    }
+
+    @Test
+    void drenar_deveManterMensagensQuandoBrokerNaoConfirma() {
+        // Arrange
+        List<MensagemOutbox> lote = List.of(mensagem(1));
+        when(mensagemOutboxRepository.findByOrderByIdAsc(any(Pageable.class))).thenReturn(lote);
+        doThrow(new AmqpTimeoutException("sem confirmação")).when(amqpService).sendImageProcessingMessages(any());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        outboxRelay.bindTo(registry);
+
+        // Act
+        outboxRelay.drenar();
+
+        // Assert
+        verify(mensagemOutboxRepository, never()).deleteAllInBatch(any());
+        verify(transactionManager).rollback(any());
+        assertThat(registry.get("outbox.relay.failures").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void acordar_deveAgendarUmaUnicaDrenagemParaChamadasSeguidas() {
+        // Act
+        outboxRelay.acordar();
+        outboxRelay.acordar();
+
+        // Assert
+        verify(outboxRelayScheduler, times(1)).schedule(any(Runnable.class), any(Instant.class));
+    }
+}
@@ -0,0 +1,150 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.entity.MensagemOutbox;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.enriquecimento.upload.repository.MensagemOutboxRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @Mock
+    private MensagemOutboxRepository mensagemOutboxRepository;
+
+    @Mock
+    private OutboxRelay outboxRelay;
+
+    @Mock
+    private QualityAnalysisService qualityAnalysisService;
+
+    @Mock
+    private Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    @InjectMocks
+    private OutboxService outboxService;
+
+    @Test
+    void save_deveGravarImagemEMensagemEAcordarRelay() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().linkPublico("url").descricao("uma imagem").build();
+        when(dadosImagemRepository.save(imagem)).thenAnswer(invocation -> {
+            imagem.setId(5L);
+            return imagem;
+        });
+
+        // Act
+        DadosImagem salva = outboxService.save(imagem, true);
+
+        // Assert
+        ArgumentCaptor<MensagemOutbox> mensagem = ArgumentCaptor.forClass(MensagemOutbox.class);
+        verify(mensagemOutboxRepository).save(mensagem.capture());
+        assertThat(mensagem.getValue().getImageId()).isEqualTo(5L);
+        assertThat(mensagem.getValue().getImageUrl()).isEqualTo("url");
+        assertThat(mensagem.getValue().getDescricao()).isEqualTo("uma imagem");
+        assertThat(mensagem.getValue().getCriadoEm()).isNotNull();
+        assertThat(salva).isSameAs(imagem);
+        verify(outboxRelay).acordar();
+        verify(resultadoImagemCache).invalidate(5L);
+    }
+
+    @Test
+    void save_naoDeveGravarMensagemQuandoNaoPrecisaEnriquecer() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(6L).conteudo("já enriquecida").build();
+        when(dadosImagemRepository.save(imagem)).thenReturn(imagem);
+
+        // Act
+        outboxService.save(imagem, false);
+
+        // Assert
+        verifyNoInteractions(mensagemOutboxRepository, outboxRelay);
+    }
+
+    @Test
+    void save_deveGravarMensagemDeQualidadeNaMesmaTransacao() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(7L).idCloudinary("img").conteudo("já enriquecida").build();
+        when(dadosImagemRepository.save(imagem)).thenReturn(imagem);
+        when(qualityAnalysisService.deveAnalisar(imagem)).thenReturn(true);
+
+        // Act
+        outboxService.save(imagem, false);
+
+        // Assert
+        ArgumentCaptor<MensagemOutbox> mensagem = ArgumentCaptor.forClass(MensagemOutbox.class);
+        verify(mensagemOutboxRepository).save(mensagem.capture());
+        assertThat(mensagem.getValue().getTipo()).isEqualTo(MensagemOutbox.Tipo.QUALIDADE);
+        assertThat(mensagem.getValue().getImageId()).isEqualTo(7L);
+        assertThat(mensagem.getValue().getPublicId()).isEqualTo("img");
+        verify(outboxRelay).acordar();
+    }
+
+    @Test
+    void insertAll_deveGravarMensagensSomenteDasImagensFiltradas() {
+        // Arrange
+        DadosImagem nova = DadosImagem.builder().id(1L).conteudo("").build();
+        DadosImagem enriquecida = DadosImagem.builder().id(2L).conteudo("pronta").build();
+        List<DadosImagem> imagens = List.of(nova, enriquecida);
+
+        // Act
+        outboxService.insertAll(imagens, imagem -> imagem.getConteudo().isBlank());
+
+        // Assert
+        verify(dadosImagemRepository).insertAll(imagens);
+        ArgumentCaptor<List<MensagemOutbox>> mensagens = ArgumentCaptor.forClass(List.class);
+        verify(mensagemOutboxRepository).saveAll(mensagens.capture());
+        assertThat(mensagens.getValue()).extracting(MensagemOutbox::getImageId).containsExactly(1L);
+        verify(outboxRelay).acordar();
+    }
+
+    @Test
+    void insertAll_deveGravarMensagensDeQualidadeJuntoComAsDeEnriquecimento() {
+        // Arrange
+        DadosImagem nova = DadosImagem.builder().id(1L).idCloudinary("a").conteudo("").build();
+        DadosImagem enriquecida = DadosImagem.builder().id(2L).idCloudinary("b").conteudo("pronta").build();
+        List<DadosImagem> imagens = List.of(nova, enriquecida);
+        when(qualityAnalysisService.deveAnalisar(any())).thenReturn(true);
+
+        // Act
+        outboxService.insertAll(imagens, imagem -> imagem.getConteudo().isBlank());
+
+        // Assert
+        ArgumentCaptor<List<MensagemOutbox>> mensagens = ArgumentCaptor.forClass(List.class);
+        verify(mensagemOutboxRepository).saveAll(mensagens.capture());
+        assertThat(mensagens.getValue()).extracting(MensagemOutbox::getTipo, MensagemOutbox::getImageId).containsExactly(
+                tuple(MensagemOutbox.Tipo.ENRIQUECIMENTO, 1L),
+                tuple(MensagemOutbox.Tipo.QUALIDADE, 1L),
+                tuple(MensagemOutbox.Tipo.QUALIDADE, 2L));
+    }
+
+    @Test
+    void insertAll_naoDeveAcordarRelaySemMensagens() {
+        // Arrange
+        List<DadosImagem> imagens = List.of(DadosImagem.builder().id(1L).conteudo("pronta").build());
+
+        // Act
+        outboxService.insertAll(imagens, imagem -> false);
+
+        // Assert
+        verify(mensagemOutboxRepository, never()).saveAll(any());
+        verifyNoInteractions(outboxRelay);
+    }
+}
@@ -0,0 +1,58 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.service.PipelineMetrics.Etapa;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineMetricsTest {
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics(registry);
+
+    @Test
+    void registrar_deveSepararTimersPorResultadoComBucketsNoPrometheus() {
+        // Arrange
+        Timer.Sample sucesso = pipelineMetrics.iniciar();
+        Timer.Sample erro = pipelineMetrics.iniciar();
+
+        // Act
+        pipelineMetrics.registrar(Etapa.CLOUDINARY_UPLOAD, sucesso, PipelineMetrics.SUCESSO);
+        pipelineMetrics.registrar(Etapa.CLOUDINARY_UPLOAD, erro, PipelineMetrics.ERRO);
+
+        // Assert
+        assertThat(registry.get("cloudinary.upload").tag("resultado", "sucesso").timer().count()).isEqualTo(1);
+        assertThat(registry.get("cloudinary.upload").tag("resultado", "erro").timer().count()).isEqualTo(1);
+        assertThat(registry.scrape()).contains("cloudinary_upload_seconds_bucket{resultado=\"sucesso\",le=");
+    }
+
+    @Test
+    void registrar_deveGravarDuracaoMedidaForaDoProcesso() {
+        // Act
+        pipelineMetrics.registrar(Etapa.FILA, Duration.ofSeconds(90), "tentativa", "1");
+
+        // Assert
+        Timer timer = registry.get("enrichment.queue.dwell").tag("tentativa", "1").timer();
+        assertThat(timer.totalTime(TimeUnit.SECONDS)).isEqualTo(90);
+        // Acima dos 30 s dos buckets padrão, a espera ainda cai em um bucket finito
+        assertThat(registry.scrape()).contains("enrichment_queue_dwell_seconds_bucket{tentativa=\"1\",le=\"91.625968981\"} 1");
+    }
+
+    @Test
+    void registrarTokens_deveSepararPromptECompletion() {
+        // Act
+        pipelineMetrics.registrarTokens("prompt", 30);
+        pipelineMetrics.registrarTokens("completion", 12);
+
+        // Assert
+        assertThat(registry.get("groq.tokens").tag("tipo", "prompt").summary().totalAmount()).isEqualTo(30);
+        assertThat(registry.get("groq.tokens").tag("tipo", "completion").summary().totalAmount()).isEqualTo(12);
+    }
+}
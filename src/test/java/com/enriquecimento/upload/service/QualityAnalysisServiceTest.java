@@ -0,0 +1,94 @@
+package com.enriquecimento.upload.service;
+
+import com.enriquecimento.upload.dto.ResultadoImagem;
+import com.enriquecimento.upload.entity.DadosImagem;
+import com.enriquecimento.upload.repository.DadosImagemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QualityAnalysisServiceTest {
+
+    @Mock
+    private DadosImagemRepository dadosImagemRepository;
+
+    @Mock
+    private CloudinaryService cloudinaryService;
+
+    @Mock
+    private Cache<Long, ResultadoImagem> resultadoImagemCache;
+
+    private QualityAnalysisService qualityAnalysisService;
+
+    @BeforeEach
+    void setUp() {
+        qualityAnalysisService = new QualityAnalysisService(dadosImagemRepository, cloudinaryService, new ObjectMapper(),
+            resultadoImagemCache);
+        ReflectionTestUtils.setField(qualityAnalysisService, "enabled", true);
+        ReflectionTestUtils.setField(qualityAnalysisService, "sampleRate", 1.0);
+    }
+
+    @Test
+    void deveAnalisar_deveAceitarImagemEnviadaSemNota() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(1L).idCloudinary("img").build();
+
+        // Act
+        boolean analisar = qualityAnalysisService.deveAnalisar(imagem);
+
+        // Assert
+        assertThat(analisar).isTrue();
+        verifyNoInteractions(cloudinaryService);
+    }
+
+    @Test
+    void deveAnalisar_deveRecusarQuandoDesativadoForaDaAmostraOuJaAvaliada() {
+        // Arrange
+        DadosImagem imagem = DadosImagem.builder().id(1L).idCloudinary("img").build();
+        DadosImagem avaliada = DadosImagem.builder().id(2L).idCloudinary("img").notaQualidade(0.5).build();
+        DadosImagem semUpload = DadosImagem.builder().id(3L).build();
+
+        // Act
+        boolean jaAvaliada = qualityAnalysisService.deveAnalisar(avaliada);
+        boolean naoEnviada = qualityAnalysisService.deveAnalisar(semUpload);
+        ReflectionTestUtils.setField(qualityAnalysisService, "sampleRate", 0.0);
+        boolean foraDaAmostra = qualityAnalysisService.deveAnalisar(imagem);
+        ReflectionTestUtils.setField(qualityAnalysisService, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(qualityAnalysisService, "enabled", false);
+        boolean desativado = qualityAnalysisService.deveAnalisar(imagem);
+
+        // Assert
+        assertThat(jaAvaliada).isFalse();
+        assertThat(naoEnviada).isFalse();
+        assertThat(foraDaAmostra).isFalse();
+        assertThat(desativado).isFalse();
+    }
+
+    @Test
+    void receiveQualityAnalysisMessage_deveGravarSomenteCamposDeQualidade() throws Exception {
+        // Arrange
+        when(cloudinaryService.analyzeQuality("img")).thenReturn(Map.of(
+            "quality_score", 0.87,
+            "quality_analysis", Map.of("focus", 0.9)));
+
+        // Act
+        qualityAnalysisService.receiveQualityAnalysisMessage(Map.of("imageId", "1", "publicId", "img"));
+
+        // Assert
+        verify(dadosImagemRepository).updateQualidade(1L, 0.87, "{\"focus\":0.9}");
+        verify(dadosImagemRepository, never()).save(any());
+        verify(resultadoImagemCache).invalidate(1L);
+    }
+}